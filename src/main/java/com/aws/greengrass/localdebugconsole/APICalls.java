@@ -77,11 +77,23 @@ public enum APICalls {
      */
     forcePushComponentList,
 
+    /**
+     * Called by the client when it missed a component list update, to be sent the whole list again. Following updates
+     * only carry changes to it.
+     */
+    resyncComponentList,
+
     /**
      * Utility called by the client to get the current wireframe dependency graph.
      */
     forcePushDependencyGraph,
 
+    /**
+     * Called by the client when it missed a dependency graph update, to be sent the whole graph again. Following
+     * updates only carry changes to it.
+     */
+    resyncDependencyGraph,
+
     /**
      * Utility called by the client to subscribe to a local IPC topic.
      */
@@ -97,6 +109,12 @@ public enum APICalls {
      */
     unsubscribeToPubSubTopic,
 
+    /**
+     * Called by the client to be sent pub/sub messages in batches, of up to maxMessages messages or whatever arrived
+     * within maxDelayMs of the first. A maxMessages of 1 goes back to one message at a time.
+     */
+    batchPubSubMessages,
+
     /**
      * Returns the current Stream Manager streams list
      */
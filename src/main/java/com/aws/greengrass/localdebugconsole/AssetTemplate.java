@@ -0,0 +1,150 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An HTML entry point with %PLACEHOLDER%s in it. The source is scanned once when it is loaded and split into fixed
+ * byte ranges separated by the placeholders which can only be filled in per request. Server-wide values are folded
+ * into the fixed ranges at that point, so rendering a request only has to encode the per-request values and stitch
+ * them between the shared fixed ranges.
+ */
+final class AssetTemplate {
+    static final String WEBSOCKET_PORT = "WEBSOCKET_PORT";
+    static final String CHINA_PARTITION = "CHINA_PARTITION";
+    static final String USERNAME = "USERNAME";
+    static final String SESSION_TOKEN = "SESSION_TOKEN";
+    static final String[] REQUEST_PLACEHOLDERS = {USERNAME, SESSION_TOKEN};
+
+    private static final byte DELIMITER = '%';
+
+    // fixed.length == placeholders.length + 1, with fixed[i] coming before placeholders[i]
+    private final ByteBuf[] fixed;
+    private final String[] placeholders;
+
+    private AssetTemplate(List<byte[]> fixed, List<String> placeholders) {
+        this.fixed = new ByteBuf[fixed.size()];
+        for (int i = 0; i < this.fixed.length; i++) {
+            this.fixed[i] = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(fixed.get(i)).asReadOnly());
+        }
+        this.placeholders = placeholders.toArray(new String[0]);
+    }
+
+    /**
+     * Build the splice plan for a template.
+     *
+     * @param source       template bytes, UTF-8 encoded
+     * @param staticValues values for placeholders which are the same for every request
+     * @return the compiled template
+     */
+    static AssetTemplate compile(byte[] source, Map<String, String> staticValues) {
+        List<byte[]> fixed = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        ByteArrayOutputStream current = new ByteArrayOutputStream(source.length);
+
+        int start = 0;
+        for (int i = 0; i < source.length; i++) {
+            if (source[i] != DELIMITER) {
+                continue;
+            }
+            String name = placeholderAt(source, i, staticValues);
+            if (name == null) {
+                continue;
+            }
+            current.write(source, start, i - start);
+            String staticValue = staticValues.get(name);
+            if (staticValue == null) {
+                fixed.add(current.toByteArray());
+                current.reset();
+                placeholders.add(name);
+            } else {
+                byte[] value = staticValue.getBytes(StandardCharsets.UTF_8);
+                current.write(value, 0, value.length);
+            }
+            i += name.length() + 1;
+            start = i + 1;
+        }
+        current.write(source, start, source.length - start);
+        fixed.add(current.toByteArray());
+        return new AssetTemplate(fixed, placeholders);
+    }
+
+    private static String placeholderAt(byte[] source, int offset, Map<String, String> staticValues) {
+        for (String name : staticValues.keySet()) {
+            if (matches(source, offset, name)) {
+                return name;
+            }
+        }
+        for (String name : REQUEST_PLACEHOLDERS) {
+            if (matches(source, offset, name)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] source, int offset, String name) {
+        int end = offset + name.length() + 1;
+        if (end >= source.length || source[end] != DELIMITER) {
+            return false;
+        }
+        for (int j = 0; j < name.length(); j++) {
+            if (source[offset + 1 + j] != name.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether anything is left to fill in per request.
+     */
+    boolean hasPlaceholders() {
+        return placeholders.length > 0;
+    }
+
+    /**
+     * Get the content of a template which has no per-request placeholders.
+     */
+    byte[] staticContent() {
+        return ByteBufUtil.getBytes(fixed[0]);
+    }
+
+    /**
+     * Render the template for one request.
+     *
+     * @param alloc  allocator for the per-request values
+     * @param values gives the value for each per-request placeholder. A null value renders as empty
+     * @return the rendered content, which shares the fixed ranges with the template
+     */
+    ByteBuf render(ByteBufAllocator alloc, Function<String, String> values) {
+        CompositeByteBuf out = alloc.compositeBuffer(fixed.length + placeholders.length);
+        for (int i = 0; i < fixed.length; i++) {
+            if (fixed[i].isReadable()) {
+                out.addComponent(true, fixed[i].duplicate());
+            }
+            if (i < placeholders.length) {
+                String value = values.apply(placeholders[i]);
+                if (value != null && !value.isEmpty()) {
+                    out.addComponent(true, ByteBufUtil.writeUtf8(alloc, value));
+                }
+            }
+        }
+        return out;
+    }
+}
@@ -16,4 +16,14 @@ public interface Authenticator {
      * @return true if it is valid
      */
     boolean isUsernameAndPasswordValid(Pair<String, String> usernameAndPassword);
+
+    /**
+     * Validate a session token issued after logging in with a username and password.
+     *
+     * @param token session token
+     * @return true if it is valid
+     */
+    default boolean isSessionTokenValid(String token) {
+        return false;
+    }
 }
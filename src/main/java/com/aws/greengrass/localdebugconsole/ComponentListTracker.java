@@ -0,0 +1,68 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentItem;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListSnapshot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the component list which dashboards were last sent, so that a push only has to carry what changed since.
+ * Every change moves the sequence number on by one, which lets a client notice that it missed one.
+ *
+ * <p>Not thread safe, the caller must make sure that changes are sent in the order they are made.
+ */
+class ComponentListTracker {
+    private final Map<String, ComponentItem> components = new LinkedHashMap<>();
+    private long seq;
+
+    /**
+     * Replace the list.
+     *
+     * @param list the current component list
+     * @return what changed, or null if nothing did
+     */
+    ComponentListDelta update(ComponentItem[] list) {
+        Map<String, ComponentItem> previous = new LinkedHashMap<>(components);
+        List<ComponentItem> added = new ArrayList<>();
+        List<Map<String, Object>> patched = new ArrayList<>();
+        components.clear();
+        if (list != null) {
+            for (ComponentItem item : list) {
+                components.put(item.getName(), item);
+                ComponentItem old = previous.remove(item.getName());
+                if (old == null) {
+                    added.add(item);
+                } else {
+                    Map<String, Object> changes = item.changesSince(old);
+                    if (changes != null) {
+                        patched.add(changes);
+                    }
+                }
+            }
+        }
+        // Whatever wasn't matched up is gone
+        if (added.isEmpty() && patched.isEmpty() && previous.isEmpty()) {
+            return null;
+        }
+        seq++;
+        return new ComponentListDelta(seq, added.toArray(new ComponentItem[0]),
+                previous.keySet().toArray(new String[0]), patched);
+    }
+
+    ComponentListSnapshot snapshot() {
+        return new ComponentListSnapshot(seq, components.values().toArray(new ComponentItem[0]));
+    }
+
+    long getSeq() {
+        return seq;
+    }
+}
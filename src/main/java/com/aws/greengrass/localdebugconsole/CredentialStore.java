@@ -0,0 +1,295 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.config.Node;
+import com.aws.greengrass.config.Topic;
+import com.aws.greengrass.config.Topics;
+import com.aws.greengrass.util.Coerce;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory index of the debug passwords stored in the config as {@code _debugPassword/<user>/<password>/expiration}.
+ * Checking a password is a single hash lookup on a digest of the credentials rather than a walk over every stored
+ * password, and expired passwords are purged from a queue ordered by expiry instead of on every request.
+ *
+ * <p>The index is rebuilt whenever the passwords in the config change. Those notifications arrive a little after the
+ * change itself, so a miss falls back to looking in the config directly, and the expiration is always read from the
+ * config topic so that a password revoked a moment ago is rejected straight away.
+ *
+ * <p>Passwords are digested with a random salt which is only kept in memory, so the digest can be handed out as an id
+ * for the password, e.g. in a session token, which can be checked later without saying anything about the password.
+ */
+class CredentialStore {
+    private static final int SALT_BYTES = 16;
+    private static final Base64.Encoder ID_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder ID_DECODER = Base64.getUrlDecoder();
+
+    private final Supplier<Topics> passwords;
+    private final byte[] salt = new byte[SALT_BYTES];
+    private volatile Map<Credential, Topic> index = new ConcurrentHashMap<>();
+    // Guarded by itself
+    private final PriorityQueue<Expiry> expiries = new PriorityQueue<>();
+
+    /**
+     * Constructor.
+     *
+     * @param passwords finds the topics holding the passwords, or returns null if there are none
+     */
+    CredentialStore(Supplier<Topics> passwords) {
+        this.passwords = passwords;
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Check a username and password.
+     *
+     * @param username username
+     * @param password password
+     * @return true if the password was issued for the user and hasn't expired
+     */
+    boolean isValid(String username, String password) {
+        return validUntil(username, password) > 0;
+    }
+
+    /**
+     * Check a username and password, and find out how long they stay valid for.
+     *
+     * @param username username
+     * @param password password
+     * @return epoch millis when the password expires, or 0 if it isn't valid now
+     */
+    long validUntil(String username, String password) {
+        if (username == null || password == null) {
+            return 0;
+        }
+        Credential credential = new Credential(username, digest(password));
+        Topic expiration = index.get(credential);
+        if (expiration == null) {
+            expiration = findInConfig(username, password);
+            if (expiration == null) {
+                return 0;
+            }
+            add(credential, expiration);
+        }
+        return checkExpiration(credential, expiration);
+    }
+
+    /**
+     * Get an id for a password, which can be checked with {@link #isValidById} without knowing the password.
+     *
+     * @param password password
+     * @return id, which is only meaningful to this store
+     */
+    String passwordId(String password) {
+        return ID_ENCODER.encodeToString(digest(password));
+    }
+
+    /**
+     * Check that a password is still valid, such as the one a session was started with.
+     *
+     * @param username   username
+     * @param passwordId what {@link #passwordId} returned for the password
+     * @return true if the password is still in the config and hasn't expired
+     */
+    boolean isValidById(String username, String passwordId) {
+        if (username == null || passwordId == null) {
+            return false;
+        }
+        Credential credential;
+        try {
+            credential = new Credential(username, ID_DECODER.decode(passwordId));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // The password was looked up when the id was handed out, so it's either indexed or has since been removed
+        Topic expiration = index.get(credential);
+        return expiration != null && checkExpiration(credential, expiration) > 0;
+    }
+
+    private long checkExpiration(Credential credential, Topic expiration) {
+        long expiresAt = Coerce.toLong(expiration);
+        if (System.currentTimeMillis() < expiresAt) {
+            return expiresAt;
+        }
+        index.remove(credential, expiration);
+        removeFromConfig(expiration);
+        return 0;
+    }
+
+    /**
+     * Re-read every password from the config.
+     */
+    void rebuild() {
+        Map<Credential, Topic> rebuilt = new ConcurrentHashMap<>();
+        PriorityQueue<Expiry> queue = new PriorityQueue<>();
+        Topics passwordTopics = passwords.get();
+        if (passwordTopics != null) {
+            for (Node user : passwordTopics) {
+                if (!(user instanceof Topics)) {
+                    continue;
+                }
+                for (Node password : (Topics) user) {
+                    if (!(password instanceof Topics)) {
+                        continue;
+                    }
+                    Topic expiration = ((Topics) password).find(SimpleHttpServer.EXPIRATION_NAMESPACE);
+                    if (expiration == null) {
+                        // Either still being written or can never be valid, in which case it's never looked up
+                        continue;
+                    }
+                    Credential credential = new Credential(user.getName(), digest(password.getName()));
+                    rebuilt.put(credential, expiration);
+                    queue.add(new Expiry(Coerce.toLong(expiration), credential, expiration));
+                }
+            }
+        }
+        synchronized (expiries) {
+            index = rebuilt;
+            expiries.clear();
+            expiries.addAll(queue);
+        }
+    }
+
+    /**
+     * Remove every password which has expired.
+     *
+     * @return number of passwords removed
+     */
+    int sweep() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        while (true) {
+            Expiry next;
+            synchronized (expiries) {
+                next = expiries.peek();
+                if (next == null || next.expiresAt > now) {
+                    return removed;
+                }
+                expiries.poll();
+            }
+            // The expiration may have been extended since it was queued
+            long expiresAt = Coerce.toLong(next.expiration);
+            if (expiresAt > now) {
+                synchronized (expiries) {
+                    expiries.add(new Expiry(expiresAt, next.credential, next.expiration));
+                }
+                continue;
+            }
+            index.remove(next.credential, next.expiration);
+            removeFromConfig(next.expiration);
+            removed++;
+        }
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    private void add(Credential credential, Topic expiration) {
+        index.put(credential, expiration);
+        synchronized (expiries) {
+            expiries.add(new Expiry(Coerce.toLong(expiration), credential, expiration));
+        }
+    }
+
+    private Topic findInConfig(String username, String password) {
+        Topics passwordTopics = passwords.get();
+        if (passwordTopics == null) {
+            return null;
+        }
+        Topics user = passwordTopics.findTopics(username);
+        if (user == null) {
+            return null;
+        }
+        Topics match = user.findTopics(password);
+        // Config keys ignore case, passwords don't
+        if (match == null || !MessageDigest.isEqual(match.getName().getBytes(StandardCharsets.UTF_8),
+                password.getBytes(StandardCharsets.UTF_8))) {
+            return null;
+        }
+        return match.find(SimpleHttpServer.EXPIRATION_NAMESPACE);
+    }
+
+    private static void removeFromConfig(Topic expiration) {
+        // Remove the whole password, not just its expiration
+        Topics password = expiration.parent;
+        if (password != null) {
+            password.remove();
+        }
+    }
+
+    private byte[] digest(String password) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance(SimpleHttpServer.SHA_256_ALGORITHM);
+            sha256.update(salt);
+            return sha256.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A username and a salted digest of the password. Only the digest is kept, and it is compared in constant time, so
+     * looking a password up says nothing about how close it came to a stored one.
+     */
+    private static final class Credential {
+        private final String username;
+        private final byte[] digest;
+        private final int hash;
+
+        Credential(String username, byte[] digest) {
+            this.username = username;
+            this.digest = digest;
+            this.hash = 31 * username.hashCode() + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Credential)) {
+                return false;
+            }
+            Credential other = (Credential) o;
+            return MessageDigest.isEqual(digest, other.digest) && username.equals(other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Expiry implements Comparable<Expiry> {
+        private final long expiresAt;
+        private final Credential credential;
+        private final Topic expiration;
+
+        Expiry(long expiresAt, Credential credential, Topic expiration) {
+            this.expiresAt = expiresAt;
+            this.credential = credential;
+            this.expiration = expiration;
+        }
+
+        @Override
+        public int compareTo(Expiry o) {
+            return Long.compare(expiresAt, o.expiresAt);
+        }
+    }
+}
@@ -7,46 +7,59 @@ package com.aws.greengrass.localdebugconsole;
 
 import com.amazonaws.greengrass.streammanager.model.MessageStreamDefinition;
 import com.aws.greengrass.builtin.services.pubsub.PubSubIPCEventStreamAgent;
-import com.aws.greengrass.builtin.services.pubsub.PublishEvent;
-import com.aws.greengrass.builtin.services.pubsub.SubscribeRequest;
 import com.aws.greengrass.deployment.DeviceConfiguration;
 import com.aws.greengrass.lifecyclemanager.Kernel;
+import com.aws.greengrass.localdebugconsole.messageutils.BinaryPubSubMessage;
 import com.aws.greengrass.localdebugconsole.messageutils.CommunicationMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphDelta;
 import com.aws.greengrass.localdebugconsole.messageutils.DeviceDetails;
 import com.aws.greengrass.localdebugconsole.messageutils.Message;
 import com.aws.greengrass.localdebugconsole.messageutils.MessageType;
 import com.aws.greengrass.localdebugconsole.messageutils.PackedRequest;
+import com.aws.greengrass.localdebugconsole.messageutils.PayloadFormat;
+import com.aws.greengrass.localdebugconsole.messageutils.PubSubStats;
 import com.aws.greengrass.localdebugconsole.messageutils.Request;
 import com.aws.greengrass.localdebugconsole.messageutils.StreamManagerResponseMessage;
 import com.aws.greengrass.logging.api.Logger;
 import com.aws.greengrass.mqttclient.MqttClient;
 import com.aws.greengrass.mqttclient.MqttRequestException;
 import com.aws.greengrass.mqttclient.v5.Publish;
-import com.aws.greengrass.mqttclient.v5.Subscribe;
-import com.aws.greengrass.mqttclient.v5.Unsubscribe;
-import com.aws.greengrass.util.DefaultConcurrentHashMap;
 import com.aws.greengrass.util.Pair;
 import com.aws.greengrass.util.Utils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import org.java_websocket.WebSocket;
-import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
-import software.amazon.awssdk.aws.greengrass.model.ReceiveMode;
 
 import java.net.InetSocketAddress;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.net.ssl.SSLEngine;
@@ -54,43 +67,77 @@ import javax.net.ssl.SSLEngine;
 @Singleton
 public class DashboardServer extends WebSocketServer implements KernelMessagePusher {
     static final String SERVER_START_MESSAGE = "Server started successfully";
-    private static final String IOT_CORE_SOURCE = "iotcore";
 
     private final DashboardAPI dashboardAPI;
     private final Logger logger;
     private static final ObjectMapper jsonMapper = new ObjectMapper();
 
     private final CopyOnWriteArraySet<WebSocket> connections = new CopyOnWriteArraySet<>();
-    private final DefaultConcurrentHashMap<String, Set<WebSocket>> statusWatchlist =
-            new DefaultConcurrentHashMap<>(HashSet::new);
-    private final DefaultConcurrentHashMap<String, Set<WebSocket>> logWatchlist =
-            new DefaultConcurrentHashMap<>(HashSet::new);
-    private final DefaultConcurrentHashMap<WebSocket, Map<String, SubscribeRequest>> pubSubWatchList =
-            new DefaultConcurrentHashMap<>(ConcurrentHashMap::new);
-    private final DefaultConcurrentHashMap<WebSocket, Map<String, Subscribe>> mqttWatchList =
-            new DefaultConcurrentHashMap<>(ConcurrentHashMap::new);
+    // Connections which have been sent the whole component list, and so only need changes to it
+    private final Set<WebSocket> componentListWatchers = ConcurrentHashMap.newKeySet();
+    // Guards sending the component list, so every connection sees changes in order
+    private final ComponentListTracker componentList = new ComponentListTracker();
+    // The same for the dependency graph
+    private final Set<WebSocket> dependencyGraphWatchers = ConcurrentHashMap.newKeySet();
+    private final DependencyGraphTracker dependencyGraph = new DependencyGraphTracker();
+    // Connections by the components they watch the state and the logs of
+    private final SubscriptionRegistry<WebSocket> statusWatchlist = new SubscriptionRegistry<>();
+    private final SubscriptionRegistry<WebSocket> logWatchlist = new SubscriptionRegistry<>();
     @Getter(AccessLevel.PACKAGE)
     private final CompletableFuture<Object> started = new CompletableFuture<>();
     private final Authenticator authenticator;
     private final MqttClient mqttClient;
 
     private final StreamManagerHelper streamManagerHelper;
+    @Getter(AccessLevel.PACKAGE)
+    private final RequestExecutor requestExecutor;
+    @Setter(AccessLevel.PACKAGE)
+    private long pushWindowMillis = PushScheduler.DEFAULT_WINDOW_MILLIS;
+    private PushScheduler pushScheduler;
+    private final PubSubMultiplexer<WebSocket> pubSub;
+    @Setter(AccessLevel.PACKAGE)
+    private OutboundQueue.Limits outboundLimits = OutboundQueue.Limits.DEFAULT;
+    private final Map<WebSocket, OutboundQueue> outbound = new ConcurrentHashMap<>();
+    // Connections which asked for their pub/sub messages in batches
+    private final Map<WebSocket, PubSubBatcher> batchers = new ConcurrentHashMap<>();
+    // Drains outbound queues and times out pub/sub subscriptions
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dashboard-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final LongAdder droppedMessages = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
 
     PubSubIPCEventStreamAgent pubSubIPCAgent;
     private final String SERVICE_NAME = "LocalDebugConsole";
 
     public DashboardServer(InetSocketAddress address, Logger logger, Kernel root, DeviceConfiguration deviceConfig,
                            Authenticator authenticator, Provider<SSLEngine> engineProvider, String streamManagerAuthToken) {
+        this(address, logger, root, deviceConfig, authenticator, engineProvider, streamManagerAuthToken,
+                new RequestExecutor());
+    }
+
+    DashboardServer(InetSocketAddress address, Logger logger, Kernel root, DeviceConfiguration deviceConfig,
+                    Authenticator authenticator, Provider<SSLEngine> engineProvider, String streamManagerAuthToken,
+                    RequestExecutor requestExecutor) {
         this(address, logger, new KernelCommunicator(root, logger, deviceConfig), authenticator, engineProvider,
                 root.getContext().get(PubSubIPCEventStreamAgent.class),
                 root.getContext().get(MqttClient.class),
-                 new StreamManagerHelper(root, streamManagerAuthToken));
+                 new StreamManagerHelper(root, streamManagerAuthToken), requestExecutor);
     }
 
     // constructor for unit testing
     DashboardServer(InetSocketAddress address, Logger logger, DashboardAPI dashboardAPI, Authenticator authenticator,
                     Provider<SSLEngine> engineProvider, PubSubIPCEventStreamAgent pubSubIPCAgent,
                     MqttClient mqttClient, StreamManagerHelper streamManagerHelper) {
+        this(address, logger, dashboardAPI, authenticator, engineProvider, pubSubIPCAgent, mqttClient,
+                streamManagerHelper, new RequestExecutor());
+    }
+
+    DashboardServer(InetSocketAddress address, Logger logger, DashboardAPI dashboardAPI, Authenticator authenticator,
+                    Provider<SSLEngine> engineProvider, PubSubIPCEventStreamAgent pubSubIPCAgent,
+                    MqttClient mqttClient, StreamManagerHelper streamManagerHelper, RequestExecutor requestExecutor) {
         super(address);
         setReuseAddr(true);
         setTcpNoDelay(true);
@@ -104,15 +151,58 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
         this.pubSubIPCAgent = pubSubIPCAgent;
         this.mqttClient = mqttClient;
         this.streamManagerHelper = streamManagerHelper;
+        this.requestExecutor = requestExecutor;
+        // Every dashboard watching a topic shares one subscription to it
+        this.pubSub = new PubSubMultiplexer<>(pubSubIPCAgent, mqttClient, SERVICE_NAME,
+                new PubSubMultiplexer.Sink<WebSocket>() {
+                    @Override
+                    public void message(Set<WebSocket> conns, CommunicationMessage message) {
+                        broadcastPubSub(conns, message);
+                    }
+
+                    @Override
+                    public void binaryMessage(Set<WebSocket> conns, BinaryPubSubMessage message) {
+                        Collection<WebSocket> unbatched = unbatched(conns, batcher -> batcher.add(message));
+                        if (!unbatched.isEmpty()) {
+                            broadcastBinary(unbatched, message);
+                        }
+                    }
+
+                    @Override
+                    public void stats(Set<WebSocket> conns, PubSubStats stats) {
+                        broadcast(conns, OutboundQueue.Kind.PUB_SUB, stats.getSubId(), stats.getSubscribedTopic(),
+                                new Message(MessageType.PUB_SUB_STATS, stats));
+                    }
+                }, timer);
     }
 
     // links the API impl and starts the socket server
     void startup() {
+        startup(true);
+    }
+
+    /**
+     * Links the API impl and starts taking connections.
+     *
+     * @param listen false if connections are handed over by the HTTP server, in which case this server never opens a
+     *               socket of its own
+     */
+    void startup(boolean listen) {
         if (dashboardAPI instanceof KernelCommunicator) {
-            ((KernelCommunicator) dashboardAPI).linkWithPusher(this);
+            // Kernel changes come in bursts, so they're coalesced rather than pushed as they happen
+            pushScheduler = new PushScheduler(this, pushWindowMillis);
+            ((KernelCommunicator) dashboardAPI).linkWithPusher(pushScheduler);
             ((KernelCommunicator) dashboardAPI).linkWithKernel();
         }
-        start();
+        if (listen) {
+            start();
+        } else {
+            onStart();
+        }
+    }
+
+    void setPubSubSubscribeTimeoutMillis(long timeoutMillis) {
+        pubSub.setSubscribeTimeoutMillis(timeoutMillis);
     }
 
     // for use in testing only
@@ -124,6 +214,7 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
         conn.setAttachment(false);
+        outbound.put(conn, new OutboundQueue(conn, outboundLimits, timer));
         connections.add(conn);
         logger.atInfo().log("New connection from {}", conn.getRemoteSocketAddress());
     }
@@ -148,11 +239,25 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
             return;
         }
 
+        // Calls can block for a long time, so they mustn't run on the thread reading from every other connection
+        if (!requestExecutor.submit(conn, call, () -> handleRequest(conn, packedRequest, call))) {
+            logger.atWarn().kv("Call", req.call).kv("Socket", conn.getRemoteSocketAddress())
+                    .log("Too many pending requests from client, dropping request");
+            sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, "Too many pending requests"));
+        }
+    }
+
+    private void handleRequest(WebSocket conn, PackedRequest packedRequest, APICalls call) {
+        Request req = packedRequest.request;
         // initialize connection
         if (APICalls.init.equals(call)) {
             logger.atDebug().log("Client connection init");
             String echoResponse = null;
-            if (req.args.length != 2 || !authenticator.isUsernameAndPasswordValid(new Pair<>(req.args[0], req.args[1]))) {
+            // The dashboard sends the session token it was given with the page, other clients log in directly
+            boolean authenticated = req.args.length == 1 ? authenticator.isSessionTokenValid(req.args[0])
+                    : req.args.length == 2 && authenticator.isUsernameAndPasswordValid(
+                            new Pair<>(req.args[0], req.args[1]));
+            if (!authenticated) {
                 logger.atError().log("Websocket connection is not authenticated");
                 try {
                     echoResponse = jsonMapper.writeValueAsString(new Message(MessageType.RESPONSE,
@@ -216,32 +321,37 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
                     break;
                 }
                 case subscribeToComponent: {
-                    statusWatchlist.get(req.args[0]).add(conn);
+                    statusWatchlist.subscribe(req.args[0], conn);
                     pushComponentChange(req.args[0]);
                     sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
                     break;
                 }
                 case unsubscribeToComponent: {
-                    removeFromMapOfLists(statusWatchlist, req.args[0], conn);
+                    statusWatchlist.unsubscribe(req.args[0], conn);
                     sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
                     break;
                 }
                 case subscribeToComponentLogs: {
-                    logWatchlist.get(req.args[0]).add(conn);
+                    logWatchlist.subscribe(req.args[0], conn);
                     sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
                     break;
                 }
                 case unsubscribeToComponentLogs: {
-                    removeFromMapOfLists(logWatchlist, req.args[0], conn);
+                    logWatchlist.unsubscribe(req.args[0], conn);
                     sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
                     break;
                 }
-                case forcePushComponentList: {
+                case forcePushComponentList:
+                case resyncComponentList: {
+                    // Sending the list to a connection without it sends all of it
+                    componentListWatchers.remove(conn);
                     pushComponentListUpdate();
                     sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
                     break;
                 }
-                case forcePushDependencyGraph: {
+                case forcePushDependencyGraph:
+                case resyncDependencyGraph: {
+                    dependencyGraphWatchers.remove(conn);
                     pushDependencyGraphUpdate();
                     sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
                     break;
@@ -258,6 +368,10 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
                     unsubscribeFromPubSubTopic(conn, packedRequest, req);
                     break;
                 }
+                case batchPubSubMessages: {
+                    batchPubSubMessages(conn, packedRequest, req);
+                    break;
+                }
                 case streamManagerListStreams: {
                     streamManagerListStreams(conn, packedRequest);
                     break;
@@ -312,59 +426,55 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
         String topicFilter = tree.get("topicFilter").textValue();
         String source = tree.get("source").textValue();
         String subId = tree.get("subId").textValue();
+        String formatName = tree.hasNonNull("format") ? tree.get("format").textValue() : null;
+        PayloadFormat format = PayloadFormat.of(formatName);
+        if (format == null) {
+            sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID,
+                    "Unknown payload format " + formatName));
+            return;
+        }
+        PubSubFilter.Options options;
         try {
-            if (IOT_CORE_SOURCE.equals(source)) {
-                mqttWatchList.get(conn).computeIfAbsent(subId, (a) -> {
-                    Consumer<Publish> cb = (c) -> {
-                        CommunicationMessage resMessage =
-                                new CommunicationMessage(subId, topicFilter, c.getTopic(),
-                                        new String(c.getPayload()));
-                        sendIfOpen(conn, new Message(MessageType.PUB_SUB_MSG, resMessage));
-                    };
-                    Subscribe subReq = Subscribe.builder().callback(cb).topic(topicFilter).build();
-                    try {
-                        mqttClient.subscribe(subReq).get();
-                    } catch (MqttRequestException | InterruptedException | ExecutionException e) {
-                        throw new RuntimeException(e);
-                    }
-                    return subReq;
-                });
-            } else {
-                pubSubWatchList.get(conn).computeIfAbsent(subId, (a) -> {
-                    Consumer<PublishEvent> cb = (c) -> {
-                        CommunicationMessage resMessage =
-                                new CommunicationMessage(subId, topicFilter, c.getTopic(),
-                                        new String(c.getPayload()));
-                        sendIfOpen(conn, new Message(MessageType.PUB_SUB_MSG, resMessage));
-                    };
-                    SubscribeRequest subReq = SubscribeRequest.builder().callback(cb)
-                            .receiveMode(ReceiveMode.RECEIVE_ALL_MESSAGES).topic(topicFilter)
-                            .serviceName(SERVICE_NAME).build();
-                    pubSubIPCAgent.subscribe(subReq);
-                    return subReq;
-                });
-            }
-            sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
-        } catch (Exception e) {
+            options = PubSubFilter.Options.of(tree);
+        } catch (IllegalArgumentException e) {
             sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, e.getMessage()));
+            return;
         }
+        // IoT Core may take a while, so respond once it's done rather than holding up the connection's other calls
+        pubSub.subscribe(conn, subId, source, topicFilter, format, options).whenComplete((added, e) -> {
+            if (e == null) {
+                sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
+            } else {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, cause.getMessage()));
+            }
+        });
     }
 
     private void unsubscribeFromPubSubTopic(WebSocket conn, PackedRequest packedRequest, Request req) {
-        SubscribeRequest subReq = pubSubWatchList.get(conn).remove(req.args[0]);
-        if (subReq != null) {
-            pubSubIPCAgent.unsubscribe(subReq);
+        try {
+            pubSub.unsubscribe(conn, req.args[0]);
+        } catch (MqttRequestException e) {
+            sendIfOpen(conn,
+                    new Message(MessageType.RESPONSE, packedRequest.requestID, e.getMessage()));
+            return;
         }
-        Subscribe mqttSub = mqttWatchList.get(conn).remove(req.args[0]);
-        if (mqttSub != null) {
-            try {
-                mqttClient.unsubscribe(Unsubscribe.builder().topic(mqttSub.getTopic())
-                        .subscriptionCallback(mqttSub.getCallback()).build());
-            } catch (MqttRequestException e) {
-                sendIfOpen(conn,
-                        new Message(MessageType.RESPONSE, packedRequest.requestID, e.getMessage()));
-                return;
-            }
+        sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
+    }
+
+    private void batchPubSubMessages(WebSocket conn, PackedRequest packedRequest, Request req) {
+        PubSubBatcher.Options options;
+        try {
+            options = PubSubBatcher.Options.of(jsonMapper.readTree(req.args[0]));
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, e.getMessage()));
+            return;
+        }
+        OutboundQueue queue = outbound.get(conn);
+        PubSubBatcher old = options == null || queue == null ? batchers.remove(conn)
+                : batchers.put(conn, new PubSubBatcher(conn, queue, options, timer));
+        if (old != null) {
+            old.close();
         }
         sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
     }
@@ -382,13 +492,13 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
         String destination = tree.get("destination").textValue();
         String payload = tree.get("payload").textValue();
         try {
-            if (IOT_CORE_SOURCE.equals(destination)) {
+            if (PubSubMultiplexer.IOT_CORE_SOURCE.equals(destination)) {
                 mqttClient.publish(Publish.builder()
                         .topic(topic)
-                        .payload(payload.getBytes())
+                        .payload(payload.getBytes(StandardCharsets.UTF_8))
                         .build());
             } else {
-                pubSubIPCAgent.publish(topic, payload.getBytes(), SERVICE_NAME);
+                pubSubIPCAgent.publish(topic, payload.getBytes(StandardCharsets.UTF_8), SERVICE_NAME);
             }
             sendIfOpen(conn, new Message(MessageType.RESPONSE, packedRequest.requestID, true));
         } catch (Exception e) {
@@ -504,16 +614,28 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
         connections.remove(conn);
-        statusWatchlist.forEach((name, set) -> set.remove(conn));
-        logWatchlist.forEach((name, set) -> set.remove(conn));
-        pubSubWatchList.get(conn).forEach((topic, sub) -> pubSubIPCAgent.unsubscribe(sub));
-        mqttWatchList.get(conn).forEach((topic, sub) -> {
-            try {
-                mqttClient.unsubscribe(Unsubscribe.builder()
-                        .subscriptionCallback(sub.getCallback())
-                        .topic(sub.getTopic()).build());
-            } catch (MqttRequestException e) {
-                logger.error("failed to unsubscribe", e);
+        componentListWatchers.remove(conn);
+        dependencyGraphWatchers.remove(conn);
+        OutboundQueue queue = outbound.remove(conn);
+        if (queue != null) {
+            queue.close();
+            droppedMessages.add(queue.getDropped());
+            if (queue.isDisconnected()) {
+                slowDisconnects.increment();
+            }
+            if (queue.getDropped() > 0) {
+                logger.atWarn().kv("dropped", queue.getDroppedByTopic()).kv("disconnected", queue.isDisconnected())
+                        .log("Dropped messages for {} which was too far behind", conn.getRemoteSocketAddress());
+            }
+        }
+        // A call still running for the connection may subscribe it to something, so clean up once it's done
+        requestExecutor.close(conn, () -> {
+            statusWatchlist.unsubscribeAll(conn);
+            logWatchlist.unsubscribeAll(conn);
+            pubSub.unsubscribeAll(conn);
+            PubSubBatcher batcher = batchers.remove(conn);
+            if (batcher != null) {
+                batcher.discard();
             }
         });
         logger.atInfo()
@@ -526,6 +648,21 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
                 conn == null ? null : conn.getRemoteSocketAddress());
     }
 
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        super.stop(timeout);
+        requestExecutor.shutdown();
+        logger.atInfo().kv("requests", requestExecutor).log("Dashboard request summary");
+        if (pushScheduler != null) {
+            pushScheduler.shutdown();
+            logger.atInfo().kv("pushes", pushScheduler).log("Dashboard push summary");
+        }
+        logger.atInfo().kv("pubSub", pubSub).log("Dashboard pub/sub summary");
+        timer.shutdownNow();
+        logger.atInfo().kv("dropped", droppedMessages.sum()).kv("disconnected", slowDisconnects.sum())
+                .log("Dashboard outbound summary");
+    }
+
     @Override
     public void onStart() {
         logger.atInfo().log(SERVER_START_MESSAGE);
@@ -534,47 +671,233 @@ public class DashboardServer extends WebSocketServer implements KernelMessagePus
 
     @Override
     public void pushComponentListUpdate() {
-        for (WebSocket conn : connections) {
-            sendIfOpen(conn, new Message(MessageType.COMPONENT_LIST, dashboardAPI.getComponentList()));
+        if (!hasAuthenticated(connections)) {
+            return;
+        }
+        synchronized (componentList) {
+            ComponentListDelta delta = componentList.update(dashboardAPI.getComponentList());
+            pushChanges(componentListWatchers, OutboundQueue.Kind.COMPONENT_LIST, delta == null ? null
+                            : new Message(MessageType.COMPONENT_LIST_DELTA, delta),
+                    () -> new Message(MessageType.COMPONENT_LIST, componentList.snapshot()));
         }
     }
 
     @Override
     public void pushComponentChange(String name) {
-        if (statusWatchlist.containsKey(name)) {
-            statusWatchlist.computeIfPresent(name, (k,set) -> {
-                for (WebSocket conn : set) {
-                    sendIfOpen(conn, new Message(MessageType.COMPONENT_CHANGE, dashboardAPI.getComponent(name)));
-                }
-                return set;
-            });
+        Set<WebSocket> watchers = statusWatchlist.getSubscribers(name);
+        if (hasAuthenticated(watchers)) {
+            broadcast(watchers, OutboundQueue.Kind.COMPONENT_CHANGE, name, null,
+                    new Message(MessageType.COMPONENT_CHANGE, dashboardAPI.getComponent(name)));
         }
     }
 
     @Override
     public void pushDependencyGraphUpdate() {
+        if (!hasAuthenticated(connections)) {
+            return;
+        }
+        synchronized (dependencyGraph) {
+            DependencyGraphDelta delta = dependencyGraph.update(dashboardAPI.getDependencyGraph());
+            pushChanges(dependencyGraphWatchers, OutboundQueue.Kind.DEPENDENCY_GRAPH, delta == null ? null
+                            : new Message(MessageType.DEPS_GRAPH_DELTA, delta),
+                    () -> new Message(MessageType.DEPS_GRAPH, dependencyGraph.snapshot()));
+        }
+    }
+
+    /**
+     * Send a change to the connections which have everything before it, and everything to the ones which don't.
+     *
+     * @param watchers connections which have been sent everything, connections are added once they have been
+     * @param kind     what is being pushed
+     * @param delta    the change, or null if there wasn't one
+     * @param snapshot everything including the change
+     */
+    private void pushChanges(Set<WebSocket> watchers, OutboundQueue.Kind kind, Message delta,
+                             Supplier<Message> snapshot) {
+        if (delta != null) {
+            broadcast(watchers, kind, null, null, delta);
+        }
+        // New connections, and any which fell behind, need something to apply later changes to
+        List<WebSocket> behind = new ArrayList<>();
         for (WebSocket conn : connections) {
-            sendIfOpen(conn, new Message(MessageType.DEPS_GRAPH, dashboardAPI.getDependencyGraph()));
+            if (isAuthenticated(conn) && !watchers.contains(conn)) {
+                behind.add(conn);
+            }
+        }
+        if (!behind.isEmpty()) {
+            broadcastSnapshot(behind, kind, snapshot.get());
+            for (WebSocket conn : behind) {
+                watchers.add(conn);
+                // onClose removes the connection before it removes the watcher, so one which closed meanwhile is
+                // either removed by onClose or no longer in the connections here
+                if (!connections.contains(conn)) {
+                    watchers.remove(conn);
+                }
+            }
         }
     }
 
-    void removeFromMapOfLists(Map<String, Set<WebSocket>> map, String key, WebSocket entry) {
-        map.get(key).remove(entry);
-        map.computeIfPresent(key, (k, v) -> {
-            if (v.isEmpty()) {
-                return null;
+    private static boolean hasAuthenticated(Collection<WebSocket> conns) {
+        for (WebSocket conn : conns) {
+            if (isAuthenticated(conn)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAuthenticated(WebSocket conn) {
+        return conn != null && Boolean.TRUE.equals(conn.getAttachment());
+    }
+
+    /**
+     * Send the same message to many connections. The message is serialized and framed once, and every connection
+     * is sent the same bytes, rather than each one paying for its own copy.
+     */
+    private void broadcast(Collection<WebSocket> conns, OutboundQueue.Kind kind, String key, String topic,
+                           Message msg) {
+        broadcast(conns, msg, (queue, payload) -> queue.offer(kind, key, topic, payload));
+    }
+
+    /**
+     * Send everything of a kind to many connections, which must not be dropped for the changes which follow it.
+     */
+    private void broadcastSnapshot(Collection<WebSocket> conns, OutboundQueue.Kind kind, Message msg) {
+        broadcast(conns, msg, (queue, payload) -> queue.offerSnapshot(kind, payload));
+    }
+
+    private void broadcast(Collection<WebSocket> conns, Message msg,
+                           BiConsumer<OutboundQueue, OutboundQueue.Payload> offer) {
+        String text;
+        try {
+            text = jsonMapper.writeValueAsString(msg);
+        } catch (JsonProcessingException j) {
+            logger.atError().setCause(j).log("Unable to stringify the message: {}", msg);
+            return;
+        }
+        // Java-WebSocket frames depend on the connection's draft, Netty connections all share one buffer
+        Map<Draft, List<Framedata>> frames = new HashMap<>();
+        ByteBuf shared = null;
+        try {
+            for (WebSocket conn : conns) {
+                OutboundQueue queue = outbound.get(conn);
+                if (queue == null || !isAuthenticated(conn)) {
+                    continue;
+                }
+                if (conn instanceof NettyWebSocket) {
+                    if (shared == null) {
+                        shared = Unpooled.wrappedBuffer(text.getBytes(StandardCharsets.UTF_8));
+                    }
+                    offer.accept(queue, new OutboundQueue.BufferPayload(shared));
+                } else {
+                    offer.accept(queue, new OutboundQueue.FramesPayload(new OutboundQueue.TextPayload(text),
+                            frames.computeIfAbsent(conn.getDraft(), d -> d.createFrames(text, false))));
+                }
             }
-            return v;
+        } finally {
+            if (shared != null) {
+                shared.release();
+            }
+        }
+    }
+
+    /**
+     * Send a pub/sub message to many connections, where those which asked for batches get it in their next batch.
+     */
+    private void broadcastPubSub(Set<WebSocket> conns, CommunicationMessage message) {
+        String[] payload = new String[1];
+        Collection<WebSocket> unbatched = unbatched(conns, batcher -> {
+            if (payload[0] == null) {
+                try {
+                    payload[0] = jsonMapper.writeValueAsString(message);
+                } catch (JsonProcessingException j) {
+                    logger.atError().setCause(j).log("Unable to stringify the message: {}", message);
+                    return;
+                }
+            }
+            batcher.add(message.getSubscribedTopic(), payload[0]);
         });
+        if (!unbatched.isEmpty()) {
+            broadcast(unbatched, OutboundQueue.Kind.PUB_SUB, message.getSubId(), message.getSubscribedTopic(),
+                    new Message(MessageType.PUB_SUB_MSG, message));
+        }
+    }
+
+    /**
+     * Hand a message to the batchers of connections which batch pub/sub messages.
+     *
+     * @return the connections which don't batch, which the message still has to be sent to
+     */
+    private Collection<WebSocket> unbatched(Set<WebSocket> conns, Consumer<PubSubBatcher> add) {
+        if (batchers.isEmpty()) {
+            return conns;
+        }
+        List<WebSocket> unbatched = new ArrayList<>(conns.size());
+        for (WebSocket conn : conns) {
+            PubSubBatcher batcher = batchers.get(conn);
+            if (batcher == null) {
+                unbatched.add(conn);
+            } else if (isAuthenticated(conn)) {
+                add.accept(batcher);
+            }
+        }
+        return unbatched;
+    }
+
+    /**
+     * Send the same pub/sub message to many connections as a binary frame. Netty connections are sent the header
+     * followed by the payload as it arrived, without copying it, while Java-WebSocket connections share one copy.
+     */
+    private void broadcastBinary(Collection<WebSocket> conns, BinaryPubSubMessage msg) {
+        byte[] header;
+        try {
+            header = msg.encodeHeader();
+        } catch (IllegalArgumentException e) {
+            logger.atError().setCause(e).kv("topic", msg.getTopic()).log("Unable to forward the message");
+            return;
+        }
+        Map<Draft, List<Framedata>> frames = new HashMap<>();
+        ByteBuffer encoded = null;
+        ByteBuf shared = null;
+        try {
+            for (WebSocket conn : conns) {
+                OutboundQueue queue = outbound.get(conn);
+                if (queue == null || !isAuthenticated(conn)) {
+                    continue;
+                }
+                if (conn instanceof NettyWebSocket) {
+                    if (shared == null) {
+                        shared = Unpooled.wrappedBuffer(header, msg.getPayload());
+                    }
+                    queue.offer(OutboundQueue.Kind.PUB_SUB, msg.getSubId(), msg.getSubscribedTopic(),
+                            new OutboundQueue.BufferPayload(shared, true));
+                } else {
+                    if (encoded == null) {
+                        encoded = ByteBuffer.wrap(msg.encode());
+                    }
+                    ByteBuffer bytes = encoded;
+                    queue.offer(OutboundQueue.Kind.PUB_SUB, msg.getSubId(), msg.getSubscribedTopic(),
+                            new OutboundQueue.FramesPayload(new OutboundQueue.BinaryPayload(bytes),
+                                    frames.computeIfAbsent(conn.getDraft(),
+                                            d -> d.createFrames(bytes.duplicate(), false))));
+                }
+            }
+        } finally {
+            if (shared != null) {
+                shared.release();
+            }
+        }
     }
 
     private void sendIfOpen(WebSocket conn, Message msg) {
-        if (conn != null && (boolean) conn.getAttachment()) {
+        sendIfOpen(conn, OutboundQueue.Kind.RESPONSE, null, null, msg);
+    }
+
+    private void sendIfOpen(WebSocket conn, OutboundQueue.Kind kind, String key, String topic, Message msg) {
+        OutboundQueue queue = outbound.get(conn);
+        if (queue != null && isAuthenticated(conn)) {
             try {
-                String temp = jsonMapper.writeValueAsString(msg);
-                conn.send(temp);
-            } catch (WebsocketNotConnectedException e) {
-                // a normal occurrence if the dashboard is not connected, e.g. if the user closes the browser
+                queue.offer(kind, key, topic, new OutboundQueue.TextPayload(jsonMapper.writeValueAsString(msg)));
             } catch (JsonProcessingException j) {
                 logger.atError().setCause(j).log("Unable to stringify the message: {}", msg);
             }
@@ -0,0 +1,91 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.messageutils.DepGraphNode;
+import com.aws.greengrass.localdebugconsole.messageutils.Dependency;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyEdge;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the dependency graph which dashboards were last sent, so that a push only has to carry the nodes and edges
+ * which changed since. Every change moves the version on by one, which lets a client notice that it missed one.
+ *
+ * <p>Not thread safe, the caller must make sure that changes are sent in the order they are made.
+ */
+class DependencyGraphTracker {
+    // Each node's dependencies, and whether they are hard
+    private final Map<String, Map<String, Boolean>> nodes = new LinkedHashMap<>();
+    private long version;
+
+    /**
+     * Replace the graph.
+     *
+     * @param graph the current dependency graph
+     * @return what changed, or null if nothing did
+     */
+    DependencyGraphDelta update(DepGraphNode[] graph) {
+        Map<String, Map<String, Boolean>> previous = new LinkedHashMap<>(nodes);
+        List<String> addedNodes = new ArrayList<>();
+        List<DependencyEdge> addedEdges = new ArrayList<>();
+        List<DependencyEdge> removedEdges = new ArrayList<>();
+        nodes.clear();
+        if (graph != null) {
+            for (DepGraphNode node : graph) {
+                Map<String, Boolean> children = new LinkedHashMap<>();
+                for (Dependency dependency : node.getChildren()) {
+                    children.put(dependency.getName(), dependency.isHard());
+                }
+                nodes.put(node.getName(), children);
+
+                Map<String, Boolean> old = previous.remove(node.getName());
+                if (old == null) {
+                    addedNodes.add(node.getName());
+                    old = Collections.emptyMap();
+                }
+                for (Map.Entry<String, Boolean> child : children.entrySet()) {
+                    if (!child.getValue().equals(old.get(child.getKey()))) {
+                        addedEdges.add(new DependencyEdge(node.getName(), child.getKey(), child.getValue()));
+                    }
+                }
+                for (Map.Entry<String, Boolean> child : old.entrySet()) {
+                    if (!children.containsKey(child.getKey())) {
+                        removedEdges.add(new DependencyEdge(node.getName(), child.getKey(), child.getValue()));
+                    }
+                }
+            }
+        }
+        // Whatever wasn't matched up is gone
+        if (addedNodes.isEmpty() && addedEdges.isEmpty() && removedEdges.isEmpty() && previous.isEmpty()) {
+            return null;
+        }
+        version++;
+        return new DependencyGraphDelta(version, addedNodes.toArray(new String[0]),
+                previous.keySet().toArray(new String[0]), addedEdges.toArray(new DependencyEdge[0]),
+                removedEdges.toArray(new DependencyEdge[0]));
+    }
+
+    DependencyGraphSnapshot snapshot() {
+        List<DepGraphNode> graph = new ArrayList<>(nodes.size());
+        for (Map.Entry<String, Map<String, Boolean>> node : nodes.entrySet()) {
+            List<Dependency> children = new ArrayList<>(node.getValue().size());
+            node.getValue().forEach((name, hard) -> children.add(new Dependency(name, hard)));
+            graph.add(new DepGraphNode(node.getKey(), children.toArray(new Dependency[0])));
+        }
+        return new DependencyGraphSnapshot(version, graph.toArray(new DepGraphNode[0]));
+    }
+
+    long getVersion() {
+        return version;
+    }
+}
@@ -5,6 +5,8 @@
 
 package com.aws.greengrass.localdebugconsole;
 
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
 import org.java_websocket.SSLSocketChannel2;
 import org.java_websocket.WebSocketAdapter;
 import org.java_websocket.WebSocketImpl;
@@ -13,27 +15,41 @@ import org.java_websocket.drafts.Draft;
 import org.java_websocket.server.DefaultSSLWebSocketServerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Provider;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLSession;
 
 /**
  * This class is based on {@link DefaultSSLWebSocketServerFactory} but instead of accepting a {@link javax.net.ssl.SSLContext}
  * it instead takes a provider of {@link SSLEngine}.
  */
 public class GGSSLWebSocketServerFactory implements WebSocketServerFactory {
+    private static final Logger logger = LogManager.getLogger(GGSSLWebSocketServerFactory.class);
+    // Handshakes waiting for a delegated task thread beyond this run the task on the selector thread instead
+    private static final int MAX_QUEUED_TASKS = 1024;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     protected Provider<SSLEngine> engineProvider;
     protected ExecutorService exec;
+    private final TlsHandshakeMetrics handshakeMetrics = new TlsHandshakeMetrics();
 
     public GGSSLWebSocketServerFactory(Provider<SSLEngine> engineProvider) {
-        this(engineProvider, Executors.newSingleThreadScheduledExecutor());
+        this(engineProvider, newHandshakeExecutor(0));
     }
 
     public GGSSLWebSocketServerFactory(Provider<SSLEngine> engineProvider, ExecutorService exec) {
@@ -47,12 +63,60 @@ public class GGSSLWebSocketServerFactory implements WebSocketServerFactory {
 
     @Override
     public ByteChannel wrapChannel(SocketChannel channel, SelectionKey key) throws IOException {
-        SSLEngine e = this.engineProvider.get();
+        SSLEngine e;
+        try {
+            e = this.engineProvider.get();
+        } catch (RuntimeException ex) {
+            // An IOException only closes this connection, anything else would stop the whole server
+            throw new IOException("No TLS engine for the connection", ex);
+        }
         List<String> ciphers = new ArrayList<>(Arrays.asList(e.getEnabledCipherSuites()));
         ciphers.remove("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
         e.setEnabledCipherSuites(ciphers.toArray(new String[0]));
         e.setUseClientMode(false);
-        return new SSLSocketChannel2(channel, e, this.exec, key);
+        return new TimedSSLSocketChannel(channel, e, this.exec, key, System.nanoTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * Create an executor for the SSL engine's delegated tasks, which is where the expensive key exchange and
+     * certificate work of a handshake happens. A single thread would make every client wait for the handshakes of
+     * all the clients which connected before it.
+     *
+     * @param threads number of threads, or 0 or less to use virtual threads if the JVM has them and otherwise one
+     *                thread per core
+     * @return the executor
+     */
+    static ExecutorService newHandshakeExecutor(int threads) {
+        if (threads <= 0) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return virtual;
+            }
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_TASKS), r -> {
+            Thread t = new Thread(r, "dashboard-tls-handshake-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        // The console is mostly idle, so don't hold on to threads between bursts of connections
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Java 21+, looked up reflectively since we still build for Java 8
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    TlsHandshakeMetrics getHandshakeMetrics() {
+        return handshakeMetrics;
     }
 
     @Override
@@ -68,5 +132,83 @@ public class GGSSLWebSocketServerFactory implements WebSocketServerFactory {
     @Override
     public void close() {
         this.exec.shutdownNow();
+        if (handshakeMetrics.getCompleted() + handshakeMetrics.getFailed() > 0) {
+            logger.atInfo().kv("handshakes", handshakeMetrics).log("Websocket TLS handshake summary");
+        }
+    }
+
+    /**
+     * Records how long the TLS handshake took, from accepting the connection until the engine reports it finished.
+     */
+    private class TimedSSLSocketChannel extends SSLSocketChannel2 {
+        private final long startNanos;
+        private final long startMillis;
+        // Only set once the super constructor is done, since it already calls createBuffers
+        private boolean measuring;
+        private boolean handshakeDone;
+
+        TimedSSLSocketChannel(SocketChannel channel, SSLEngine sslEngine, ExecutorService exec, SelectionKey key,
+                              long startNanos, long startMillis) throws IOException {
+            super(channel, sslEngine, exec, key);
+            this.startNanos = startNanos;
+            this.startMillis = startMillis;
+            this.measuring = true;
+        }
+
+        @Override
+        protected void createBuffers(SSLSession session) {
+            super.createBuffers(session);
+            // Buffers are created again once the handshake has finished
+            if (measuring && !handshakeDone) {
+                handshakeDone = true;
+                long nanos = System.nanoTime() - startNanos;
+                boolean resumed = TlsHandshakeMetrics.isResumed(session, startMillis);
+                handshakeMetrics.recordCompleted(nanos, resumed);
+                logger.atDebug().kv("protocol", session.getProtocol()).kv("resumed", resumed)
+                        .kv("latencyMs", TimeUnit.NANOSECONDS.toMillis(nanos)).log("Websocket TLS handshake done");
+            }
+        }
+
+        /**
+         * The handshake only needs the selector to report the socket writable while it has something to send or is
+         * waiting on delegated tasks. Waiting for the client is left to the read path, since a read which finishes the
+         * handshake can also pick up the client's first request, and only the read path passes that on. Done from the
+         * write path, the request would sit in our buffers until the client sent something else.
+         */
+        @Override
+        public boolean isNeedWrite() {
+            return outCrypt.hasRemaining() || !isHandshakeComplete()
+                    && (!tasks.isEmpty() || sslEngine.getHandshakeStatus() != HandshakeStatus.NEED_UNWRAP);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int read = super.read(dst);
+            // With TLS 1.3 the server still has a session ticket to send once it has read the client's Finished, which
+            // may have arrived with the first request. Send it now so the request can be read.
+            while (read == 0 && tasks.isEmpty() && sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+                write(EMPTY);
+                read = super.read(dst);
+            }
+            if (isNeedWrite()) {
+                // Delegated tasks were started or there is more to send
+                selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+            }
+            return read;
+        }
+
+        private boolean isHandshakeComplete() {
+            HandshakeStatus status = sslEngine.getHandshakeStatus();
+            return status == HandshakeStatus.FINISHED || status == HandshakeStatus.NOT_HANDSHAKING;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (measuring && !handshakeDone) {
+                handshakeDone = true;
+                handshakeMetrics.recordFailed();
+            }
+            super.close();
+        }
     }
 }
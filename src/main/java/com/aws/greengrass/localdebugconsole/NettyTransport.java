@@ -0,0 +1,86 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * The socket transport used by the HTTP server. Native epoll avoids the JDK selector and its garbage, but it is only
+ * available on Linux when the native library for the platform could be loaded, so NIO is always there as a fallback.
+ */
+enum NettyTransport {
+    EPOLL {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads) {
+            return new EpollEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+    },
+    NIO {
+        @Override
+        EventLoopGroup newEventLoopGroup(int threads) {
+            return new NioEventLoopGroup(threads);
+        }
+
+        @Override
+        Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+    };
+
+    /**
+     * Create an event loop group for this transport.
+     *
+     * @param threads number of threads, or 0 to use Netty's default of twice the number of cores
+     * @return the event loop group
+     */
+    abstract EventLoopGroup newEventLoopGroup(int threads);
+
+    abstract Class<? extends ServerChannel> serverChannelClass();
+
+    /**
+     * Pick the best transport for this platform.
+     *
+     * @param nativeEnabled whether a native transport may be used at all
+     * @return epoll if it is allowed and available, otherwise NIO
+     */
+    static NettyTransport select(boolean nativeEnabled) {
+        if (nativeEnabled && isEpollAvailable()) {
+            return EPOLL;
+        }
+        return NIO;
+    }
+
+    /**
+     * Reason that epoll couldn't be used, for logging.
+     */
+    static Throwable epollUnavailabilityCause() {
+        try {
+            return Epoll.unavailabilityCause();
+        } catch (LinkageError e) {
+            return e;
+        }
+    }
+
+    private static boolean isEpollAvailable() {
+        try {
+            return Epoll.isAvailable();
+        } catch (LinkageError e) {
+            // Native transport classes left out of the package
+            return false;
+        }
+    }
+}
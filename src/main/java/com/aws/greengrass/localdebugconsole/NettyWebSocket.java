@@ -0,0 +1,298 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PongWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.ssl.SslHandler;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import javax.net.ssl.SSLSession;
+
+/**
+ * A websocket served from the Netty HTTP server, presented as a Java-WebSocket {@link WebSocket} so that the
+ * {@link DashboardServer} can treat it exactly like one of its own connections.
+ */
+final class NettyWebSocket implements WebSocket {
+    private final Channel channel;
+    private final String resourceDescriptor;
+    private volatile Object attachment;
+    private volatile boolean closing;
+    private volatile boolean closedLocally;
+    private volatile int closeCode = CloseFrame.ABNORMAL_CLOSE;
+    private volatile String closeReason = "";
+    // Only touched by whoever is sending fragments
+    private boolean fragmenting;
+
+    NettyWebSocket(Channel channel, String resourceDescriptor) {
+        this.channel = channel;
+        this.resourceDescriptor = resourceDescriptor;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    int getCloseCode() {
+        return closeCode;
+    }
+
+    String getCloseReason() {
+        return closeReason;
+    }
+
+    boolean isClosedLocally() {
+        return closedLocally;
+    }
+
+    /**
+     * Record the close frame sent by the client.
+     */
+    void remoteClose(int code, String reason) {
+        if (!closedLocally) {
+            closing = true;
+            closeCode = code;
+            closeReason = reason == null ? "" : reason;
+        }
+    }
+
+    @Override
+    public void close(int code, String message) {
+        if (closing) {
+            return;
+        }
+        closing = true;
+        closedLocally = true;
+        closeCode = code;
+        closeReason = message == null ? "" : message;
+        channel.writeAndFlush(new CloseWebSocketFrame(code, closeReason)).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    @Override
+    public void close(int code) {
+        close(code, "");
+    }
+
+    @Override
+    public void close() {
+        close(CloseFrame.NORMAL);
+    }
+
+    @Override
+    public void closeConnection(int code, String message) {
+        closing = true;
+        closedLocally = true;
+        closeCode = code;
+        closeReason = message == null ? "" : message;
+        channel.close();
+    }
+
+    @Override
+    public void send(String text) {
+        write(new TextWebSocketFrame(text));
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        // The caller may reuse the buffer once this returns
+        write(new BinaryWebSocketFrame(Unpooled.copiedBuffer(bytes)));
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        write(new BinaryWebSocketFrame(Unpooled.wrappedBuffer(bytes)));
+    }
+
+    /**
+     * Send a text message which is being sent to other connections too.
+     *
+     * @param text UTF-8 text, which is neither copied nor released
+     */
+    void sendText(ByteBuf text) {
+        write(new TextWebSocketFrame(text.retainedDuplicate()));
+    }
+
+    /**
+     * Send a binary message which is being sent to other connections too.
+     *
+     * @param bytes the message, which is neither copied nor released
+     */
+    void sendBinary(ByteBuf bytes) {
+        write(new BinaryWebSocketFrame(bytes.retainedDuplicate()));
+    }
+
+    @Override
+    public void sendFrame(Framedata framedata) {
+        write(toNetty(framedata.getOpcode(), framedata.isFin(), framedata.getPayloadData()));
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> frames) {
+        checkOpen();
+        for (Framedata framedata : frames) {
+            channel.write(toNetty(framedata.getOpcode(), framedata.isFin(), framedata.getPayloadData()));
+        }
+        channel.flush();
+    }
+
+    @Override
+    public void sendPing() {
+        write(new PingWebSocketFrame());
+    }
+
+    @Override
+    public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean last) {
+        Opcode opcode = fragmenting ? Opcode.CONTINUOUS : op;
+        fragmenting = !last;
+        write(toNetty(opcode, last, buffer));
+    }
+
+    private static WebSocketFrame toNetty(Opcode opcode, boolean fin, ByteBuffer payload) {
+        ByteBuf data = Unpooled.copiedBuffer(payload);
+        switch (opcode) {
+            case CONTINUOUS:
+                return new ContinuationWebSocketFrame(fin, 0, data);
+            case TEXT:
+                return new TextWebSocketFrame(fin, 0, data);
+            case BINARY:
+                return new BinaryWebSocketFrame(fin, 0, data);
+            case PING:
+                return new PingWebSocketFrame(data);
+            case PONG:
+                return new PongWebSocketFrame(data);
+            case CLOSING:
+                return new CloseWebSocketFrame(true, 0, data);
+            default:
+                data.release();
+                throw new IllegalArgumentException("Unsupported opcode " + opcode);
+        }
+    }
+
+    private void write(WebSocketFrame frame) {
+        if (!isOpen()) {
+            frame.release();
+            throw new WebsocketNotConnectedException();
+        }
+        channel.writeAndFlush(frame, channel.voidPromise());
+    }
+
+    private void checkOpen() {
+        if (!isOpen()) {
+            throw new WebsocketNotConnectedException();
+        }
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer != null && buffer.totalPendingWriteBytes() > 0;
+    }
+
+    /**
+     * How many bytes are waiting to be written to the socket.
+     */
+    long pendingWriteBytes() {
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return (InetSocketAddress) channel.remoteAddress();
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return (InetSocketAddress) channel.localAddress();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return getReadyState() == ReadyState.OPEN;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return getReadyState() == ReadyState.CLOSING;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return getReadyState() == ReadyState.CLOSED;
+    }
+
+    /**
+     * Netty does the framing, so there is no Java-WebSocket draft behind this connection.
+     *
+     * @return null
+     */
+    @Override
+    public Draft getDraft() {
+        return null;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        if (!channel.isActive()) {
+            return ReadyState.CLOSED;
+        }
+        return closing ? ReadyState.CLOSING : ReadyState.OPEN;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return resourceDescriptor;
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return channel.pipeline().get(SslHandler.class) != null;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        SslHandler sslHandler = channel.pipeline().get(SslHandler.class);
+        if (sslHandler == null) {
+            throw new IllegalArgumentException("This websocket uses ws instead of wss. No SSLSession available.");
+        }
+        return sslHandler.engine().getSession();
+    }
+}
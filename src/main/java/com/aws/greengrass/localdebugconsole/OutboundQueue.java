@@ -0,0 +1,684 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+import io.netty.buffer.ByteBuf;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounds what the dashboard holds in memory for one connection.
+ *
+ * <p>Neither websocket transport limits how much it buffers for a connection, so a tab on a slow link which is
+ * subscribed to a busy topic used to grow the heap until the nucleus struggled. Messages still go straight to the
+ * transport while it has little buffered, but past that they wait here, where there are limits on how many messages
+ * and bytes may wait. When a message goes over a limit, the {@link Policy} for its {@link Kind} decides what gives.
+ * Neither transport says when a write has finished, so waiting messages are sent by polling the transport.
+ */
+class OutboundQueue {
+    private static final Logger logger = LogManager.getLogger(OutboundQueue.class);
+    static final int DEFAULT_MAX_MESSAGES = 1000;
+    static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+    // What the transport may have buffered before messages wait here instead, where they can still be dropped
+    static final long TRANSPORT_HIGH_WATER_BYTES = 64L * 1024;
+    static final long DRAIN_INTERVAL_MILLIS = 20;
+
+    /**
+     * What to do when a message would take a connection over its limits.
+     */
+    enum Policy {
+        /**
+         * Drop the oldest waiting messages of the same kind to make room.
+         */
+        DROP_OLDEST("drop-oldest"),
+        /**
+         * Drop the new message.
+         */
+        DROP_NEWEST("drop-newest"),
+        /**
+         * Drop waiting messages which the new one replaces, e.g. older states of the same component, then the oldest
+         * of the same kind if that isn't enough. Messages without a key, such as batches, don't replace anything.
+         */
+        COALESCE("coalesce"),
+        /**
+         * Drop waiting messages of less important kinds which may be dropped, then disconnect the client if that isn't
+         * enough, which reloads everything when it reconnects.
+         */
+        DISCONNECT("disconnect");
+
+        private final String configValue;
+
+        Policy(String configValue) {
+            this.configValue = configValue;
+        }
+
+        String getConfigValue() {
+            return configValue;
+        }
+
+        /**
+         * Get the policy for a config value.
+         *
+         * @param value config value such as drop-oldest
+         * @return the policy, or null if there is none by that name
+         */
+        static Policy of(String value) {
+            for (Policy policy : values()) {
+                if (policy.configValue.equalsIgnoreCase(value)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Kinds of message, most important first, which each have their own overflow policy.
+     */
+    enum Kind {
+        /**
+         * Responses to API calls, which the dashboard waits on.
+         */
+        RESPONSE("response", Policy.DISCONNECT),
+        /**
+         * The component list. A dropped change is noticed by the client, which asks for the whole list again. The
+         * whole list is offered as a snapshot, since the client can't apply any change without it.
+         */
+        COMPONENT_LIST("componentList", Policy.COALESCE),
+        /**
+         * The dependency graph, which recovers from drops the same way as the component list.
+         */
+        DEPENDENCY_GRAPH("dependencyGraph", Policy.COALESCE),
+        /**
+         * The state of one component, where only the latest matters.
+         */
+        COMPONENT_CHANGE("componentChange", Policy.COALESCE),
+        /**
+         * Messages from local pub/sub and IoT Core subscriptions.
+         */
+        PUB_SUB("pubSub", Policy.DROP_OLDEST);
+
+        private final String configKey;
+        private final Policy defaultPolicy;
+
+        Kind(String configKey, Policy defaultPolicy) {
+            this.configKey = configKey;
+            this.defaultPolicy = defaultPolicy;
+        }
+
+        String getConfigKey() {
+            return configKey;
+        }
+
+        Policy getDefaultPolicy() {
+            return defaultPolicy;
+        }
+    }
+
+    /**
+     * Limits shared by every connection.
+     */
+    static final class Limits {
+        static final Limits DEFAULT = new Limits(DEFAULT_MAX_MESSAGES, DEFAULT_MAX_BYTES, defaultPolicies());
+
+        private final int maxMessages;
+        private final long maxBytes;
+        private final Map<Kind, Policy> policies;
+
+        /**
+         * Constructor.
+         *
+         * @param maxMessages how many messages may wait for a connection
+         * @param maxBytes    how many bytes of messages may wait for a connection
+         * @param policies    what to do with each kind of message over the limits, kinds which are left out use
+         *                    their default
+         */
+        Limits(int maxMessages, long maxBytes, Map<Kind, Policy> policies) {
+            this.maxMessages = maxMessages;
+            this.maxBytes = maxBytes;
+            this.policies = new EnumMap<>(Kind.class);
+            for (Kind kind : Kind.values()) {
+                this.policies.put(kind, policies.getOrDefault(kind, kind.getDefaultPolicy()));
+            }
+        }
+
+        Policy policyFor(Kind kind) {
+            return policies.get(kind);
+        }
+    }
+
+    static Map<Kind, Policy> defaultPolicies() {
+        Map<Kind, Policy> policies = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            policies.put(kind, kind.getDefaultPolicy());
+        }
+        return policies;
+    }
+
+    /**
+     * A message on its way to the connection.
+     */
+    interface Payload {
+        /**
+         * Roughly how many bytes the message takes up.
+         */
+        int size();
+
+        void sendTo(WebSocket conn);
+
+        /**
+         * Get a payload which can wait to be sent. This one may only be valid until the caller returns, e.g. because
+         * its bytes are shared with other connections.
+         */
+        default Payload hold() {
+            return this;
+        }
+
+        /**
+         * Called once a held payload has been sent or dropped.
+         */
+        default void release() {
+        }
+    }
+
+    /**
+     * A message as text, which any connection can send.
+     */
+    static final class TextPayload implements Payload {
+        private final String text;
+
+        TextPayload(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int size() {
+            return text.length();
+        }
+
+        @Override
+        public void sendTo(WebSocket conn) {
+            conn.send(text);
+        }
+    }
+
+    /**
+     * A binary message, which any connection can send.
+     */
+    static final class BinaryPayload implements Payload {
+        private final ByteBuffer bytes;
+
+        /**
+         * Constructor.
+         *
+         * @param bytes the message, which mustn't change while this is around
+         */
+        BinaryPayload(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int size() {
+            return bytes.remaining();
+        }
+
+        @Override
+        public void sendTo(WebSocket conn) {
+            // Sending moves the buffer's position, and this may be sent again after a failed attempt
+            conn.send(bytes.duplicate());
+        }
+    }
+
+    /**
+     * A message framed for Java-WebSocket connections, where the frames are shared with other connections.
+     */
+    static final class FramesPayload implements Payload {
+        private final Payload message;
+        private final List<Framedata> frames;
+
+        /**
+         * Constructor.
+         *
+         * @param message the message which was framed, to send instead if this has to wait
+         * @param frames  the framed message
+         */
+        FramesPayload(Payload message, List<Framedata> frames) {
+            this.message = message;
+            this.frames = frames;
+        }
+
+        @Override
+        public int size() {
+            return message.size();
+        }
+
+        @Override
+        public void sendTo(WebSocket conn) {
+            conn.sendFrame(frames);
+        }
+
+        @Override
+        public Payload hold() {
+            // Sending the frames moves their buffers, so only the caller's thread may send them
+            return message.hold();
+        }
+    }
+
+    /**
+     * A message for Netty connections, where the bytes are shared with other connections.
+     */
+    static final class BufferPayload implements Payload {
+        private final ByteBuf bytes;
+        private final boolean binary;
+        private final boolean held;
+
+        /**
+         * Constructor for a text message.
+         *
+         * @param text UTF-8 text
+         */
+        BufferPayload(ByteBuf text) {
+            this(text, false, false);
+        }
+
+        BufferPayload(ByteBuf bytes, boolean binary) {
+            this(bytes, binary, false);
+        }
+
+        private BufferPayload(ByteBuf bytes, boolean binary, boolean held) {
+            this.bytes = bytes;
+            this.binary = binary;
+            this.held = held;
+        }
+
+        @Override
+        public int size() {
+            return bytes.readableBytes();
+        }
+
+        @Override
+        public void sendTo(WebSocket conn) {
+            if (binary) {
+                ((NettyWebSocket) conn).sendBinary(bytes);
+            } else {
+                ((NettyWebSocket) conn).sendText(bytes);
+            }
+        }
+
+        @Override
+        public Payload hold() {
+            return held ? this : new BufferPayload(bytes.retainedDuplicate(), binary, true);
+        }
+
+        @Override
+        public void release() {
+            if (held) {
+                bytes.release();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Kind kind;
+        private final String key;
+        private final String topic;
+        // How many messages of each topic are in a batch, or null if this is a single message
+        private final Map<String, Integer> batch;
+        private final boolean snapshot;
+        private final Payload payload;
+
+        private Entry(Kind kind, String key, String topic, Map<String, Integer> batch, boolean snapshot,
+                      Payload payload) {
+            this.kind = kind;
+            this.key = key;
+            this.topic = topic;
+            this.batch = batch;
+            this.snapshot = snapshot;
+            this.payload = payload;
+        }
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final WebSocket conn;
+    private final Limits limits;
+    private final ScheduledExecutorService drainer;
+    private final ToLongFunction<WebSocket> transportBacklog;
+
+    // Guarded by this
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    private boolean drainScheduled;
+    private boolean closed;
+    private int maxPending;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final Map<String, LongAdder> droppedByTopic = new ConcurrentHashMap<>();
+    private volatile boolean disconnected;
+
+    /**
+     * Constructor.
+     *
+     * @param conn    the connection to send to
+     * @param limits  how much may wait to be sent
+     * @param drainer runs sends which had to wait
+     */
+    OutboundQueue(WebSocket conn, Limits limits, ScheduledExecutorService drainer) {
+        this(conn, limits, drainer, OutboundQueue::transportBacklog);
+    }
+
+    OutboundQueue(WebSocket conn, Limits limits, ScheduledExecutorService drainer,
+                  ToLongFunction<WebSocket> transportBacklog) {
+        this.conn = conn;
+        this.limits = limits;
+        this.drainer = drainer;
+        this.transportBacklog = transportBacklog;
+    }
+
+    /**
+     * How many bytes the transport has buffered for a connection, which it hasn't written to the socket yet.
+     */
+    static long transportBacklog(WebSocket conn) {
+        if (conn instanceof NettyWebSocket) {
+            return ((NettyWebSocket) conn).pendingWriteBytes();
+        }
+        if (conn instanceof WebSocketImpl) {
+            long bytes = 0;
+            for (ByteBuffer buffer : ((WebSocketImpl) conn).outQueue) {
+                bytes += buffer.remaining();
+            }
+            return bytes;
+        }
+        return 0;
+    }
+
+    /**
+     * Send a message, or queue it if the connection is behind.
+     *
+     * @param kind    what sort of message it is, which decides what happens if the connection is too far behind
+     * @param key     identifies what the message is about within its kind, so that a newer message can replace it
+     * @param topic   what to count the message against if it's dropped, or null to count it against its kind
+     * @param payload the message
+     */
+    void offer(Kind kind, String key, String topic, Payload payload) {
+        offer(kind, key, topic, null, false, payload);
+    }
+
+    /**
+     * Send many messages as one, or queue them if the connection is behind. If the batch is dropped, each message in
+     * it is counted against its own topic.
+     *
+     * @param kind    what sort of messages they are
+     * @param batch   how many messages of each topic there are in the batch
+     * @param payload the batch
+     */
+    void offerBatch(Kind kind, Map<String, Integer> batch, Payload payload) {
+        offer(kind, null, null, batch, false, payload);
+    }
+
+    /**
+     * Send everything of a kind, such as the whole component list, or queue it if the connection is behind. Later
+     * changes are only any use to the client once it has this, so it is never dropped to make room for them. Only a
+     * later snapshot of the same kind replaces it, and if there isn't room for it, it is treated as if its kind's
+     * policy were {@link Policy#DISCONNECT}.
+     *
+     * @param kind    what sort of message it is
+     * @param payload the message
+     */
+    void offerSnapshot(Kind kind, Payload payload) {
+        offer(kind, null, null, null, true, payload);
+    }
+
+    private void offer(Kind kind, String key, String topic, Map<String, Integer> batch, boolean snapshot,
+                       Payload payload) {
+        Entry entry;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // Anything already waiting goes first, so that messages stay in order
+            drainLocked();
+            if (pending.isEmpty() && transportBacklog.applyAsLong(conn) < TRANSPORT_HIGH_WATER_BYTES) {
+                send(payload);
+                return;
+            }
+            entry = new Entry(kind, key, topic == null ? kind.getConfigKey() : topic, batch, snapshot,
+                    payload.hold());
+            pending.addLast(entry);
+            pendingBytes += entry.payload.size();
+            if (overLimit() && !makeRoom(entry)) {
+                closeLocked();
+            } else {
+                maxPending = Math.max(maxPending, pending.size());
+                scheduleDrain();
+                return;
+            }
+        }
+        disconnected = true;
+        logger.atWarn().kv("kind", kind.getConfigKey()).kv("topic", entry.topic)
+                .log("Disconnecting {} since it is too far behind", conn.getRemoteSocketAddress());
+        // Not close(), since the close frame would wait behind everything the client hasn't read yet
+        conn.closeConnection(CloseFrame.POLICY_VALIDATION, "Too far behind reading messages");
+    }
+
+    private boolean overLimit() {
+        return pending.size() > limits.maxMessages || pendingBytes > limits.maxBytes;
+    }
+
+    /**
+     * Get back under the limits after adding a message.
+     *
+     * @return false if the connection should be disconnected instead
+     */
+    private boolean makeRoom(Entry added) {
+        Policy policy = limits.policyFor(added.kind);
+        if (policy == Policy.DISCONNECT) {
+            return dropLessImportant(added);
+        }
+        if (policy == Policy.DROP_NEWEST && !added.snapshot) {
+            remove(added);
+            return true;
+        }
+        if (policy == Policy.COALESCE || added.snapshot) {
+            Iterator<Entry> replaced = pending.iterator();
+            while (replaced.hasNext()) {
+                Entry e = replaced.next();
+                // A snapshot includes everything of its kind which was sent before it
+                if (e != added && e.kind == added.kind
+                        && (added.snapshot || added.key != null && added.key.equals(e.key))) {
+                    replaced.remove();
+                    dropped(e);
+                }
+            }
+            if (!overLimit()) {
+                return true;
+            }
+        }
+        // The oldest have to go too
+        dropOldest(added, added.kind);
+        // Everything else waiting is of other kinds, which this one doesn't get to push out
+        if (overLimit()) {
+            if (added.snapshot) {
+                // The client can't use anything of its kind without it
+                return dropLessImportant(added);
+            }
+            remove(added);
+        }
+        return true;
+    }
+
+    /**
+     * Drop the oldest waiting messages of less important kinds, least important kind first, for a message which
+     * mustn't be dropped itself.
+     *
+     * @return false if that wasn't enough and the connection should be disconnected instead
+     */
+    private boolean dropLessImportant(Entry added) {
+        for (int i = KINDS.length - 1; i > added.kind.ordinal() && overLimit(); i--) {
+            // Kinds which would rather disconnect than drop anything aren't dropped for others either
+            if (limits.policyFor(KINDS[i]) != Policy.DISCONNECT) {
+                dropOldest(added, KINDS[i]);
+            }
+        }
+        return !overLimit();
+    }
+
+    private void dropOldest(Entry added, Kind kind) {
+        Iterator<Entry> oldest = pending.iterator();
+        while (oldest.hasNext() && overLimit()) {
+            Entry e = oldest.next();
+            // Only a later snapshot replaces a snapshot
+            if (e != added && e.kind == kind && !e.snapshot) {
+                oldest.remove();
+                dropped(e);
+            }
+        }
+    }
+
+    private void remove(Entry e) {
+        pending.remove(e);
+        dropped(e);
+    }
+
+    private void dropped(Entry e) {
+        pendingBytes -= e.payload.size();
+        e.payload.release();
+        if (dropped.sum() == 0) {
+            logger.atWarn().kv("kind", e.kind.getConfigKey()).kv("topic", e.topic)
+                    .log("Dropping messages for {} since it is too far behind", conn.getRemoteSocketAddress());
+        }
+        if (e.batch == null) {
+            dropped.increment();
+            droppedByTopic.computeIfAbsent(e.topic, t -> new LongAdder()).increment();
+            return;
+        }
+        e.batch.forEach((topic, count) -> {
+            dropped.add(count);
+            droppedByTopic.computeIfAbsent(topic, t -> new LongAdder()).add(count);
+        });
+    }
+
+    private void send(Payload payload) {
+        try {
+            payload.sendTo(conn);
+            sent.increment();
+        } catch (WebsocketNotConnectedException e) {
+            // a normal occurrence if the dashboard is not connected, e.g. if the user closes the browser
+        }
+    }
+
+    private void drainLocked() {
+        while (!pending.isEmpty() && transportBacklog.applyAsLong(conn) < TRANSPORT_HIGH_WATER_BYTES) {
+            Entry e = pending.removeFirst();
+            pendingBytes -= e.payload.size();
+            try {
+                send(e.payload);
+            } finally {
+                e.payload.release();
+            }
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled || closed) {
+            return;
+        }
+        try {
+            drainer.schedule(this::drain, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            drainScheduled = true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down, nothing more will be sent
+        }
+    }
+
+    private synchronized void drain() {
+        drainScheduled = false;
+        if (closed) {
+            return;
+        }
+        drainLocked();
+        if (!pending.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Stop sending, and let go of anything which is still waiting.
+     */
+    synchronized void close() {
+        closeLocked();
+    }
+
+    private void closeLocked() {
+        closed = true;
+        for (Entry e : pending) {
+            e.payload.release();
+        }
+        pending.clear();
+        pendingBytes = 0;
+    }
+
+    synchronized int getPending() {
+        return pending.size();
+    }
+
+    synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    synchronized int getMaxPending() {
+        return maxPending;
+    }
+
+    long getSent() {
+        return sent.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    boolean isDisconnected() {
+        return disconnected;
+    }
+
+    /**
+     * Dropped messages by pub/sub topic, or by kind for everything else.
+     */
+    Map<String, Long> getDroppedByTopic() {
+        Map<String, Long> counts = new TreeMap<>();
+        droppedByTopic.forEach((topic, count) -> counts.put(topic, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("sent=%d, dropped=%d, maxPending=%d, droppedByTopic=%s", getSent(), getDropped(),
+                getMaxPending(), getDroppedByTopic());
+    }
+}
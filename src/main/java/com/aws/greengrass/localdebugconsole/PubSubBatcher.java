@@ -0,0 +1,245 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.messageutils.BinaryPubSubMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.Message;
+import com.aws.greengrass.localdebugconsole.messageutils.MessageType;
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the pub/sub messages for one connection which has asked for them in batches, so that a burst of messages
+ * goes out in a few frames rather than one frame each.
+ *
+ * <p>Each frame costs its own JSON envelope, masking, TLS record and write, which dominate when a busy topic sends
+ * many small messages. A batch is sent once it has {@code maxMessages} messages, or {@code maxDelayMillis} after its
+ * first message, whichever comes first. Messages with JSON payloads go out as one {@link MessageType#PUB_SUB_MSG_BATCH}
+ * message whose payload is an array of what would have been the payloads of PUB_SUB_MSG messages. Binary messages go
+ * out as one binary frame of one byte of PUB_SUB_MSG_BATCH, then each {@link BinaryPubSubMessage} as a big-endian 32
+ * bit length and that many bytes. If a batch has to be dropped, each message in it is counted against its own topic.
+ */
+class PubSubBatcher {
+    private static final Logger logger = LogManager.getLogger(PubSubBatcher.class);
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+    static final int MAX_MESSAGES_LIMIT = 1000;
+    static final long MAX_DELAY_MILLIS_LIMIT = 1000;
+
+    /**
+     * How big and how late batches may be.
+     */
+    static final class Options {
+        private final int maxMessages;
+        private final long maxDelayMillis;
+
+        Options(int maxMessages, long maxDelayMillis) {
+            this.maxMessages = maxMessages;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+
+        /**
+         * Read the options a connection asked for.
+         *
+         * @param request {"maxMessages": ..., "maxDelayMs": ...}
+         * @return options, or null if batching is turned off, which a maxMessages of 1 does
+         * @throws IllegalArgumentException if an option is out of range
+         */
+        static Options of(JsonNode request) {
+            int maxMessages = request.path("maxMessages").asInt(1);
+            long maxDelayMillis = request.path("maxDelayMs").asLong(0);
+            if (maxMessages < 1 || maxMessages > MAX_MESSAGES_LIMIT) {
+                throw new IllegalArgumentException("maxMessages must be between 1 and " + MAX_MESSAGES_LIMIT);
+            }
+            if (maxMessages == 1) {
+                return null;
+            }
+            if (maxDelayMillis < 1 || maxDelayMillis > MAX_DELAY_MILLIS_LIMIT) {
+                throw new IllegalArgumentException("maxDelayMs must be between 1 and " + MAX_DELAY_MILLIS_LIMIT);
+            }
+            return new Options(maxMessages, maxDelayMillis);
+        }
+    }
+
+    private final WebSocket conn;
+    private final OutboundQueue queue;
+    private final Options options;
+    private final ScheduledExecutorService timer;
+
+    // Guarded by this
+    private List<RawValue> json = new ArrayList<>();
+    private Map<String, Integer> jsonTopics = new HashMap<>();
+    private List<ByteBuf> binary = new ArrayList<>();
+    private Map<String, Integer> binaryTopics = new HashMap<>();
+    private ScheduledFuture<?> flush;
+    private boolean closed;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param conn    the connection
+     * @param queue   where batches go
+     * @param options how big and how late batches may be
+     * @param timer   sends batches which aren't full once they're due
+     */
+    PubSubBatcher(WebSocket conn, OutboundQueue queue, Options options, ScheduledExecutorService timer) {
+        this.conn = conn;
+        this.queue = queue;
+        this.options = options;
+        this.timer = timer;
+    }
+
+    /**
+     * Add a message to the batch.
+     *
+     * @param topic   topic the message was subscribed to
+     * @param payload what would have been the payload of a PUB_SUB_MSG, serialized
+     */
+    synchronized void add(String topic, String payload) {
+        if (closed) {
+            return;
+        }
+        json.add(new RawValue(payload));
+        jsonTopics.merge(topic, 1, Integer::sum);
+        added();
+    }
+
+    /**
+     * Add a binary message to the batch.
+     *
+     * @param message message, whose payload isn't copied
+     */
+    synchronized void add(BinaryPubSubMessage message) {
+        if (closed) {
+            return;
+        }
+        byte[] header;
+        try {
+            header = message.encodeHeader();
+        } catch (IllegalArgumentException e) {
+            logger.atError().setCause(e).kv("topic", message.getTopic()).log("Unable to forward the message");
+            return;
+        }
+        ByteBuf length = Unpooled.buffer(4).writeInt(header.length + message.getPayload().length);
+        binary.add(Unpooled.wrappedBuffer(length, Unpooled.wrappedBuffer(header),
+                Unpooled.wrappedBuffer(message.getPayload())));
+        binaryTopics.merge(message.getSubscribedTopic(), 1, Integer::sum);
+        added();
+    }
+
+    private void added() {
+        messages.increment();
+        if (json.size() + binary.size() >= options.maxMessages) {
+            flushLocked();
+        } else if (flush == null) {
+            try {
+                flush = timer.schedule(this::flush, options.maxDelayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, so there's no waiting around
+                flushLocked();
+            }
+        }
+    }
+
+    synchronized void flush() {
+        flushLocked();
+    }
+
+    private void flushLocked() {
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+        if (!json.isEmpty()) {
+            List<RawValue> batch = json;
+            Map<String, Integer> topics = jsonTopics;
+            json = new ArrayList<>();
+            jsonTopics = new HashMap<>();
+            try {
+                queue.offerBatch(OutboundQueue.Kind.PUB_SUB, topics, new OutboundQueue.TextPayload(
+                        jsonMapper.writeValueAsString(new Message(MessageType.PUB_SUB_MSG_BATCH, batch))));
+                batches.increment();
+            } catch (JsonProcessingException e) {
+                logger.atError().setCause(e).log("Unable to stringify the batch");
+            }
+        }
+        if (!binary.isEmpty()) {
+            List<ByteBuf> parts = binary;
+            Map<String, Integer> topics = binaryTopics;
+            binary = new ArrayList<>();
+            binaryTopics = new HashMap<>();
+            parts.add(0, Unpooled.wrappedBuffer(new byte[]{MessageType.PUB_SUB_MSG_BATCH}));
+            ByteBuf batch = Unpooled.wrappedBuffer(parts.toArray(new ByteBuf[0]));
+            try {
+                if (conn instanceof NettyWebSocket) {
+                    queue.offerBatch(OutboundQueue.Kind.PUB_SUB, topics, new OutboundQueue.BufferPayload(batch, true));
+                } else {
+                    queue.offerBatch(OutboundQueue.Kind.PUB_SUB, topics,
+                            new OutboundQueue.BinaryPayload(batch.nioBuffer()));
+                }
+                batches.increment();
+            } finally {
+                batch.release();
+            }
+        }
+    }
+
+    /**
+     * Send what's left and stop batching, e.g. once the connection has turned batching off.
+     */
+    synchronized void close() {
+        flushLocked();
+        closed = true;
+    }
+
+    /**
+     * Stop batching and drop what's left, once the connection has closed.
+     */
+    synchronized void discard() {
+        closed = true;
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+        json.clear();
+        jsonTopics.clear();
+        binary.forEach(ByteBuf::release);
+        binary.clear();
+        binaryTopics.clear();
+    }
+
+    long getMessages() {
+        return messages.sum();
+    }
+
+    long getBatches() {
+        return batches.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages=%d, batches=%d", getMessages(), getBatches());
+    }
+}
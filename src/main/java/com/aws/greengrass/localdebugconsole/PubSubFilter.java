@@ -0,0 +1,289 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Thins out the messages of one pub/sub subscription before they are serialized, for subscriptions to topics which
+ * are busier than a browser can keep up with, such as {@code #} or a 1 kHz sensor.
+ *
+ * <p>Messages are first sampled, keeping one in every so many, then rate limited. What is over the rate is dropped,
+ * unless the subscription only wants the latest value, in which case the latest message of each topic is held and
+ * sent once the rate allows. Payloads which are still sent may be cut short. Each of these is counted, and the counts
+ * are reported every {@value STATS_INTERVAL_MILLIS}ms while they change.
+ */
+class PubSubFilter {
+    static final long STATS_INTERVAL_MILLIS = 1000;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * What a subscription asked for. Subscriptions with the same options share a filter.
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @Getter
+    static final class Options {
+        static final Options NONE = new Options(0, 1, false, 0);
+
+        // 0 for no limit
+        private final double maxMessagesPerSecond;
+        // 1 for every message
+        private final int sampleEvery;
+        private final boolean latestOnly;
+        // 0 for no limit
+        private final int maxPayloadBytes;
+
+        boolean isNone() {
+            return equals(NONE);
+        }
+
+        /**
+         * Read the options from a subscribe request, leaving out whatever it doesn't set.
+         *
+         * @param request the subscribe request
+         * @return options
+         * @throws IllegalArgumentException if an option is invalid
+         */
+        static Options of(JsonNode request) {
+            double maxMessagesPerSecond = request.path("maxMessagesPerSecond").asDouble(0);
+            int sampleEvery = request.path("sampleEvery").asInt(1);
+            boolean latestOnly = request.path("latestOnly").asBoolean(false);
+            int maxPayloadBytes = request.path("maxPayloadBytes").asInt(0);
+            if (maxMessagesPerSecond < 0 || Double.isNaN(maxMessagesPerSecond)) {
+                throw new IllegalArgumentException("maxMessagesPerSecond must not be negative");
+            }
+            if (sampleEvery < 1) {
+                throw new IllegalArgumentException("sampleEvery must be at least 1");
+            }
+            if (maxPayloadBytes < 0) {
+                throw new IllegalArgumentException("maxPayloadBytes must not be negative");
+            }
+            return new Options(maxMessagesPerSecond, sampleEvery, latestOnly, maxPayloadBytes);
+        }
+    }
+
+    /**
+     * Where the messages which make it through go.
+     */
+    interface Output {
+        /**
+         * Send a message.
+         *
+         * @param topic       the message's topic
+         * @param payload     the payload, which may have been cut short
+         * @param payloadSize the size of the payload as it was published
+         */
+        void send(String topic, byte[] payload, int payloadSize);
+
+        /**
+         * Report the counts, which have changed since the last report.
+         */
+        void report(PubSubFilter filter);
+    }
+
+    private final Options options;
+    private final ScheduledExecutorService timer;
+    private final LongSupplier nanoClock;
+    private final Output output;
+    private final double capacity;
+
+    // Guarded by this
+    private long seen;
+    private double tokens;
+    private long refilledAt;
+    // Latest held message of each topic, oldest topic first
+    private final Map<String, byte[]> held = new LinkedHashMap<>();
+    private ScheduledFuture<?> flush;
+    private ScheduledFuture<?> stats;
+    private long reported;
+    private boolean closed;
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+
+    PubSubFilter(Options options, ScheduledExecutorService timer, Output output) {
+        this(options, timer, System::nanoTime, output);
+    }
+
+    PubSubFilter(Options options, ScheduledExecutorService timer, LongSupplier nanoClock, Output output) {
+        this.options = options;
+        this.timer = timer;
+        this.nanoClock = nanoClock;
+        this.output = output;
+        // Up to a second's worth of messages may go at once, so a quiet topic isn't held back
+        this.capacity = Math.max(1, options.maxMessagesPerSecond);
+        this.tokens = capacity;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Take a message, which is sent now, later or not at all.
+     *
+     * @param topic   the message's topic
+     * @param payload the payload, which isn't changed
+     */
+    synchronized void offer(String topic, byte[] payload) {
+        if (closed) {
+            return;
+        }
+        scheduleStats();
+        if (seen++ % options.sampleEvery != 0) {
+            sampled.increment();
+            return;
+        }
+        if (options.maxMessagesPerSecond > 0) {
+            refill();
+            if (tokens < 1) {
+                if (options.latestOnly) {
+                    if (held.put(topic, payload) != null) {
+                        conflated.increment();
+                    }
+                    scheduleFlush();
+                } else {
+                    rateLimited.increment();
+                }
+                return;
+            }
+            tokens--;
+        }
+        if (held.remove(topic) != null) {
+            // Already out of date
+            conflated.increment();
+        }
+        send(topic, payload);
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * options.maxMessagesPerSecond / NANOS_PER_SECOND);
+        refilledAt = now;
+    }
+
+    private void send(String topic, byte[] payload) {
+        if (options.maxPayloadBytes > 0 && payload.length > options.maxPayloadBytes) {
+            truncated.increment();
+            output.send(topic, Arrays.copyOf(payload, options.maxPayloadBytes), payload.length);
+        } else {
+            output.send(topic, payload, payload.length);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flush != null) {
+            return;
+        }
+        long delayNanos = (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / options.maxMessagesPerSecond);
+        try {
+            flush = timer.schedule(this::flush, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, nothing more will be sent
+        }
+    }
+
+    synchronized void flush() {
+        flush = null;
+        if (closed) {
+            return;
+        }
+        refill();
+        Iterator<Map.Entry<String, byte[]>> latest = held.entrySet().iterator();
+        while (tokens >= 1 && latest.hasNext()) {
+            Map.Entry<String, byte[]> message = latest.next();
+            latest.remove();
+            tokens--;
+            send(message.getKey(), message.getValue());
+        }
+        if (!held.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleStats() {
+        if (stats != null) {
+            return;
+        }
+        try {
+            stats = timer.scheduleWithFixedDelay(this::reportIfChanged, STATS_INTERVAL_MILLIS, STATS_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, nothing more will be reported
+        }
+    }
+
+    private void reportIfChanged() {
+        long total = getSampled() + getRateLimited() + getConflated() + getTruncated();
+        synchronized (this) {
+            if (closed || total == reported) {
+                return;
+            }
+            reported = total;
+        }
+        output.report(this);
+    }
+
+    /**
+     * Stop sending and reporting, once the last subscriber has gone.
+     */
+    synchronized void close() {
+        closed = true;
+        held.clear();
+        if (flush != null) {
+            flush.cancel(false);
+        }
+        if (stats != null) {
+            stats.cancel(false);
+        }
+    }
+
+    Options getOptions() {
+        return options;
+    }
+
+    /**
+     * Messages which were skipped by sampling.
+     */
+    long getSampled() {
+        return sampled.sum();
+    }
+
+    /**
+     * Messages which were dropped for being over the rate.
+     */
+    long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Messages which were dropped since a later message of the same topic replaced them.
+     */
+    long getConflated() {
+        return conflated.sum();
+    }
+
+    /**
+     * Messages which were sent with their payload cut short.
+     */
+    long getTruncated() {
+        return truncated.sum();
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.builtin.services.pubsub.PubSubIPCEventStreamAgent;
+import com.aws.greengrass.builtin.services.pubsub.PublishEvent;
+import com.aws.greengrass.builtin.services.pubsub.SubscribeRequest;
+import com.aws.greengrass.localdebugconsole.messageutils.BinaryPubSubMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.CommunicationMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.PayloadFormat;
+import com.aws.greengrass.localdebugconsole.messageutils.PubSubStats;
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+import com.aws.greengrass.mqttclient.MqttClient;
+import com.aws.greengrass.mqttclient.MqttRequestException;
+import com.aws.greengrass.mqttclient.v5.Subscribe;
+import com.aws.greengrass.mqttclient.v5.Unsubscribe;
+import software.amazon.awssdk.aws.greengrass.model.ReceiveMode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Shares one local pub/sub or IoT Core subscription between every dashboard which subscribes to the same topic filter.
+ *
+ * <p>Each console used to get its own subscription, so ten consoles watching one topic took ten MQTT subscriptions
+ * and ten callbacks per message. Now the first subscriber to a filter subscribes upstream, later ones only join it,
+ * and the upstream subscription goes once the last one leaves. Each message is decoded once and handed over once per
+ * subscription id along with everyone subscribed under it. The dashboard derives its subscription ids from the source
+ * and the filter, so that is usually once per message.
+ *
+ * <p>Each subscription says which {@link PayloadFormat} it wants. Payloads are only decoded into text or encoded as
+ * base64 for the formats someone asked for, once per message whoever asked, and binary subscriptions get the bytes
+ * exactly as they were published. Subscriptions may also ask for their messages to be thinned out by a
+ * {@link PubSubFilter}, which happens before anything is decoded.
+ *
+ * <p>Subscribing to IoT Core waits on the broker, which may be slow or unreachable, so subscribing never blocks.
+ * Everyone who subscribes to a filter while its subscription is still being made waits on the same attempt, which
+ * fails them all if it takes longer than the timeout.
+ *
+ * @param <T> subscriber, i.e. a dashboard connection
+ */
+class PubSubMultiplexer<T> {
+    private static final Logger logger = LogManager.getLogger(PubSubMultiplexer.class);
+    static final String IOT_CORE_SOURCE = "iotcore";
+    static final long DEFAULT_SUBSCRIBE_TIMEOUT_MILLIS = 10_000;
+
+    private final PubSubIPCEventStreamAgent pubSubIPCAgent;
+    private final MqttClient mqttClient;
+    private final String serviceName;
+    private final Sink<T> sink;
+    private final ScheduledExecutorService timer;
+    private volatile long subscribeTimeoutMillis = DEFAULT_SUBSCRIBE_TIMEOUT_MILLIS;
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+    // What each subscriber's subscription ids are subscribed to
+    private final Map<T, Map<String, Upstream>> subscriptions = new ConcurrentHashMap<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param pubSubIPCAgent local pub/sub
+     * @param mqttClient     IoT Core
+     * @param serviceName    who local pub/sub subscriptions are made as
+     * @param sink           gets every message for a subscription id, along with everyone subscribed under that id
+     * @param timer          times out subscribing, and runs the filters
+     */
+    PubSubMultiplexer(PubSubIPCEventStreamAgent pubSubIPCAgent, MqttClient mqttClient, String serviceName,
+                      Sink<T> sink, ScheduledExecutorService timer) {
+        this.pubSubIPCAgent = pubSubIPCAgent;
+        this.mqttClient = mqttClient;
+        this.serviceName = serviceName;
+        this.sink = sink;
+        this.timer = timer;
+    }
+
+    /**
+     * Where messages go, along with everyone they go to.
+     *
+     * @param <T> subscriber
+     */
+    interface Sink<T> {
+        /**
+         * Take a message for subscriptions which want their payloads as text or base64.
+         */
+        void message(Set<T> subscribers, CommunicationMessage message);
+
+        /**
+         * Take a message for subscriptions which want their payloads as they are.
+         */
+        void binaryMessage(Set<T> subscribers, BinaryPubSubMessage message);
+
+        /**
+         * Take the counts of what a subscription's filter held back.
+         */
+        void stats(Set<T> subscribers, PubSubStats stats);
+    }
+
+    /**
+     * Set how long subscribing to IoT Core may take before it fails.
+     *
+     * @param subscribeTimeoutMillis timeout in milliseconds
+     */
+    void setSubscribeTimeoutMillis(long subscribeTimeoutMillis) {
+        this.subscribeTimeoutMillis = subscribeTimeoutMillis;
+    }
+
+    /**
+     * Subscribe to a topic filter, with every message's payload as text.
+     *
+     * @see #subscribe(Object, String, String, String, PayloadFormat, PubSubFilter.Options)
+     */
+    CompletableFuture<Boolean> subscribe(T subscriber, String subId, String source, String topicFilter) {
+        return subscribe(subscriber, subId, source, topicFilter, PayloadFormat.TEXT, PubSubFilter.Options.NONE);
+    }
+
+    /**
+     * Subscribe to a topic filter.
+     *
+     * @param subscriber  who is subscribing
+     * @param subId       the subscriber's id for the subscription, which messages are sent with
+     * @param source      {@value IOT_CORE_SOURCE} for IoT Core, otherwise local pub/sub
+     * @param topicFilter what to subscribe to
+     * @param format      how the subscriber wants payloads
+     * @param options     how the subscriber wants messages thinned out
+     * @return completes with false if the subscriber already had a subscription with that id, or exceptionally if
+     *     subscribing failed or timed out
+     */
+    CompletableFuture<Boolean> subscribe(T subscriber, String subId, String source, String topicFilter,
+                                         PayloadFormat format, PubSubFilter.Options options) {
+        Map<String, Upstream> subs = subscriptions.computeIfAbsent(subscriber, s -> new ConcurrentHashMap<>());
+        Upstream existing = subs.get(subId);
+        if (existing != null) {
+            // Including one which is still being made, which this waits on rather than making another
+            return existing.ready.thenApply(v -> false);
+        }
+        boolean iotCore = IOT_CORE_SOURCE.equals(source);
+        String key = (iotCore ? IOT_CORE_SOURCE : "pubsub") + ':' + topicFilter;
+        while (true) {
+            Upstream upstream = upstreams.computeIfAbsent(key, k -> new Upstream(key, iotCore, topicFilter));
+            synchronized (upstream) {
+                if (upstream.closed) {
+                    // The last subscriber just left, or subscribing failed, and the next one starts over
+                    continue;
+                }
+                upstream.add(subscriber, new Target(subId, format, options));
+                subs.put(subId, upstream);
+                upstream.subscribeIfNeeded();
+            }
+            return upstream.ready.thenApply(v -> true);
+        }
+    }
+
+    /**
+     * Unsubscribe from a topic filter.
+     *
+     * @param subscriber who is unsubscribing
+     * @param subId      the subscriber's id for the subscription
+     * @return false if there was no such subscription
+     * @throws MqttRequestException if unsubscribing from IoT Core fails
+     */
+    boolean unsubscribe(T subscriber, String subId) throws MqttRequestException {
+        Map<String, Upstream> subs = subscriptions.get(subscriber);
+        Upstream upstream = subs == null ? null : subs.remove(subId);
+        if (upstream == null) {
+            return false;
+        }
+        upstream.remove(subscriber, subId);
+        return true;
+    }
+
+    /**
+     * Remove all of a subscriber's subscriptions, e.g. once its connection has closed.
+     *
+     * @param subscriber who is unsubscribing
+     */
+    void unsubscribeAll(T subscriber) {
+        Map<String, Upstream> subs = subscriptions.remove(subscriber);
+        if (subs == null) {
+            return;
+        }
+        subs.forEach((subId, upstream) -> {
+            try {
+                upstream.remove(subscriber, subId);
+            } catch (MqttRequestException e) {
+                logger.atError().setCause(e).kv("topic", upstream.topicFilter).log("failed to unsubscribe");
+            }
+        });
+    }
+
+    /**
+     * How many subscriptions there are upstream.
+     */
+    int getUpstreamCount() {
+        return upstreams.size();
+    }
+
+    long getReceived() {
+        return received.sum();
+    }
+
+    long getDelivered() {
+        return delivered.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("upstream=%d, received=%d, delivered=%d", getUpstreamCount(), getReceived(),
+                getDelivered());
+    }
+
+    /**
+     * What messages are sent as: a subscription id in a payload format, thinned out the same way.
+     */
+    private static final class Target {
+        private final String subId;
+        private final PayloadFormat format;
+        private final PubSubFilter.Options options;
+
+        private Target(String subId, PayloadFormat format, PubSubFilter.Options options) {
+            this.subId = subId;
+            this.format = format;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Target)) {
+                return false;
+            }
+            Target target = (Target) o;
+            return subId.equals(target.subId) && format == target.format && options.equals(target.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(subId, format, options);
+        }
+    }
+
+    /**
+     * Everyone subscribed as one target, and the filter they share if they asked for one.
+     */
+    private final class Group {
+        private final Set<T> subscribers;
+        private final PubSubFilter filter;
+
+        private Group(Set<T> subscribers, PubSubFilter filter) {
+            this.subscribers = subscribers;
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * One subscription to local pub/sub or IoT Core.
+     */
+    private final class Upstream {
+        private final String key;
+        private final boolean iotCore;
+        private final String topicFilter;
+        // Subscribers by what they're sent messages as, replaced on every change so messages can be fanned out without
+        // a lock
+        private volatile Map<Target, Group> subscribers = Collections.emptyMap();
+
+        // Completes once the upstream subscription is made
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+        // Guarded by this
+        private SubscribeRequest pubSubRequest;
+        private Subscribe mqttRequest;
+        private boolean closed;
+
+        private Upstream(String key, boolean iotCore, String topicFilter) {
+            this.key = key;
+            this.iotCore = iotCore;
+            this.topicFilter = topicFilter;
+        }
+
+        private void subscribeIfNeeded() {
+            if (pubSubRequest != null || mqttRequest != null) {
+                return;
+            }
+            if (iotCore) {
+                mqttRequest = Subscribe.builder().topic(topicFilter)
+                        .callback(c -> deliver(c.getTopic(), c.getPayload())).build();
+                ScheduledFuture<?> timeout = timer.schedule(() -> failed(new TimeoutException(
+                                "Timed out subscribing to " + topicFilter + " after " + subscribeTimeoutMillis + "ms")),
+                        subscribeTimeoutMillis, TimeUnit.MILLISECONDS);
+                try {
+                    mqttClient.subscribe(mqttRequest).whenComplete((response, e) -> {
+                        timeout.cancel(false);
+                        if (e == null) {
+                            succeeded();
+                        } else {
+                            failed(e);
+                        }
+                    });
+                } catch (MqttRequestException | RuntimeException e) {
+                    timeout.cancel(false);
+                    failed(e);
+                }
+            } else {
+                Consumer<PublishEvent> callback = c -> deliver(c.getTopic(), c.getPayload());
+                pubSubRequest = SubscribeRequest.builder().callback(callback)
+                        .receiveMode(ReceiveMode.RECEIVE_ALL_MESSAGES).topic(topicFilter)
+                        .serviceName(serviceName).build();
+                try {
+                    pubSubIPCAgent.subscribe(pubSubRequest);
+                    ready.complete(null);
+                } catch (RuntimeException e) {
+                    failed(e);
+                }
+            }
+        }
+
+        private synchronized void succeeded() {
+            if (!ready.complete(null)) {
+                // Too late, everyone waiting has been told it failed
+                unsubscribeLate();
+            }
+        }
+
+        /**
+         * Fail everyone who is subscribed, so the next subscriber makes a fresh attempt.
+         */
+        private synchronized void failed(Throwable cause) {
+            if (ready.isDone()) {
+                return;
+            }
+            logger.atWarn().setCause(cause).kv("topic", topicFilter).log("Failed to subscribe");
+            close();
+            subscribers.forEach((target, group) -> {
+                closeFilter(group);
+                for (T subscriber : group.subscribers) {
+                    Map<String, Upstream> subs = subscriptions.get(subscriber);
+                    if (subs != null) {
+                        subs.remove(target.subId, this);
+                    }
+                }
+            });
+            subscribers = Collections.emptyMap();
+            ready.completeExceptionally(cause instanceof CompletionException && cause.getCause() != null
+                    ? cause.getCause() : cause);
+        }
+
+        private void unsubscribeLate() {
+            try {
+                mqttClient.unsubscribe(Unsubscribe.builder().topic(topicFilter)
+                        .subscriptionCallback(mqttRequest.getCallback()).build());
+            } catch (MqttRequestException e) {
+                logger.atError().setCause(e).kv("topic", topicFilter).log("failed to unsubscribe");
+            }
+        }
+
+        private void add(T subscriber, Target target) {
+            Map<Target, Group> updated = new HashMap<>(subscribers);
+            Group group = updated.get(target);
+            Set<T> forTarget = new HashSet<>(group == null ? Collections.emptySet() : group.subscribers);
+            forTarget.add(subscriber);
+            PubSubFilter filter = group == null ? newFilter(target) : group.filter;
+            updated.put(target, new Group(Collections.unmodifiableSet(forTarget), filter));
+            subscribers = Collections.unmodifiableMap(updated);
+        }
+
+        private PubSubFilter newFilter(Target target) {
+            if (target.options.isNone()) {
+                return null;
+            }
+            return new PubSubFilter(target.options, timer, new PubSubFilter.Output() {
+                @Override
+                public void send(String topic, byte[] payload, int payloadSize) {
+                    Group group = subscribers.get(target);
+                    if (group != null) {
+                        Upstream.this.send(target, group.subscribers, topic, payload, payloadSize, null);
+                    }
+                }
+
+                @Override
+                public void report(PubSubFilter filter) {
+                    Group group = subscribers.get(target);
+                    if (group != null) {
+                        sink.stats(group.subscribers, new PubSubStats(target.subId, topicFilter,
+                                filter.getSampled(), filter.getRateLimited(), filter.getConflated(),
+                                filter.getTruncated()));
+                    }
+                }
+            });
+        }
+
+        private void closeFilter(Group group) {
+            if (group.filter != null) {
+                group.filter.close();
+            }
+        }
+
+        private synchronized void remove(T subscriber, String subId) throws MqttRequestException {
+            Map<Target, Group> updated = new HashMap<>(subscribers);
+            // A subscriber has one target per subscription id, so this finds at most one
+            for (Map.Entry<Target, Group> forTarget : subscribers.entrySet()) {
+                Group group = forTarget.getValue();
+                if (!forTarget.getKey().subId.equals(subId) || !group.subscribers.contains(subscriber)) {
+                    continue;
+                }
+                if (group.subscribers.size() == 1) {
+                    updated.remove(forTarget.getKey());
+                    closeFilter(group);
+                } else {
+                    Set<T> remaining = new HashSet<>(group.subscribers);
+                    remaining.remove(subscriber);
+                    updated.put(forTarget.getKey(), new Group(Collections.unmodifiableSet(remaining), group.filter));
+                }
+            }
+            if (updated.equals(subscribers)) {
+                return;
+            }
+            subscribers = Collections.unmodifiableMap(updated);
+            if (updated.isEmpty()) {
+                close();
+                if (!ready.isDone()) {
+                    // Still subscribing, so unsubscribe if that works out
+                    ready.thenRun(this::unsubscribeLate);
+                    return;
+                }
+                if (ready.isCompletedExceptionally()) {
+                    return;
+                }
+                if (pubSubRequest != null) {
+                    pubSubIPCAgent.unsubscribe(pubSubRequest);
+                }
+                if (mqttRequest != null) {
+                    mqttClient.unsubscribe(Unsubscribe.builder().topic(topicFilter)
+                            .subscriptionCallback(mqttRequest.getCallback()).build());
+                }
+            }
+        }
+
+        private void close() {
+            closed = true;
+            upstreams.remove(key, this);
+        }
+
+        private void deliver(String topic, byte[] payload) {
+            received.increment();
+            Map<PayloadFormat, String> decoded = new EnumMap<>(PayloadFormat.class);
+            for (Map.Entry<Target, Group> forTarget : subscribers.entrySet()) {
+                Group group = forTarget.getValue();
+                if (group.filter == null) {
+                    send(forTarget.getKey(), group.subscribers, topic, payload, payload.length, decoded);
+                } else {
+                    group.filter.offer(topic, payload);
+                }
+            }
+        }
+
+        /**
+         * Send a message to one target.
+         *
+         * @param decoded the payload in each format, which is filled in as it's needed so that other targets can
+         *                share it, or null if it isn't shared
+         */
+        private void send(Target target, Set<T> to, String topic, byte[] payload, int payloadSize,
+                          Map<PayloadFormat, String> decoded) {
+            // Only said for payloads which were cut short
+            Integer cutFrom = payloadSize == payload.length ? null : payloadSize;
+            if (target.format == PayloadFormat.BINARY) {
+                sink.binaryMessage(to, new BinaryPubSubMessage(target.subId, topicFilter, topic, payload, payloadSize));
+            } else {
+                boolean base64 = target.format == PayloadFormat.BASE64;
+                Map<PayloadFormat, String> forFormat = decoded == null ? new EnumMap<>(PayloadFormat.class) : decoded;
+                String text = forFormat.computeIfAbsent(target.format, f -> base64
+                        ? Base64.getEncoder().encodeToString(payload) : new String(payload, StandardCharsets.UTF_8));
+                sink.message(to, new CommunicationMessage(target.subId, topicFilter, topic, text,
+                        base64 ? PayloadFormat.BASE64.toString() : null, cutFrom));
+            }
+            delivered.add(to.size());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces pushes from the kernel before they reach the dashboard.
+ *
+ * <p>A deployment moves each of its components through several states, and every transition used to push the
+ * changed component and the whole component list to every console. Instead, pushes only mark what is dirty and the
+ * first one schedules a flush after a short window. The flush sends the list and the graph at most once each, and
+ * each dirty component once, no matter how many times they changed in between. This also keeps the snapshotting and
+ * sending off the kernel's state change listener thread.
+ */
+class PushScheduler implements KernelMessagePusher {
+    private static final Logger logger = LogManager.getLogger(PushScheduler.class);
+    static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    private final KernelMessagePusher target;
+    private final long windowMillis;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private final Set<String> dirtyComponents = new LinkedHashSet<>();
+    private boolean listDirty;
+    private boolean graphDirty;
+    private boolean scheduled;
+
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param target       receives the coalesced pushes
+     * @param windowMillis how long to collect changes after the first one before pushing them
+     */
+    PushScheduler(KernelMessagePusher target, long windowMillis) {
+        this.target = target;
+        this.windowMillis = windowMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dashboard-push");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void pushComponentListUpdate() {
+        synchronized (this) {
+            listDirty = true;
+        }
+        requested();
+    }
+
+    @Override
+    public void pushComponentChange(String name) {
+        synchronized (this) {
+            dirtyComponents.add(name);
+        }
+        requested();
+    }
+
+    @Override
+    public void pushDependencyGraphUpdate() {
+        synchronized (this) {
+            graphDirty = true;
+        }
+        requested();
+    }
+
+    private void requested() {
+        requested.increment();
+        synchronized (this) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        try {
+            executor.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, nobody is left to push to
+        }
+    }
+
+    private void flush() {
+        Set<String> components;
+        boolean list;
+        boolean graph;
+        synchronized (this) {
+            components = new LinkedHashSet<>(dirtyComponents);
+            dirtyComponents.clear();
+            list = listDirty;
+            graph = graphDirty;
+            listDirty = false;
+            graphDirty = false;
+            // Anything marked from here on needs another flush
+            scheduled = false;
+        }
+        flushed.add(components.size() + (list ? 1 : 0) + (graph ? 1 : 0));
+        try {
+            for (String name : components) {
+                target.pushComponentChange(name);
+            }
+            if (list) {
+                target.pushComponentListUpdate();
+            }
+            if (graph) {
+                target.pushDependencyGraphUpdate();
+            }
+        } catch (RuntimeException e) {
+            logger.atError().setCause(e).log("Failed to push kernel changes to the dashboard");
+        }
+    }
+
+    /**
+     * Stop pushing. Changes which haven't been flushed yet are dropped.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    long getRequested() {
+        return requested.sum();
+    }
+
+    long getFlushed() {
+        return flushed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requested=%d, flushed=%d", getRequested(), getFlushed());
+    }
+}
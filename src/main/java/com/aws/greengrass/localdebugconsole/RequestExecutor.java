@@ -0,0 +1,411 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs dashboard API calls off the thread which reads the websocket, so that a slow call such as a config update or a
+ * long Stream Manager read only holds up the client which made it.
+ *
+ * <p>Calls from one connection run one at a time in the order they arrived, since the dashboard expects e.g. a
+ * subscribe to be handled before the unsubscribe which follows it. Calls from different connections run in parallel,
+ * limited per {@link Category} so that a handful of blocked Stream Manager reads can't use up every thread. A
+ * connection whose next call is waiting for its category doesn't hold a thread while it waits.
+ */
+class RequestExecutor {
+    private static final Logger logger = LogManager.getLogger(RequestExecutor.class);
+    static final int DEFAULT_MAX_PENDING_PER_CONNECTION = 64;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    /**
+     * Groups of API calls which share a concurrency limit.
+     */
+    enum Category {
+        /**
+         * Reads and subscriptions which only touch the dashboard's own state or read from the kernel.
+         */
+        QUERY("query", 8),
+        /**
+         * Calls which change the kernel, which includes waiting for config updates to be applied.
+         */
+        LIFECYCLE("lifecycle", 2),
+        /**
+         * Local pub/sub and IoT Core messaging, where subscribing may wait on the MQTT connection.
+         */
+        PUB_SUB("pubSub", 4),
+        /**
+         * Stream Manager calls, where reads block for as long as the client asks.
+         */
+        STREAM_MANAGER("streamManager", 2);
+
+        private final String configKey;
+        private final int defaultLimit;
+
+        Category(String configKey, int defaultLimit) {
+            this.configKey = configKey;
+            this.defaultLimit = defaultLimit;
+        }
+
+        String getConfigKey() {
+            return configKey;
+        }
+
+        int getDefaultLimit() {
+            return defaultLimit;
+        }
+
+        static Category of(APICalls call) {
+            switch (call) {
+                case startComponent:
+                case stopComponent:
+                case reinstallComponent:
+                case updateConfig:
+                    return LIFECYCLE;
+                case subscribeToPubSubTopic:
+                case publishToPubSubTopic:
+                case unsubscribeToPubSubTopic:
+                    return PUB_SUB;
+                case streamManagerListStreams:
+                case streamManagerDescribeStream:
+                case streamManagerDeleteMessageStream:
+                case streamManagerReadMessages:
+                case streamManagerAppendMessage:
+                case streamManagerCreateMessageStream:
+                case streamManagerUpdateMessageStream:
+                    return STREAM_MANAGER;
+                default:
+                    return QUERY;
+            }
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int maxPendingPerConnection;
+    private final Map<Category, Limiter> limiters = new EnumMap<>(Category.class);
+    private final Map<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor with the default limits.
+     */
+    RequestExecutor() {
+        this(defaultLimits(), DEFAULT_MAX_PENDING_PER_CONNECTION);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param limits                  how many calls of each category may run at once, categories which are left out
+     *                                use their default
+     * @param maxPendingPerConnection how many calls a connection may have waiting before further calls are rejected
+     */
+    RequestExecutor(Map<Category, Integer> limits, int maxPendingPerConnection) {
+        int threads = 0;
+        for (Category category : Category.values()) {
+            int limit = limits.getOrDefault(category, category.getDefaultLimit());
+            limiters.put(category, new Limiter(limit));
+            threads += limit;
+        }
+        this.maxPendingPerConnection = maxPendingPerConnection;
+        this.executor = newExecutor(threads);
+    }
+
+    static Map<Category, Integer> defaultLimits() {
+        Map<Category, Integer> limits = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            limits.put(category, category.getDefaultLimit());
+        }
+        return limits;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        ExecutorService virtual = GGSSLWebSocketServerFactory.newVirtualThreadExecutor();
+        if (virtual != null) {
+            return virtual;
+        }
+        // Tasks are only handed over once they hold a permit, so there are never more than this many at once and the
+        // queue can't grow past it either
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "dashboard-request-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Queue a call.
+     *
+     * @param connection connection the call came from
+     * @param call       the API call, which decides its category
+     * @param task       the call itself
+     * @return false if the connection already has too many calls waiting, in which case the call is dropped
+     */
+    boolean submit(Object connection, APICalls call, Runnable task) {
+        Limiter limiter = limiters.get(Category.of(call));
+        Mailbox mailbox = mailboxes.computeIfAbsent(connection, k -> new Mailbox());
+        boolean dispatch;
+        synchronized (mailbox) {
+            if (mailbox.tasks.size() >= maxPendingPerConnection) {
+                limiter.rejected.increment();
+                return false;
+            }
+            mailbox.tasks.add(new Task(limiter, task));
+            limiter.queued();
+            dispatch = !mailbox.scheduled;
+            mailbox.scheduled = true;
+        }
+        if (dispatch) {
+            dispatch(mailbox);
+        }
+        return true;
+    }
+
+    /**
+     * Drop the calls a connection still has waiting, once it has closed and nobody is left to read the responses, and
+     * clean up after it. A call which is already running carries on, and the cleanup runs once it's done so that
+     * e.g. a subscription it makes is still removed.
+     *
+     * @param connection connection which closed
+     * @param cleanup    cleanup to run once the connection has no call running, right away if it has none
+     */
+    void close(Object connection, Runnable cleanup) {
+        Mailbox mailbox = mailboxes.remove(connection);
+        if (mailbox != null) {
+            synchronized (mailbox) {
+                // Keep the head if it's running or waiting for a permit, it removes itself when done
+                while (mailbox.tasks.size() > (mailbox.scheduled ? 1 : 0)) {
+                    mailbox.tasks.pollLast().limiter.dequeued();
+                }
+                if (mailbox.scheduled) {
+                    mailbox.onDrained = cleanup;
+                    return;
+                }
+            }
+        }
+        cleanup.run();
+    }
+
+    private void dispatch(Mailbox mailbox) {
+        Task next;
+        synchronized (mailbox) {
+            next = mailbox.tasks.peek();
+        }
+        if (next.limiter.acquireOrWait(mailbox)) {
+            execute(mailbox, next);
+        }
+    }
+
+    private void execute(Mailbox mailbox, Task task) {
+        try {
+            executor.execute(() -> run(mailbox, task));
+        } catch (RejectedExecutionException e) {
+            // Shutting down, so nobody is waiting for the responses
+            logger.atDebug().log("Dropped dashboard requests after shutdown");
+            task.limiter.dequeued();
+            drained(mailbox, true);
+        }
+    }
+
+    private void run(Mailbox mailbox, Task task) {
+        task.limiter.started();
+        try {
+            task.runnable.run();
+        } catch (RuntimeException e) {
+            logger.atError().setCause(e).log("Dashboard request failed");
+        } finally {
+            Mailbox waiting = task.limiter.release();
+            if (waiting != null) {
+                // The permit went straight to another connection waiting for it
+                execute(waiting, peek(waiting));
+            }
+            if (!drained(mailbox, false)) {
+                dispatch(mailbox);
+            }
+        }
+    }
+
+    /**
+     * Take the head off a mailbox, and run the connection's cleanup if that leaves it empty.
+     *
+     * @param all drop everything in the mailbox, not just the head
+     * @return true if the mailbox is now empty
+     */
+    private static boolean drained(Mailbox mailbox, boolean all) {
+        Runnable cleanup;
+        synchronized (mailbox) {
+            mailbox.tasks.poll();
+            if (all) {
+                while (!mailbox.tasks.isEmpty()) {
+                    mailbox.tasks.poll().limiter.dequeued();
+                }
+            }
+            if (!mailbox.tasks.isEmpty()) {
+                return false;
+            }
+            mailbox.scheduled = false;
+            cleanup = mailbox.onDrained;
+            mailbox.onDrained = null;
+        }
+        if (cleanup != null) {
+            cleanup.run();
+        }
+        return true;
+    }
+
+    private static Task peek(Mailbox mailbox) {
+        synchronized (mailbox) {
+            return mailbox.tasks.peek();
+        }
+    }
+
+    int getQueued(Category category) {
+        return limiters.get(category).queued.get();
+    }
+
+    int getMaxQueued(Category category) {
+        return limiters.get(category).maxQueued.get();
+    }
+
+    int getActive(Category category) {
+        return limiters.get(category).active.get();
+    }
+
+    long getCompleted(Category category) {
+        return limiters.get(category).completed.sum();
+    }
+
+    long getRejected(Category category) {
+        return limiters.get(category).rejected.sum();
+    }
+
+    /**
+     * Stop taking calls, and give the ones already running a moment to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Category, Limiter> entry : limiters.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey().getConfigKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static final class Mailbox {
+        // Guarded by the mailbox. The head is running or waiting for a permit whenever scheduled is set
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        // Set once the connection has closed while a call was running
+        private Runnable onDrained;
+    }
+
+    private static final class Task {
+        private final Limiter limiter;
+        private final Runnable runnable;
+
+        Task(Limiter limiter, Runnable runnable) {
+            this.limiter = limiter;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * Concurrency limit and queue metrics for one category.
+     */
+    private static final class Limiter {
+        // Guarded by the limiter
+        private int available;
+        private final Queue<Mailbox> waiting = new ArrayDeque<>();
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger maxQueued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        Limiter(int limit) {
+            this.available = limit;
+        }
+
+        /**
+         * Take a permit, or if there isn't one queue the mailbox to be handed the next permit released.
+         */
+        synchronized boolean acquireOrWait(Mailbox mailbox) {
+            if (available > 0) {
+                available--;
+                return true;
+            }
+            waiting.add(mailbox);
+            return false;
+        }
+
+        /**
+         * Give a permit back.
+         *
+         * @return a mailbox which was waiting and now holds the permit, or null if nobody was waiting
+         */
+        Mailbox release() {
+            active.decrementAndGet();
+            completed.increment();
+            synchronized (this) {
+                Mailbox next = waiting.poll();
+                if (next == null) {
+                    available++;
+                }
+                return next;
+            }
+        }
+
+        void queued() {
+            maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+        }
+
+        void dequeued() {
+            queued.decrementAndGet();
+        }
+
+        void started() {
+            queued.decrementAndGet();
+            active.incrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{active=%d, queued=%d, maxQueued=%d, completed=%d, rejected=%d}", active.get(),
+                    queued.get(), maxQueued.get(), completed.sum(), rejected.sum());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Short-lived session tokens handed out once a client has logged in with a username and password, so that later
+ * requests only need an HMAC check instead of another password lookup. A token is
+ * {@code base64url(username).passwordId.expiresAtMillis.base64url(hmac)}, where the password id lets the caller check
+ * that the password hasn't been revoked since. The key is random and only kept in memory, so restarting the server
+ * logs everyone out.
+ */
+class SessionTokens {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * What a token says about who it was issued to.
+     */
+    @AllArgsConstructor
+    @Getter
+    static final class Claims {
+        private final String username;
+        // Empty if the user didn't need a password
+        private final String passwordId;
+    }
+
+    private final SecretKeySpec key;
+    // Mac isn't thread safe, and getting a new one every time means a provider lookup
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    SessionTokens() {
+        byte[] bytes = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        key = new SecretKeySpec(bytes, HMAC_ALGORITHM);
+    }
+
+    /**
+     * Issue a token.
+     *
+     * @param username   user the token is for
+     * @param passwordId identifies the password the user logged in with, which must not contain dots
+     * @param expiresAt  epoch millis after which the token is no longer accepted
+     * @return the token
+     */
+    String issue(String username, String passwordId, long expiresAt) {
+        String payload = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + '.' + passwordId + '.'
+                + expiresAt;
+        return payload + '.' + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Check a token.
+     *
+     * @param token token from the client, may be null
+     * @return who the token was issued to, or null if it isn't one of ours or has expired
+     */
+    Claims verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        int expiryStart = token.lastIndexOf('.', signatureStart - 1);
+        int passwordIdStart = token.lastIndexOf('.', expiryStart - 1);
+        if (passwordIdStart <= 0) {
+            return null;
+        }
+        String payload = token.substring(0, signatureStart);
+        try {
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(token.substring(signatureStart + 1)))) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= Long.parseLong(token.substring(expiryStart + 1, signatureStart))) {
+                return null;
+            }
+            return new Claims(new String(DECODER.decode(token.substring(0, passwordIdStart)), StandardCharsets.UTF_8),
+                    token.substring(passwordIdStart + 1, expiryStart));
+        } catch (IllegalArgumentException e) {
+            // Not base64 or not a number
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            // Every JVM has to support HmacSHA256
+            throw new IllegalStateException(e);
+        }
+    }
+}
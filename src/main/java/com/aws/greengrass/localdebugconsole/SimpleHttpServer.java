@@ -7,8 +7,8 @@
 
 package com.aws.greengrass.localdebugconsole;
 
-import com.aws.greengrass.config.Topic;
 import com.aws.greengrass.config.Topics;
+import com.aws.greengrass.config.WhatHappened;
 import com.aws.greengrass.dependency.ImplementsService;
 import com.aws.greengrass.dependency.State;
 import com.aws.greengrass.deployment.DeviceConfiguration;
@@ -22,27 +22,58 @@ import com.aws.greengrass.util.Utils;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.handler.codec.http.cookie.CookieHeaderNames;
+import io.netty.handler.codec.http.cookie.DefaultCookie;
+import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.JdkSslContext;
+import io.netty.handler.ssl.SniHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.stream.ChunkedNioFile;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.BasicConstraints;
@@ -53,17 +84,21 @@ import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.RegionMetadata;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
 import java.net.InetSocketAddress;
-import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.KeyStore;
@@ -78,7 +113,7 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.time.Instant;
+import java.security.spec.ECGenParameterSpec;
 import java.util.Base64;
 import java.util.Calendar;
 import java.util.Collections;
@@ -87,7 +122,11 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -122,6 +161,30 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
     private static final int DEFAULT_HTTP_PORT = 1441;
     private static final int DEFAULT_WEBSOCKET_PORT = 1442;
     private static final boolean DEFAULT_HTTPS_ENABLED = true;
+    private static final int FILE_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_BOSS_THREADS = 1;
+    private static final int DEFAULT_WORKER_THREADS = 0;
+    private static final int DEFAULT_BACKLOG = 128;
+    private static final int DEFAULT_MAX_CONTENT_LENGTH = 512 * 1024;
+    private static final int MIN_MAX_CONTENT_LENGTH = 1024;
+    private static final boolean DEFAULT_NATIVE_TRANSPORT = true;
+    private static final boolean DEFAULT_HTTP2_ENABLED = true;
+    private static final int MAX_CONCURRENT_STREAMS = 128;
+    static final String JAVA_WEBSOCKET_TRANSPORT = "java-websocket";
+    static final String NETTY_WEBSOCKET_TRANSPORT = "netty";
+    static final String CHUNKER_HANDLER = "chunker";
+    static final String REQUEST_HANDLER = "request";
+    static final String POOLED_ALLOCATOR = "pooled";
+    static final String UNPOOLED_ALLOCATOR = "unpooled";
+    static final String RSA_KEY_ALGORITHM = "RSA";
+    static final String EC_KEY_ALGORITHM = "EC";
+    private static final int RSA_KEY_SIZE = 4096;
+    private static final String EC_CURVE = "secp256r1";
+    private static final long CREDENTIAL_SWEEP_INTERVAL_SECONDS = 60;
+    static final String SESSION_COOKIE = "GreengrassDebugSession";
+    private static final long SESSION_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 1024;
+    private static final int DEFAULT_TLS_SESSION_TIMEOUT_SECONDS = 3600;
     int port = DEFAULT_HTTP_PORT;
 
     private final Kernel kernel;
@@ -130,16 +193,48 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
     private DashboardServer dashboardServer;
     int websocketPort = DEFAULT_WEBSOCKET_PORT;
     private String bindHostname = "localhost";
+    private String assetRoot = "";
+    // 0 worker threads means Netty's default of twice the number of cores
+    private int bossThreads = DEFAULT_BOSS_THREADS;
+    private int workerThreads = DEFAULT_WORKER_THREADS;
+    private int backlog = DEFAULT_BACKLOG;
+    private int maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+    private String allocator = POOLED_ALLOCATOR;
+    private boolean nativeTransport = DEFAULT_NATIVE_TRANSPORT;
+    private boolean http2Enabled = DEFAULT_HTTP2_ENABLED;
+    private String websocketTransport = JAVA_WEBSOCKET_TRANSPORT;
     private boolean httpsEnabled = DEFAULT_HTTPS_ENABLED;
-    private SslContext context;
+    private String keyAlgorithm = RSA_KEY_ALGORITHM;
+    // 0 means the JDK's default
+    private int tlsSessionCacheSize = DEFAULT_TLS_SESSION_CACHE_SIZE;
+    private int tlsSessionTimeout = DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+    private final TlsHandshakeMetrics handshakeMetrics = new TlsHandshakeMetrics();
+    private final Map<RequestExecutor.Category, Integer> requestLimits = RequestExecutor.defaultLimits();
+    private int maxPendingRequests = RequestExecutor.DEFAULT_MAX_PENDING_PER_CONNECTION;
+    private long pushWindowMillis = PushScheduler.DEFAULT_WINDOW_MILLIS;
+    private long pubSubSubscribeTimeoutMillis = PubSubMultiplexer.DEFAULT_SUBSCRIBE_TIMEOUT_MILLIS;
+    private int maxOutboundMessages = OutboundQueue.DEFAULT_MAX_MESSAGES;
+    private long maxOutboundBytes = OutboundQueue.DEFAULT_MAX_BYTES;
+    private final Map<OutboundQueue.Kind, OutboundQueue.Policy> outboundPolicies = OutboundQueue.defaultPolicies();
+    // Set once the keystore is loaded, which may happen after the server is already taking connections
+    private volatile SslContext context;
+    private volatile SslContext websocketContext;
+    private volatile CompletableFuture<Boolean> httpsReady;
     private Provider<SSLEngine> engineProvider;
     private String streamManagerAuthToken;
+    final StaticAssetCache assetCache;
+    private final PageHandler pageHandler = new PageHandler();
+    private final CredentialStore credentialStore =
+            new CredentialStore(() -> config.getRoot().findTopics(DEBUG_PASSWORD_NAMESPACE));
+    private ScheduledFuture<?> credentialSweep;
+    private final SessionTokens sessionTokens = new SessionTokens();
 
     @Inject
     public SimpleHttpServer(Topics t, Kernel kernel, DeviceConfiguration deviceConfiguration) {
         super(t);
         this.kernel = kernel;
         this.deviceConfig = deviceConfiguration;
+        this.assetCache = new StaticAssetCache(logger, SimpleHttpServer.class.getClassLoader());
     }
 
     @Override
@@ -168,6 +263,53 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
                 requestRestart();
             }
         });
+        // EC keys are much quicker to generate and to handshake with than the 4096 bit RSA default
+        config.lookup(CONFIGURATION_CONFIG_KEY, "keyAlgorithm").dflt(keyAlgorithm).subscribe((w, n) -> {
+            String old = keyAlgorithm;
+            keyAlgorithm = Coerce.toString(n);
+            if (!RSA_KEY_ALGORITHM.equalsIgnoreCase(keyAlgorithm) && !EC_KEY_ALGORITHM.equalsIgnoreCase(keyAlgorithm)) {
+                logger.atWarn().kv("keyAlgorithm", keyAlgorithm).kv("default", RSA_KEY_ALGORITHM)
+                        .log("Unknown key algorithm. Using default.");
+                keyAlgorithm = RSA_KEY_ALGORITHM;
+            }
+            if (!old.equalsIgnoreCase(keyAlgorithm)) {
+                requestRestart();
+            }
+        });
+        // Sessions are shared by the HTTP and websocket listeners, so a browser reconnecting to either can resume
+        config.lookup(CONFIGURATION_CONFIG_KEY, "tlsSessionCacheSize").dflt(tlsSessionCacheSize).subscribe((w, n) -> {
+            int old = tlsSessionCacheSize;
+            tlsSessionCacheSize = Coerce.toInt(n);
+            if (tlsSessionCacheSize < 0) {
+                logger.atWarn().kv("tlsSessionCacheSize", tlsSessionCacheSize)
+                        .kv("default", DEFAULT_TLS_SESSION_CACHE_SIZE)
+                        .log("TLS session cache size must not be negative. Using default.");
+                tlsSessionCacheSize = DEFAULT_TLS_SESSION_CACHE_SIZE;
+            }
+            if (old != tlsSessionCacheSize) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "tlsSessionTimeout").dflt(tlsSessionTimeout).subscribe((w, n) -> {
+            int old = tlsSessionTimeout;
+            tlsSessionTimeout = Coerce.toInt(n);
+            if (tlsSessionTimeout < 0) {
+                logger.atWarn().kv("tlsSessionTimeout", tlsSessionTimeout)
+                        .kv("default", DEFAULT_TLS_SESSION_TIMEOUT_SECONDS)
+                        .log("TLS session timeout must not be negative. Using default.");
+                tlsSessionTimeout = DEFAULT_TLS_SESSION_TIMEOUT_SECONDS;
+            }
+            if (old != tlsSessionTimeout) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "http2Enabled").dflt(DEFAULT_HTTP2_ENABLED).subscribe((w, n) -> {
+            boolean oldEnabled = http2Enabled;
+            http2Enabled = Coerce.toBoolean(n);
+            if (oldEnabled != http2Enabled) {
+                requestRestart();
+            }
+        });
         config.lookup(CONFIGURATION_CONFIG_KEY, "websocketPort").dflt(websocketPort).subscribe((w, n) -> {
             int oldPort = websocketPort;
             websocketPort = Coerce.toInt(n);
@@ -180,6 +322,20 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
                 requestRestart();
             }
         });
+        // Serve the websocket from the HTTP server's port instead of a separate server
+        config.lookup(CONFIGURATION_CONFIG_KEY, "websocketTransport").dflt(websocketTransport).subscribe((w, n) -> {
+            String oldTransport = websocketTransport;
+            websocketTransport = Coerce.toString(n);
+            if (!JAVA_WEBSOCKET_TRANSPORT.equalsIgnoreCase(websocketTransport)
+                    && !NETTY_WEBSOCKET_TRANSPORT.equalsIgnoreCase(websocketTransport)) {
+                logger.atWarn().kv("websocketTransport", websocketTransport).kv("default", JAVA_WEBSOCKET_TRANSPORT)
+                        .log("Unknown websocket transport. Using default.");
+                websocketTransport = JAVA_WEBSOCKET_TRANSPORT;
+            }
+            if (!oldTransport.equalsIgnoreCase(websocketTransport)) {
+                requestRestart();
+            }
+        });
         config.lookup(CONFIGURATION_CONFIG_KEY, "bindHostname").dflt(bindHostname).subscribe((w, n) -> {
             String oldName = bindHostname;
             bindHostname = Coerce.toString(n);
@@ -187,47 +343,329 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
                 requestRestart();
             }
         });
+        // Serve the frontend from an unpacked directory rather than from inside the plugin jar
+        config.lookup(CONFIGURATION_CONFIG_KEY, "assetRoot").dflt(assetRoot).subscribe((w, n) -> {
+            String oldRoot = assetRoot;
+            assetRoot = Coerce.toString(n);
+            if (!Objects.equals(oldRoot, assetRoot)) {
+                requestRestart();
+            }
+        });
+        subscribeToNettyConfig();
+        subscribeToRequestConfig();
+        subscribeToPushConfig();
+        // Passwords are issued by the CLI straight into the config, keep the index up to date with it
+        config.getRoot().lookupTopics(DEBUG_PASSWORD_NAMESPACE).subscribe((what, child) -> {
+            if (what != WhatHappened.timestampUpdated) {
+                credentialStore.rebuild();
+            }
+        });
+        deviceConfig.getAWSRegion().subscribe((w, n) -> {
+            // Only rebuild if the assets have been loaded already, otherwise startup will take care of it
+            if (assetCache.isLoaded()) {
+                assetCache.refresh(websocketPort, isChinaPartition());
+            }
+        });
+    }
+
+    private void subscribeToNettyConfig() {
+        config.lookup(CONFIGURATION_CONFIG_KEY, "bossThreads").dflt(bossThreads).subscribe((w, n) -> {
+            int old = bossThreads;
+            bossThreads = Coerce.toInt(n);
+            if (bossThreads < 1) {
+                logger.atWarn().kv("bossThreads", bossThreads).kv("default", DEFAULT_BOSS_THREADS)
+                        .log("Boss thread count must be at least 1. Using default.");
+                bossThreads = DEFAULT_BOSS_THREADS;
+            }
+            if (old != bossThreads) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "workerThreads").dflt(workerThreads).subscribe((w, n) -> {
+            int old = workerThreads;
+            workerThreads = Coerce.toInt(n);
+            if (workerThreads < 0) {
+                logger.atWarn().kv("workerThreads", workerThreads).kv("default", DEFAULT_WORKER_THREADS)
+                        .log("Worker thread count must not be negative. Using default.");
+                workerThreads = DEFAULT_WORKER_THREADS;
+            }
+            if (old != workerThreads) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "backlog").dflt(backlog).subscribe((w, n) -> {
+            int old = backlog;
+            backlog = Coerce.toInt(n);
+            if (backlog < 1) {
+                logger.atWarn().kv("backlog", backlog).kv("default", DEFAULT_BACKLOG)
+                        .log("Backlog must be at least 1. Using default.");
+                backlog = DEFAULT_BACKLOG;
+            }
+            if (old != backlog) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "maxContentLength").dflt(maxContentLength).subscribe((w, n) -> {
+            int old = maxContentLength;
+            maxContentLength = Coerce.toInt(n);
+            if (maxContentLength < MIN_MAX_CONTENT_LENGTH) {
+                logger.atWarn().kv("maxContentLength", maxContentLength).kv("default", DEFAULT_MAX_CONTENT_LENGTH)
+                        .log("Max content length should not be smaller than {}. Using default.",
+                                MIN_MAX_CONTENT_LENGTH);
+                maxContentLength = DEFAULT_MAX_CONTENT_LENGTH;
+            }
+            if (old != maxContentLength) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "allocator").dflt(allocator).subscribe((w, n) -> {
+            String old = allocator;
+            allocator = Coerce.toString(n);
+            if (!POOLED_ALLOCATOR.equalsIgnoreCase(allocator) && !UNPOOLED_ALLOCATOR.equalsIgnoreCase(allocator)) {
+                logger.atWarn().kv("allocator", allocator).kv("default", POOLED_ALLOCATOR)
+                        .log("Unknown allocator. Using default.");
+                allocator = POOLED_ALLOCATOR;
+            }
+            if (!old.equalsIgnoreCase(allocator)) {
+                requestRestart();
+            }
+        });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "nativeTransport").dflt(DEFAULT_NATIVE_TRANSPORT)
+                .subscribe((w, n) -> {
+                    boolean old = nativeTransport;
+                    nativeTransport = Coerce.toBoolean(n);
+                    if (old != nativeTransport) {
+                        requestRestart();
+                    }
+                });
+    }
+
+    private void subscribeToRequestConfig() {
+        // How many calls of each kind the dashboard may have running at once, across all connections
+        for (RequestExecutor.Category category : RequestExecutor.Category.values()) {
+            config.lookup(CONFIGURATION_CONFIG_KEY, "requestConcurrency", category.getConfigKey())
+                    .dflt(category.getDefaultLimit()).subscribe((w, n) -> {
+                        int old = requestLimits.get(category);
+                        int limit = Coerce.toInt(n);
+                        if (limit < 1) {
+                            logger.atWarn().kv("requestConcurrency", category.getConfigKey()).kv("limit", limit)
+                                    .kv("default", category.getDefaultLimit())
+                                    .log("Request concurrency must be at least 1. Using default.");
+                            limit = category.getDefaultLimit();
+                        }
+                        requestLimits.put(category, limit);
+                        if (old != limit) {
+                            requestRestart();
+                        }
+                    });
+        }
+        // How long subscribing to an IoT Core topic may take before the dashboard is told it failed
+        config.lookup(CONFIGURATION_CONFIG_KEY, "pubSubSubscribeTimeoutMs").dflt(pubSubSubscribeTimeoutMillis)
+                .subscribe((w, n) -> {
+                    long old = pubSubSubscribeTimeoutMillis;
+                    pubSubSubscribeTimeoutMillis = Coerce.toLong(n);
+                    if (pubSubSubscribeTimeoutMillis < 1) {
+                        logger.atWarn().kv("pubSubSubscribeTimeoutMs", pubSubSubscribeTimeoutMillis)
+                                .kv("default", PubSubMultiplexer.DEFAULT_SUBSCRIBE_TIMEOUT_MILLIS)
+                                .log("Pub/sub subscribe timeout must be at least 1ms. Using default.");
+                        pubSubSubscribeTimeoutMillis = PubSubMultiplexer.DEFAULT_SUBSCRIBE_TIMEOUT_MILLIS;
+                    }
+                    if (old != pubSubSubscribeTimeoutMillis) {
+                        requestRestart();
+                    }
+                });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "maxPendingRequestsPerConnection").dflt(maxPendingRequests)
+                .subscribe((w, n) -> {
+                    int old = maxPendingRequests;
+                    maxPendingRequests = Coerce.toInt(n);
+                    if (maxPendingRequests < 1) {
+                        logger.atWarn().kv("maxPendingRequestsPerConnection", maxPendingRequests)
+                                .kv("default", RequestExecutor.DEFAULT_MAX_PENDING_PER_CONNECTION)
+                                .log("Max pending requests per connection must be at least 1. Using default.");
+                        maxPendingRequests = RequestExecutor.DEFAULT_MAX_PENDING_PER_CONNECTION;
+                    }
+                    if (old != maxPendingRequests) {
+                        requestRestart();
+                    }
+                });
+    }
+
+    private void subscribeToPushConfig() {
+        // How long to collect component changes from the kernel before pushing them to the dashboard
+        config.lookup(CONFIGURATION_CONFIG_KEY, "pushCoalesceWindowMs").dflt(pushWindowMillis).subscribe((w, n) -> {
+            long old = pushWindowMillis;
+            pushWindowMillis = Coerce.toLong(n);
+            if (pushWindowMillis < 0) {
+                logger.atWarn().kv("pushCoalesceWindowMs", pushWindowMillis)
+                        .kv("default", PushScheduler.DEFAULT_WINDOW_MILLIS)
+                        .log("Push coalesce window must not be negative. Using default.");
+                pushWindowMillis = PushScheduler.DEFAULT_WINDOW_MILLIS;
+            }
+            if (old != pushWindowMillis) {
+                requestRestart();
+            }
+        });
+        // How much may wait to be sent to a dashboard which isn't keeping up, and what gives when that's too much
+        config.lookup(CONFIGURATION_CONFIG_KEY, "maxOutboundMessagesPerConnection").dflt(maxOutboundMessages)
+                .subscribe((w, n) -> {
+                    int old = maxOutboundMessages;
+                    maxOutboundMessages = Coerce.toInt(n);
+                    if (maxOutboundMessages < 1) {
+                        logger.atWarn().kv("maxOutboundMessagesPerConnection", maxOutboundMessages)
+                                .kv("default", OutboundQueue.DEFAULT_MAX_MESSAGES)
+                                .log("Max outbound messages per connection must be at least 1. Using default.");
+                        maxOutboundMessages = OutboundQueue.DEFAULT_MAX_MESSAGES;
+                    }
+                    if (old != maxOutboundMessages) {
+                        requestRestart();
+                    }
+                });
+        config.lookup(CONFIGURATION_CONFIG_KEY, "maxOutboundBytesPerConnection").dflt(maxOutboundBytes)
+                .subscribe((w, n) -> {
+                    long old = maxOutboundBytes;
+                    maxOutboundBytes = Coerce.toLong(n);
+                    if (maxOutboundBytes < 1) {
+                        logger.atWarn().kv("maxOutboundBytesPerConnection", maxOutboundBytes)
+                                .kv("default", OutboundQueue.DEFAULT_MAX_BYTES)
+                                .log("Max outbound bytes per connection must be at least 1. Using default.");
+                        maxOutboundBytes = OutboundQueue.DEFAULT_MAX_BYTES;
+                    }
+                    if (old != maxOutboundBytes) {
+                        requestRestart();
+                    }
+                });
+        for (OutboundQueue.Kind kind : OutboundQueue.Kind.values()) {
+            config.lookup(CONFIGURATION_CONFIG_KEY, "outboundOverflowPolicy", kind.getConfigKey())
+                    .dflt(kind.getDefaultPolicy().getConfigValue()).subscribe((w, n) -> {
+                        OutboundQueue.Policy old = outboundPolicies.get(kind);
+                        OutboundQueue.Policy policy = OutboundQueue.Policy.of(Coerce.toString(n));
+                        if (policy == null) {
+                            logger.atWarn().kv("outboundOverflowPolicy", kind.getConfigKey()).kv("policy", n)
+                                    .kv("default", kind.getDefaultPolicy().getConfigValue())
+                                    .log("Unknown outbound overflow policy. Using default.");
+                            policy = kind.getDefaultPolicy();
+                        }
+                        outboundPolicies.put(kind, policy);
+                        if (old != policy) {
+                            requestRestart();
+                        }
+                    });
+        }
+    }
+
+    static ByteBufAllocator allocatorFor(String name) {
+        return UNPOOLED_ALLOCATOR.equalsIgnoreCase(name) ? UnpooledByteBufAllocator.DEFAULT
+                : PooledByteBufAllocator.DEFAULT;
     }
 
     @SuppressWarnings("UseSpecificCatch")
     @Override
     public void startup() throws InterruptedException {
         context = null;
+        websocketContext = null;
         engineProvider = null;
+        httpsReady = null;
         if (httpsEnabled) {
-            if (!initializeHttps()) {
-                return;
-            }
+            // Generating a new key can take a long time on small devices, so bind straight away and have the TLS
+            // handshakes wait for it instead
+            httpsReady = CompletableFuture.supplyAsync(this::initializeHttps,
+                    kernel.getContext().get(ExecutorService.class));
+            CompletableFuture<Boolean> ready = httpsReady;
+            // Called on the websocket server's selector thread, so it must not wait for the key. Connections which
+            // arrive before it's ready are refused, and the console reconnects
+            engineProvider = () -> {
+                SslContext sslContext = websocketContext;
+                if (sslContext == null || !Boolean.TRUE.equals(ready.getNow(false))) {
+                    throw new IllegalStateException(ready.isDone() ? "HTTPS could not be initialized"
+                            : "HTTPS is still being initialized");
+                }
+                return sslContext.newEngine(ByteBufAllocator.DEFAULT);
+            };
         }
 
+        credentialSweep = kernel.getContext().get(ScheduledExecutorService.class)
+                .scheduleWithFixedDelay(credentialStore::sweep, CREDENTIAL_SWEEP_INTERVAL_SECONDS,
+                        CREDENTIAL_SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
         logger.atInfo().log("Starting local dashboard server");
+        boolean sharedWebsocket = NETTY_WEBSOCKET_TRANSPORT.equalsIgnoreCase(websocketTransport);
+        // When sharing the HTTP server the dashboard server never opens a socket, so it doesn't need TLS of its own
         dashboardServer = new DashboardServer(new InetSocketAddress(bindHostname, websocketPort), logger,
-                kernel, deviceConfig, this, engineProvider, streamManagerAuthToken);
-        dashboardServer.startup();
+                kernel, deviceConfig, this, sharedWebsocket ? null : engineProvider, streamManagerAuthToken,
+                new RequestExecutor(requestLimits, maxPendingRequests));
+        dashboardServer.setPushWindowMillis(pushWindowMillis);
+        dashboardServer.setPubSubSubscribeTimeoutMillis(pubSubSubscribeTimeoutMillis);
+        dashboardServer.setOutboundLimits(
+                new OutboundQueue.Limits(maxOutboundMessages, maxOutboundBytes, outboundPolicies));
+        dashboardServer.startup(!sharedWebsocket);
         try {
             // We need to wait for the server to startup before grabbing the port because it starts in a separate thread
             dashboardServer.getStarted().get();
         } catch (ExecutionException ignored) {
             // Not possible, we never throw anything
         }
-        websocketPort = dashboardServer.getPort();
-        logger.atInfo().addKeyValue("port", websocketPort).log("Finished starting websocket server");
-        primaryGroup = new NioEventLoopGroup();
-        secondaryGroup = new NioEventLoopGroup();
+        WebSocketUpgradeHandler websocketUpgradeHandler = null;
+        if (sharedWebsocket) {
+            websocketPort = port;
+            websocketUpgradeHandler = new WebSocketUpgradeHandler(dashboardServer, maxContentLength, logger);
+        } else {
+            websocketPort = dashboardServer.getPort();
+        }
+        logger.atInfo().addKeyValue("port", websocketPort).kv("transport", websocketTransport)
+                .log("Finished starting websocket server");
+        assetCache.setRoot(isEmpty(assetRoot) ? null : Paths.get(assetRoot).toAbsolutePath().normalize());
+        assetCache.refresh(websocketPort, isChinaPartition());
+        NettyTransport transport = NettyTransport.select(nativeTransport);
+        if (nativeTransport && transport == NettyTransport.NIO) {
+            logger.atDebug().setCause(NettyTransport.epollUnavailabilityCause())
+                    .log("Native transport unavailable, using NIO");
+        }
+        ByteBufAllocator bufAllocator = allocatorFor(allocator);
+        primaryGroup = transport.newEventLoopGroup(bossThreads);
+        secondaryGroup = transport.newEventLoopGroup(workerThreads);
         try {
             final ServerBootstrap bootstrap =
-                    new ServerBootstrap().group(primaryGroup, secondaryGroup).channel(NioServerSocketChannel.class)
-                            .childHandler(new ChannelInitializerImpl(context)).option(ChannelOption.SO_BACKLOG,
-                            128)
+                    new ServerBootstrap().group(primaryGroup, secondaryGroup).channel(transport.serverChannelClass())
+                            .childHandler(new ChannelInitializerImpl(httpsReady, useAlpn(), maxContentLength,
+                                    websocketUpgradeHandler))
+                            .option(ChannelOption.SO_BACKLOG, backlog)
+                            .option(ChannelOption.ALLOCATOR, bufAllocator)
+                            .childOption(ChannelOption.ALLOCATOR, bufAllocator)
                             .childOption(ChannelOption.SO_KEEPALIVE, true);
             channel = bootstrap.bind(new InetSocketAddress(bindHostname, port)).sync();
         } catch (InterruptedException e) {
             logger.atError().setCause(e).log("Fail starting httpd");
             throw e;
         }
-        logger.atInfo().addKeyValue("port", port).log("Finished starting httpd");
+        logger.atInfo().addKeyValue("port", port).kv("transport", transport).kv("bossThreads", bossThreads)
+                .kv("workerThreads", workerThreads).kv("allocator", allocator).log("Finished starting httpd");
+
+        if (httpsReady == null) {
+            reportState(State.RUNNING);
+            return;
+        }
+        // Only running once HTTPS is, so this can't overwrite the error reported when it fails
+        CompletableFuture<Boolean> ready = httpsReady;
+        ready.whenComplete((ok, e) -> {
+            if (ready != httpsReady) {
+                // Shut down or restarted in the meantime
+                return;
+            }
+            if (e != null) {
+                serviceErrored(e);
+            } else if (ok) {
+                reportState(State.RUNNING);
+            }
+        });
+    }
 
-        reportState(State.RUNNING);
+    private boolean isChinaPartition() {
+        String region = Coerce.toString(deviceConfig.getAWSRegion());
+        if (isEmpty(region)) {
+            return false;
+        }
+        RegionMetadata metadata = Region.of(region).metadata();
+        return metadata != null && "aws-cn".equals(metadata.partition().id());
     }
 
     boolean initializeHttps() {
@@ -238,7 +676,7 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
             ks = KeyStore.getInstance("JKS");
         } catch (IOException | KeyStoreException e) {
             serviceErrored(e);
-            return true;
+            return false;
         }
 
         // Get passphrase or generate a new one to use for the keystore password
@@ -261,8 +699,14 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
             } else {
                 initializeKeyStore(ks, passphrase, keyStorePath);
             }
-        } catch (IOException | NoSuchAlgorithmException | CertificateException
-                | KeyStoreException | OperatorCreationException e) {
+            Key existingKey = ks.getKey(PRIVATE_KEY_NAME, new char[0]);
+            if (existingKey == null || !keyAlgorithm.equalsIgnoreCase(existingKey.getAlgorithm())) {
+                logger.atInfo().kv("keyAlgorithm", keyAlgorithm)
+                        .log("Key algorithm changed. Generating a new self-signed certificate");
+                Files.deleteIfExists(keyStorePath);
+                initializeKeyStore(ks, passphrase, keyStorePath);
+            }
+        } catch (IOException | GeneralSecurityException | OperatorCreationException e) {
             serviceErrored(e);
             return false;
         }
@@ -271,9 +715,28 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
             // Grab key and cert for SSL setup
             PrivateKey privateKey = (PrivateKey) ks.getKey(PRIVATE_KEY_NAME, new char[0]);
             X509Certificate cert = (X509Certificate) ks.getCertificate(CERT_NAME);
-            context = SslContextBuilder.forServer(privateKey, cert).build();
-            SslContext finalContext = context;
-            engineProvider = () -> finalContext.newEngine(ByteBufAllocator.DEFAULT);
+            // The websocket server only speaks HTTP/1.1, so it must not be offered h2
+            JdkSslContext plainContext = (JdkSslContext) SslContextBuilder.forServer(privateKey, cert)
+                    .sslProvider(SslProvider.JDK)
+                    .sessionCacheSize(tlsSessionCacheSize)
+                    .sessionTimeout(tlsSessionTimeout)
+                    .build();
+            SslContext httpContext = plainContext;
+            if (useAlpn()) {
+                // Built on the same JDK context so both listeners share one session cache and ticket key, and a
+                // session from one can be resumed on the other
+                httpContext = new JdkSslContext(plainContext.context(), false, Http2SecurityUtil.CIPHERS,
+                        SupportedCipherSuiteFilter.INSTANCE, new ApplicationProtocolConfig(
+                                ApplicationProtocolConfig.Protocol.ALPN,
+                                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                                ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1),
+                        ClientAuth.NONE, null, false);
+            } else if (http2Enabled) {
+                logger.atWarn().log("ALPN is not supported by this JVM. Serving HTTP/1.1 only");
+            }
+            websocketContext = plainContext;
+            context = httpContext;
 
             // Save certificate fingerprint as space separated hex bytes
             String fingerprint = fingerprintCert(cert, SHA_1_ALGORITHM);
@@ -288,17 +751,22 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
         return true;
     }
 
+    private boolean useAlpn() {
+        return http2Enabled && SslProvider.isAlpnSupported(SslProvider.JDK);
+    }
+
     private void initializeKeyStore(KeyStore ks, char[] passphrase, Path keyStorePath)
-            throws IOException, NoSuchAlgorithmException, CertificateException, OperatorCreationException,
-            KeyStoreException {
+            throws IOException, GeneralSecurityException, OperatorCreationException {
         // Initialize keystore as empty
         ks.load(null, passphrase);
 
         // Generate keys and certificate
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-        keyGen.initialize(4096, new SecureRandom());
-        KeyPair keyPair = keyGen.generateKeyPair();
+        long start = System.nanoTime();
+        KeyPair keyPair = generateKeyPair(keyAlgorithm);
         X509Certificate cert = selfSign(keyPair, bindHostname);
+        logger.atInfo().kv("keyAlgorithm", keyAlgorithm)
+                .kv("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .log("Generated self-signed certificate");
 
         ks.setCertificateEntry(CERT_NAME, cert);
         ks.setKeyEntry(PRIVATE_KEY_NAME, keyPair.getPrivate(), new char[0], new Certificate[]{cert});
@@ -307,6 +775,18 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
         }
     }
 
+    static KeyPair generateKeyPair(String algorithm) throws GeneralSecurityException {
+        KeyPairGenerator keyGen;
+        if (EC_KEY_ALGORITHM.equalsIgnoreCase(algorithm)) {
+            keyGen = KeyPairGenerator.getInstance(EC_KEY_ALGORITHM);
+            keyGen.initialize(new ECGenParameterSpec(EC_CURVE), new SecureRandom());
+        } else {
+            keyGen = KeyPairGenerator.getInstance(RSA_KEY_ALGORITHM);
+            keyGen.initialize(RSA_KEY_SIZE, new SecureRandom());
+        }
+        return keyGen.generateKeyPair();
+    }
+
     static String fingerprintCert(X509Certificate cert, String algorithm)
             throws NoSuchAlgorithmException, CertificateEncodingException {
         StringBuilder sb = new StringBuilder();
@@ -334,7 +814,8 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
         calendar.add(Calendar.YEAR, 10); // 10 year validity period
         Date endDate = calendar.getTime();
 
-        String signatureAlgorithm = "SHA256WithRSA";
+        String signatureAlgorithm = EC_KEY_ALGORITHM.equals(keyPair.getPrivate().getAlgorithm())
+                ? "SHA256WithECDSA" : "SHA256WithRSA";
         ContentSigner contentSigner = new JcaContentSignerBuilder(signatureAlgorithm).build(keyPair.getPrivate());
         JcaX509v3CertificateBuilder
                 certBuilder = new JcaX509v3CertificateBuilder(dnName, certSerialNumber, startDate,
@@ -349,6 +830,14 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
     @Override
     public void shutdown() throws InterruptedException {
         logger.atInfo().log("Shutting down httpd");
+        httpsReady = null;
+        if (credentialSweep != null) {
+            credentialSweep.cancel(false);
+            credentialSweep = null;
+        }
+        if (handshakeMetrics.getCompleted() + handshakeMetrics.getFailed() > 0) {
+            logger.atInfo().kv("handshakes", handshakeMetrics).log("HTTPS TLS handshake summary");
+        }
         secondaryGroup.shutdownGracefully();
         primaryGroup.shutdownGracefully();
         try {
@@ -362,119 +851,169 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
         if (channel != null) {
             channel.channel().close().sync();
         }
+        assetCache.clear();
     }
 
-    private class ChannelInitializerImpl extends ChannelInitializer<SocketChannel> {
-        private final SslContext sslContext;
+    class ChannelInitializerImpl extends ChannelInitializer<SocketChannel> {
+        private final CompletableFuture<Boolean> httpsReady;
+        private final boolean alpn;
+        private final int maxContentLength;
+        private final WebSocketUpgradeHandler websocketUpgradeHandler;
 
-        public ChannelInitializerImpl(SslContext sslContext) {
-            this.sslContext = sslContext;
+        /**
+         * Constructor.
+         *
+         * @param httpsReady              completes once the TLS context is available, or null to serve plain HTTP
+         * @param alpn                    whether the TLS context lets clients negotiate HTTP/2
+         * @param maxContentLength        largest request body accepted
+         * @param websocketUpgradeHandler handles websocket upgrades, or null if the websocket has its own server
+         */
+        public ChannelInitializerImpl(CompletableFuture<Boolean> httpsReady, boolean alpn, int maxContentLength,
+                                      WebSocketUpgradeHandler websocketUpgradeHandler) {
+            this.httpsReady = httpsReady;
+            this.alpn = alpn;
+            this.maxContentLength = maxContentLength;
+            this.websocketUpgradeHandler = websocketUpgradeHandler;
         }
 
         @Override
         public void initChannel(final SocketChannel ch) throws Exception {
-            if (sslContext != null) {
+            if (httpsReady == null) {
+                configureHttp1(ch.pipeline());
+                return;
+            }
+            SslContext sslContext = context;
+            if (sslContext == null) {
+                // Still loading or generating the key. Hold the ClientHello until it's done, then swap in the real
+                // SslHandler. No timeout of its own, since generating an RSA key can take a while
+                ch.pipeline().addFirst("ssl", new SniHandler((hostname, promise) -> {
+                    httpsReady.whenComplete((ok, e) -> {
+                        SslContext ready = context;
+                        if (Boolean.TRUE.equals(ok) && ready != null) {
+                            promise.trySuccess(ready);
+                        } else {
+                            promise.tryFailure(e == null ? new SSLException("HTTPS could not be initialized") : e);
+                        }
+                    });
+                    return promise;
+                }, 0));
+            } else {
                 ch.pipeline().addFirst("ssl", sslContext.newHandler(ch.alloc()));
             }
-            ch.pipeline().addLast("codec", new HttpServerCodec());
-            ch.pipeline().addLast("aggregator", new HttpObjectAggregator(512 * 1024));
-            ch.pipeline().addLast("request", new PageHandler());
+            ch.pipeline().addLast(TlsHandshakeMetricsHandler.NAME, new TlsHandshakeMetricsHandler(handshakeMetrics));
+            if (alpn) {
+                ch.pipeline().addLast("alpn", new ProtocolNegotiationHandler());
+            } else {
+                configureHttp1(ch.pipeline());
+            }
         }
-    }
 
-    static final byte[] missing = {1, 2, 3};
+        private void configureHttp1(ChannelPipeline pipeline) {
+            pipeline.addLast("codec", new HttpServerCodec());
+            pipeline.addLast("aggregator", new HttpObjectAggregator(maxContentLength));
+            if (websocketUpgradeHandler != null) {
+                pipeline.addLast(WebSocketUpgradeHandler.NAME, websocketUpgradeHandler);
+            }
+            pipeline.addLast(CHUNKER_HANDLER, new ChunkedWriteHandler());
+            pipeline.addLast(REQUEST_HANDLER, pageHandler);
+        }
 
-    @SuppressWarnings("UseSpecificCatch")
-    public class PageHandler extends ChannelInboundHandlerAdapter {
+        /**
+         * Every HTTP/2 stream gets its own child channel, which looks just like an HTTP/1.1 connection to the
+         * {@link PageHandler}.
+         */
+        private void configureHttp2(ChannelPipeline pipeline) {
+            pipeline.addLast("http2", Http2FrameCodecBuilder.forServer()
+                    .initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(MAX_CONCURRENT_STREAMS))
+                    .build());
+            pipeline.addLast("multiplex", new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+                @Override
+                protected void initChannel(Channel stream) {
+                    stream.pipeline().addLast("codec", new Http2StreamFrameToHttpObjectCodec(true));
+                    stream.pipeline().addLast("aggregator", new HttpObjectAggregator(maxContentLength));
+                    stream.pipeline().addLast(CHUNKER_HANDLER, new ChunkedWriteHandler());
+                    stream.pipeline().addLast(REQUEST_HANDLER, pageHandler);
+                }
+            }));
+        }
 
         /**
-         * URI == prefix/basename.ext?query
+         * Sets up the rest of the pipeline once the TLS handshake has told us which protocol the client picked.
          */
-        public String uri;
-        Map<String, String> qparams = Collections.emptyMap();
-        public String name;
-        public String prefix;
-        public String ext;
-        public String basename;
-        public FullHttpRequest request;
+        private class ProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+            ProtocolNegotiationHandler() {
+                super(ApplicationProtocolNames.HTTP_1_1);
+            }
+
+            @Override
+            protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                    configureHttp2(ctx.pipeline());
+                } else if (ApplicationProtocolNames.HTTP_1_1.equals(protocol)) {
+                    configureHttp1(ctx.pipeline());
+                } else {
+                    logger.atWarn().kv("protocol", protocol).log("Unsupported application protocol");
+                    ctx.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles every request on every connection, so it must not hold any per-request state. Responses are written in
+     * the order the requests were decoded, which keeps pipelined requests correct, and are flushed together once
+     * everything that was read has been handled.
+     */
+    @ChannelHandler.Sharable
+    public class PageHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 
         @Override
-        public void channelRead(ChannelHandlerContext ctx, Object msg) {
-            if (msg instanceof FullHttpRequest) {
-                request = (FullHttpRequest) msg;
-                try {
-                    uri = request.uri();
-                    while (uri.startsWith("/")) {
-                        uri = uri.substring(1);
-                    }
-                    int qpos = uri.indexOf('?');
-                    if (qpos >= 0) {
-                        qparams = parseQuery(uri.substring(qpos + 1));
-                        uri = uri.substring(0, qpos);
-                    }
-                    int lsl = uri.lastIndexOf('/');
-                    if (lsl >= 0) {
-                        name = uri.substring(lsl + 1);
-                        prefix = uri.substring(0, lsl);
-                    } else {
-                        name = uri;
-                        prefix = "";
-                    }
-                    name = name.replace('-', '_');
-                    int epos = name.lastIndexOf('.');
-                    if (epos >= 0) {
-                        ext = name.substring(epos + 1);
-                        basename = name.substring(0, epos);
-                    } else {
-                        ext = "json";
-                        basename = name;
-                        if (isEmpty(basename)) {
-                            basename = "index";
-                            ext = "html";
-                        }
-                    }
-                    String authHeader = request.headers().get(HttpHeaderNames.AUTHORIZATION);
-                    if (!authenticated(authHeader)) {
-                        logger.atWarn().log("Failed to authenticate request from {}", ctx.channel().remoteAddress());
-                        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED);
-                        response.headers().set(HttpHeaderNames.WWW_AUTHENTICATE,
-                                "Basic realm=\"Greengrass View\", charset=\"UTF-8\"");
-                        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
-
-                        ctx.writeAndFlush(response);
-                        return;
-                    }
-                    logger.atDebug().kv("URI", uri).log("Incoming request");
-
-                    byte[] blob = this.getBlobForURI(uri, getUsernameAndPassword(authHeader));
-                    String mime = ext2mime(ext);
-
-                    if (blob != missing) {
-                        ByteBuf bb = copiedBuffer(blob);
-                        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, bb);
-                        response.headers().set(HttpHeaderNames.CONTENT_TYPE, mime);
-                        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, bb.writerIndex());
-                        ctx.writeAndFlush(response);
-                        return;
-                    }
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            String uri = requestPath(request.uri());
+            Session session = authenticate(request);
+            if (session == null) {
+                logger.atWarn().log("Failed to authenticate request from {}", ctx.channel().remoteAddress());
+                FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED);
+                response.headers().set(HttpHeaderNames.WWW_AUTHENTICATE,
+                        "Basic realm=\"Greengrass View\", charset=\"UTF-8\"");
+                response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+                // Keep the connection so the browser can retry with credentials without another TLS handshake
+                write(ctx, request, response, null, keepAlive);
+                return;
+            }
+            logger.atDebug().kv("URI", uri).log("Incoming request");
 
-                    FullHttpResponse response =
-                            new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND,
-                                    copiedBuffer("Not Found".getBytes(StandardCharsets.UTF_8)));
-                    if (HttpUtil.isKeepAlive(request)) {
-                        response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
-                    }
-                    ctx.writeAndFlush(response);
-                } finally {
-                    request.release();
-                }
-            } else {
-                try {
-                    super.channelRead(ctx, msg);
-                } catch (Exception ex) {
-                    logger.atError().setCause(ex).log("SimpleHttpServer.channelRead");
-                }
+            StaticAssetCache.Asset asset = assetCache.get(uri);
+            if (asset != null) {
+                HttpResponse response = assetResponse(ctx, request, asset, session);
+                setSessionCookie(response, session);
+                // Anything but a full response still needs its content written from the file
+                Path file = response instanceof FullHttpResponse ? null
+                        : asset.file(response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+                write(ctx, request, response, file, keepAlive);
+                return;
+            }
+
+            FullHttpResponse response =
+                    new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND,
+                            copiedBuffer("Not Found".getBytes(StandardCharsets.UTF_8)));
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            setSessionCookie(response, session);
+            write(ctx, request, response, null, keepAlive);
+        }
+
+        private void setSessionCookie(HttpResponse response, Session session) {
+            if (session.issuedUntil == 0) {
+                return;
             }
+            DefaultCookie cookie = new DefaultCookie(SESSION_COOKIE, session.token);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setSecure(httpsEnabled);
+            cookie.setSameSite(CookieHeaderNames.SameSite.Strict);
+            cookie.setMaxAge(TimeUnit.MILLISECONDS.toSeconds(session.issuedUntil - System.currentTimeMillis()));
+            response.headers().add(HttpHeaderNames.SET_COOKIE, ServerCookieEncoder.STRICT.encode(cookie));
         }
 
         public SimpleHttpServer getServer() {
@@ -492,48 +1031,211 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
 
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-            ctx.writeAndFlush(
-                    new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.INTERNAL_SERVER_ERROR,
-                            copiedBuffer(cause.getMessage().getBytes())));
+            logger.atError().setCause(cause).log("SimpleHttpServer.channelRead");
+            if (!ctx.channel().isActive()) {
+                return;
+            }
+            // The state of the connection is unknown, so don't try to reuse it
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            HttpUtil.setContentLength(response, 0);
+            HttpUtil.setKeepAlive(response, false);
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
         }
 
-        private byte[] getBlobForURI(String uri, Pair<String, String> usernameAndPassword) {
-            try {
-                if (isEmpty(uri) || "/".equals(uri)) {
-                    uri = "index.html";
-                }
-                URL u = this.getClass().getClassLoader().getResource("node/dashboard-frontend/" + uri);
-                if (u == null) {
-                    return missing;
-                }
-                try (InputStream in = u.openStream()) {
-                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    byte[] buf = new byte[1024];
-                    int nread;
-                    while ((nread = in.read(buf)) > 0) {
-                        bos.write(buf, 0, nread);
+        /**
+         * Write a response without flushing and close the connection after it if the client didn't ask to keep it.
+         *
+         * @param file content of the response if it isn't a {@link FullHttpResponse}
+         */
+        private void write(ChannelHandlerContext ctx, FullHttpRequest request, HttpResponse response, Path file,
+                           boolean keepAlive) {
+            if (!keepAlive) {
+                HttpUtil.setKeepAlive(response, false);
+            } else if (!request.protocolVersion().isKeepAliveDefault()) {
+                // HTTP/1.0 client which asked for keep-alive
+                response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+            }
+            ChannelFuture lastWrite;
+            if (file == null) {
+                lastWrite = ctx.write(response);
+            } else {
+                lastWrite = writeFile(ctx, response, file);
+            }
+            if (!keepAlive) {
+                lastWrite.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        private HttpResponse assetResponse(ChannelHandlerContext ctx, FullHttpRequest request,
+                                           StaticAssetCache.Asset asset, Session session) {
+            String encoding = null;
+            HttpResponse response;
+            if (asset.isTemplated()) {
+                response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                        asset.render(ctx.alloc(), placeholder -> sessionValueFor(placeholder, session)));
+            } else {
+                encoding = StaticAssetCache.negotiateEncoding(
+                        request.headers().get(HttpHeaderNames.ACCEPT_ENCODING), asset);
+                if (asset.isNotModified(request.headers().get(HttpHeaderNames.IF_NONE_MATCH),
+                        request.headers().get(HttpHeaderNames.IF_MODIFIED_SINCE), encoding)) {
+                    response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_MODIFIED);
+                } else if (asset.isFile()) {
+                    // Content is written separately, straight from the file
+                    response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                    if (encoding != null) {
+                        response.headers().set(HttpHeaderNames.CONTENT_ENCODING, encoding);
+                    }
+                } else {
+                    response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                            asset.content(encoding));
+                    if (encoding != null) {
+                        response.headers().set(HttpHeaderNames.CONTENT_ENCODING, encoding);
                     }
-                    return bos.toString(StandardCharsets.UTF_8.name())
-                            .replace("%WEBSOCKET_PORT%", Integer.toString(websocketPort))
-                            .replace("%USERNAME%", usernameAndPassword.getLeft())
-                            .replace("%PASSWORD%", usernameAndPassword.getRight())
-                            .replace("%CHINA_PARTITION%",
-                                    String.valueOf("aws-cn"
-                                            .equals(Region.of(Coerce.toString(deviceConfig.getAWSRegion())).metadata()
-                                                    .partition().id())))
-                            .getBytes(StandardCharsets.UTF_8);
                 }
-            } catch (Throwable t) {
-                logger.atError().setCause(t).log("Error loading HTTP blob");
-                serviceErrored(t);
-                return missing;
+                response.headers().set(HttpHeaderNames.ETAG, asset.etag(encoding));
+                response.headers().set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+                response.headers().set(HttpHeaderNames.LAST_MODIFIED, new Date(asset.getLastModified()));
+            }
+            if (response.status() == HttpResponseStatus.OK) {
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, asset.getMime());
+            }
+            // A 304 has no body, and a Content-Length would have to be the length of the content it stands for
+            if (response instanceof FullHttpResponse && response.status() != HttpResponseStatus.NOT_MODIFIED) {
+                HttpUtil.setContentLength(response, ((FullHttpResponse) response).content().readableBytes());
+            }
+            response.headers().set(HttpHeaderNames.CACHE_CONTROL, asset.getCacheControl());
+            return response;
+        }
+
+        /**
+         * Write the headers and then the content straight from the file.
+         *
+         * @return the future of the last write for this response
+         */
+        private ChannelFuture writeFile(ChannelHandlerContext ctx, HttpResponse response, Path file) {
+            FileChannel fileChannel;
+            long length;
+            try {
+                fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+                length = fileChannel.size();
+            } catch (IOException e) {
+                logger.atError().setCause(e).kv("file", file).log("Error opening HTTP file");
+                FullHttpResponse error = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                        HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                HttpUtil.setContentLength(error, 0);
+                return ctx.write(error);
+            }
+            HttpUtil.setContentLength(response, length);
+            ctx.write(response);
+            if (ctx.channel() instanceof SocketChannel && ctx.pipeline().get(SslHandler.class) == null) {
+                // Plain HTTP/1.1 sockets can use sendfile so the content never has to be copied into user space
+                ctx.write(new DefaultFileRegion(fileChannel, 0, length));
+                return ctx.write(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+            // TLS has to encrypt in user space anyway and HTTP/2 has to frame it, so stream the file through in chunks
+            try {
+                return ctx.write(new HttpChunkedInput(new ChunkedNioFile(fileChannel, 0, length, FILE_CHUNK_SIZE)));
+            } catch (IOException e) {
+                closeQuietly(fileChannel);
+                logger.atError().setCause(e).kv("file", file).log("Error reading HTTP file");
+                // The headers have gone out already so there's no way to report this to the client
+                return ctx.close();
+            }
+        }
+
+        private String sessionValueFor(String placeholder, Session session) {
+            if (AssetTemplate.USERNAME.equals(placeholder)) {
+                return session.username;
+            }
+            if (AssetTemplate.SESSION_TOKEN.equals(placeholder)) {
+                return session.token;
+            }
+            return null;
+        }
+    }
+
+    private static void closeQuietly(FileChannel fileChannel) {
+        try {
+            fileChannel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Work out who a request is from. A valid session cookie only needs an HMAC check and an index lookup, so the
+     * username and password are only looked at if there isn't one, in which case a new session is started.
+     *
+     * @return the session, or null if the request isn't authenticated
+     */
+    private Session authenticate(HttpRequest request) {
+        String token = sessionCookie(request);
+        String username = sessionUser(token);
+        if (username != null) {
+            return new Session(username, token, 0);
+        }
+        Pair<String, String> usernameAndPassword =
+                getUsernameAndPassword(request.headers().get(HttpHeaderNames.AUTHORIZATION));
+        if (usernameAndPassword == null) {
+            return null;
+        }
+        boolean authDisabled = consoleAuthDisabled();
+        long validUntil = authDisabled ? Long.MAX_VALUE
+                : credentialStore.validUntil(usernameAndPassword.getLeft(), usernameAndPassword.getRight());
+        if (validUntil == 0) {
+            return null;
+        }
+        // Never outlive the password
+        long expiresAt = Math.min(validUntil, System.currentTimeMillis() + SESSION_TTL_MILLIS);
+        username = usernameAndPassword.getLeft();
+        String passwordId = authDisabled ? "" : credentialStore.passwordId(usernameAndPassword.getRight());
+        return new Session(username, sessionTokens.issue(username, passwordId, expiresAt), expiresAt);
+    }
+
+    /**
+     * Check a session token, and that the password the session was started with hasn't been revoked since.
+     *
+     * @return the user the session is for, or null if it isn't valid
+     */
+    private String sessionUser(String token) {
+        SessionTokens.Claims claims = sessionTokens.verify(token);
+        if (claims == null) {
+            return null;
+        }
+        if (!consoleAuthDisabled() && !credentialStore.isValidById(claims.getUsername(), claims.getPasswordId())) {
+            return null;
+        }
+        return claims.getUsername();
+    }
+
+    private static String sessionCookie(HttpRequest request) {
+        // HTTP/2 clients may split cookies over several headers
+        for (String header : request.headers().getAll(HttpHeaderNames.COOKIE)) {
+            for (Cookie cookie : ServerCookieDecoder.STRICT.decode(header)) {
+                if (SESSION_COOKIE.equals(cookie.name())) {
+                    return cookie.value();
+                }
             }
         }
+        return null;
     }
 
-    private boolean authenticated(String authHeader) {
-        Pair<String, String> usernameAndPassword = getUsernameAndPassword(authHeader);
-        return usernameAndPassword != null && isUsernameAndPasswordValid(usernameAndPassword);
+    @Override
+    public boolean isSessionTokenValid(String token) {
+        return consoleAuthDisabled() || sessionUser(token) != null;
+    }
+
+    private static final class Session {
+        private final String username;
+        private final String token;
+        // When a newly issued token expires, 0 if the client already had it
+        private final long issuedUntil;
+
+        Session(String username, String token, long issuedUntil) {
+            this.username = username;
+            this.token = token;
+            this.issuedUntil = issuedUntil;
+        }
     }
 
     @Override
@@ -542,36 +1244,11 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
             return true;
         }
 
-        Topics passwordTopics = config.getRoot().findTopics(DEBUG_PASSWORD_NAMESPACE);
-        if (passwordTopics == null || usernameAndPassword == null) {
+        if (usernameAndPassword == null) {
             return false;
         }
-
-        // Cleanup any expired passwords first
-        // foreach user
-        passwordTopics.forEach(n -> {
-            if (n instanceof Topics) {
-                // foreach password under the user
-                ((Topics) n).forEach(p -> {
-                    if (p instanceof Topics) {
-                        Topic exp = ((Topics) p).find(EXPIRATION_NAMESPACE);
-                        // If there's somehow no expiration set or if it has expired already, then remove it from the
-                        // store
-                        if (exp == null || Instant.now().isAfter(Instant.ofEpochMilli(Coerce.toLong(exp)))) {
-                            p.remove();
-                        }
-                    }
-                });
-            }
-        });
-
-        // Verify this incoming request
-        Topic expirationTopic = passwordTopics.find(usernameAndPassword.getLeft(), usernameAndPassword.getRight(),
-                EXPIRATION_NAMESPACE);
-        if (expirationTopic == null) {
-            return false;
-        }
-        return Instant.now().isBefore(Instant.ofEpochMilli(Coerce.toLong(expirationTopic)));
+        // Expired passwords are swept out of the config in the background
+        return credentialStore.isValid(usernameAndPassword.getLeft(), usernameAndPassword.getRight());
     }
 
     private static boolean consoleAuthDisabled() {
@@ -614,6 +1291,18 @@ public class SimpleHttpServer extends PluginService implements Authenticator {
         }
     }
 
+    /**
+     * Get the path of a request URI relative to the server root, without any leading slashes or query string.
+     */
+    static String requestPath(String uri) {
+        int start = 0;
+        while (start < uri.length() && uri.charAt(start) == '/') {
+            start++;
+        }
+        int qpos = uri.indexOf('?', start);
+        return uri.substring(start, qpos >= 0 ? qpos : uri.length());
+    }
+
     public static Map<String, String> parseQuery(String q) {
         if (q == null || q.length() == 0) {
             return Collections.emptyMap();
@@ -0,0 +1,568 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.logging.api.Logger;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DateFormatter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory copy of the dashboard frontend. Every asset is read from the classpath once when the server starts,
+ * compressed up front, and then served from immutable buffers which are shared between all responses. The cache
+ * only has to be rebuilt when one of the server-wide values templated into the assets changes.
+ *
+ * <p>When an on-disk asset root is configured, only the HTML entry points are held in memory. Everything else is
+ * resolved to a file under the root on each request so that it can be written out without copying it onto the
+ * heap.</p>
+ */
+class StaticAssetCache {
+    static final String ASSET_ROOT = "node/dashboard-frontend/";
+    static final String INDEX = "index.html";
+    static final String GZIP = "gzip";
+    static final String BROTLI = "br";
+    static final String HTML_MIME = "text/html";
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String BROTLI_SUFFIX = ".br";
+    // Bundles emitted by the frontend build have a content hash in their name, e.g. static/js/main.1a2b3c4d.js
+    private static final Pattern HASHED_NAME = Pattern.compile(".*\\.[0-9a-f]{8,}(\\.chunk)?\\.[a-z0-9]+");
+    static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    static final String CACHE_REVALIDATE = "no-cache";
+    // The rendered entry point carries the caller's credentials, so it must never be stored
+    static final String CACHE_NO_STORE = "no-store";
+
+    // Don't bother keeping a compressed copy unless it saves at least this fraction of the original size
+    private static final double MIN_COMPRESSION_RATIO = 0.9;
+
+    private final Logger logger;
+    private final ClassLoader classLoader;
+
+    private volatile Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private volatile int websocketPort = -1;
+    private volatile boolean chinaPartition;
+    private volatile long loadTime;
+    private volatile Path root;
+
+    StaticAssetCache(Logger logger, ClassLoader classLoader) {
+        this.logger = logger;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Make sure that the cache holds the assets for the given server-wide values. This is a no-op if the cache was
+     * already populated for the same values.
+     *
+     * @param websocketPort  port of the websocket server, substituted for %WEBSOCKET_PORT%
+     * @param chinaPartition whether the device is in the aws-cn partition, substituted for %CHINA_PARTITION%
+     */
+    synchronized void refresh(int websocketPort, boolean chinaPartition) {
+        if (this.websocketPort == websocketPort && this.chinaPartition == chinaPartition) {
+            return;
+        }
+        this.websocketPort = websocketPort;
+        this.chinaPartition = chinaPartition;
+        this.loadTime = System.currentTimeMillis();
+
+        Map<String, byte[]> raw = new HashMap<>();
+        Map<String, Long> modified = new HashMap<>();
+        try {
+            readAll(raw, modified);
+        } catch (IOException | URISyntaxException e) {
+            // Fall back to loading assets lazily as they are requested
+            logger.atWarn().setCause(e).log("Unable to preload dashboard assets");
+            raw.clear();
+        }
+
+        Map<String, Asset> loaded = new ConcurrentHashMap<>();
+        raw.forEach((path, bytes) -> {
+            if (path.endsWith(GZIP_SUFFIX) || path.endsWith(BROTLI_SUFFIX)) {
+                // Precompressed siblings are attached to the asset they belong to below
+                return;
+            }
+            loaded.put(path, buildAsset(path, bytes, modified.get(path), raw.get(path + GZIP_SUFFIX),
+                    raw.get(path + BROTLI_SUFFIX)));
+        });
+        assets = loaded;
+        logger.atInfo().kv("assets", loaded.size()).kv("websocketPort", websocketPort)
+                .kv("chinaPartition", chinaPartition).log("Loaded dashboard assets");
+    }
+
+    /**
+     * Serve assets from a directory instead of the classpath.
+     *
+     * @param root the directory holding the frontend build, or null to use the classpath
+     */
+    synchronized void setRoot(Path root) {
+        if (!Objects.equals(this.root, root)) {
+            this.root = root;
+            clear();
+        }
+    }
+
+    /**
+     * Drop all cached assets. The next call to {@link #refresh(int, boolean)} will reload them.
+     */
+    synchronized void clear() {
+        assets = new ConcurrentHashMap<>();
+        websocketPort = -1;
+    }
+
+    boolean isLoaded() {
+        return websocketPort >= 0;
+    }
+
+    /**
+     * Find an asset by its path relative to the frontend root.
+     *
+     * @param path relative path, with no leading slash. Empty means the index page
+     * @return the asset, or null if there is no such asset
+     */
+    Asset get(String path) {
+        if (path == null || path.isEmpty() || "/".equals(path)) {
+            path = INDEX;
+        }
+        Map<String, Asset> current = assets;
+        Asset asset = current.get(path);
+        if (asset != null || path.contains("..")) {
+            return asset;
+        }
+        Path dir = root;
+        if (dir != null) {
+            return getFile(dir, path);
+        }
+        // Not preloaded, e.g. the classpath couldn't be listed. Load it now and keep it for next time.
+        URL u = classLoader.getResource(ASSET_ROOT + path);
+        if (u == null) {
+            return null;
+        }
+        try {
+            URLConnection connection = u.openConnection();
+            try (InputStream in = connection.getInputStream()) {
+                asset = buildAsset(path, readFully(in), connection.getLastModified(), null, null);
+            }
+        } catch (IOException e) {
+            logger.atError().setCause(e).kv("path", path).log("Error loading HTTP blob");
+            return null;
+        }
+        Asset existing = current.putIfAbsent(path, asset);
+        return existing == null ? asset : existing;
+    }
+
+    private Asset getFile(Path dir, String path) {
+        Path file = dir.resolve(path).normalize();
+        if (!file.startsWith(dir) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        String mime = SimpleHttpServer.ext2mime(extension(path));
+        try {
+            if (HTML_MIME.equals(mime)) {
+                // Entry points need templating so they always live in memory
+                Asset asset = buildAsset(path, Files.readAllBytes(file), Files.getLastModifiedTime(file).toMillis(),
+                        null, null);
+                Asset existing = assets.putIfAbsent(path, asset);
+                return existing == null ? asset : existing;
+            }
+            return new Asset(mime, file, sibling(file, GZIP_SUFFIX), sibling(file, BROTLI_SUFFIX),
+                    Files.getLastModifiedTime(file).toMillis(), Files.size(file),
+                    HASHED_NAME.matcher(path).matches() ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        } catch (IOException e) {
+            logger.atError().setCause(e).kv("path", path).log("Error loading HTTP blob");
+            return null;
+        }
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        Path sibling = file.resolveSibling(file.getFileName().toString() + suffix);
+        return Files.isRegularFile(sibling) ? sibling : null;
+    }
+
+    private Asset buildAsset(String path, byte[] bytes, Long lastModified, byte[] gzip, byte[] brotli) {
+        String mime = SimpleHttpServer.ext2mime(extension(path));
+        // Jar entries don't always carry a time, the cache build is the next best thing
+        long modified = lastModified == null || lastModified <= 0 ? loadTime : lastModified;
+        // Only the HTML entry points have placeholders, everything else is served exactly as it was built
+        if (HTML_MIME.equals(mime)) {
+            Map<String, String> staticValues = new HashMap<>();
+            staticValues.put(AssetTemplate.WEBSOCKET_PORT, Integer.toString(websocketPort));
+            staticValues.put(AssetTemplate.CHINA_PARTITION, String.valueOf(chinaPartition));
+            AssetTemplate template = AssetTemplate.compile(bytes, staticValues);
+            if (template.hasPlaceholders()) {
+                // Rendered per request with the caller's credentials, so there's nothing to gain from compressing now
+                return new Asset(mime, template, modified);
+            }
+            bytes = template.staticContent();
+            // A precompressed copy from the build would still have the placeholders in it
+            gzip = null;
+            brotli = null;
+        }
+        if (gzip == null && isCompressible(mime)) {
+            gzip = gzip(bytes);
+            if (gzip != null && gzip.length > bytes.length * MIN_COMPRESSION_RATIO) {
+                gzip = null;
+            }
+        }
+        String cacheControl = HASHED_NAME.matcher(path).matches() ? CACHE_IMMUTABLE : CACHE_REVALIDATE;
+        return new Asset(mime, bytes, gzip, brotli, modified, cacheControl);
+    }
+
+    private void readAll(Map<String, byte[]> into, Map<String, Long> modified)
+            throws IOException, URISyntaxException {
+        Path dir = root;
+        if (dir != null) {
+            // Only the entry points are kept in memory when serving from disk
+            readDirectory(dir, into, modified, p -> HTML_MIME.equals(SimpleHttpServer.ext2mime(extension(p))));
+            return;
+        }
+        URL url = classLoader.getResource(ASSET_ROOT);
+        if (url == null) {
+            return;
+        }
+        if ("file".equals(url.getProtocol())) {
+            readDirectory(Paths.get(url.toURI()), into, modified, p -> true);
+        } else if ("jar".equals(url.getProtocol())) {
+            JarURLConnection connection = (JarURLConnection) url.openConnection();
+            // Use our own handle on the jar so that closing it doesn't affect the classloader
+            connection.setUseCaches(false);
+            try (JarFile jar = connection.getJarFile()) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (entry.isDirectory() || !entry.getName().startsWith(ASSET_ROOT)) {
+                        continue;
+                    }
+                    String path = entry.getName().substring(ASSET_ROOT.length());
+                    try (InputStream in = jar.getInputStream(entry)) {
+                        into.put(path, readFully(in));
+                    }
+                    modified.put(path, entry.getTime());
+                }
+            }
+        } else {
+            throw new IOException("Unsupported asset location " + url);
+        }
+    }
+
+    private static void readDirectory(Path dir, Map<String, byte[]> into, Map<String, Long> modified,
+                                      Predicate<String> filter) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String path = dir.relativize(p).toString().replace('\\', '/');
+                if (filter.test(path)) {
+                    into.put(path, Files.readAllBytes(p));
+                    modified.put(path, Files.getLastModifiedTime(p).toMillis());
+                }
+            }
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int nread;
+        while ((nread = in.read(buf)) > 0) {
+            bos.write(buf, 0, nread);
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length / 2 + 64);
+        // Compression only happens once per asset, so spend the extra time to get the smallest output
+        try (GZIPOutputStream out = new GZIPOutputStream(bos) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(bytes);
+        } catch (IOException e) {
+            return null;
+        }
+        return bos.toByteArray();
+    }
+
+    static String extension(String path) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        return dot > slash ? path.substring(dot + 1) : "";
+    }
+
+    private static boolean isCompressible(String mime) {
+        return !"image/png".equals(mime) && !"image/jpeg".equals(mime) && !"image/gif".equals(mime);
+    }
+
+    /**
+     * Pick the best encoding that the client accepts and that we have a copy of.
+     *
+     * @param acceptEncoding value of the Accept-Encoding request header, may be null
+     * @param asset          the asset to be served
+     * @return {@link #BROTLI}, {@link #GZIP} or null for the identity encoding
+     */
+    static String negotiateEncoding(String acceptEncoding, Asset asset) {
+        if (acceptEncoding == null || !asset.has(GZIP) && !asset.has(BROTLI)) {
+            return null;
+        }
+        boolean br = false;
+        boolean gz = false;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim();
+            if (parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (BROTLI.equalsIgnoreCase(coding)) {
+                br = true;
+            } else if (GZIP.equalsIgnoreCase(coding)) {
+                gz = true;
+            }
+        }
+        if (br && asset.has(BROTLI)) {
+            return BROTLI;
+        }
+        if (gz && asset.has(GZIP)) {
+            return GZIP;
+        }
+        return null;
+    }
+
+    /**
+     * A single frontend asset along with any compressed copies of it. The content is either held in memory or, when
+     * serving from disk, left in a file.
+     */
+    static final class Asset {
+        private final String mime;
+        private final ByteBuf identity;
+        private final AssetTemplate template;
+        private final ByteBuf gzip;
+        private final ByteBuf brotli;
+        private final Path file;
+        private final Path gzipFile;
+        private final Path brotliFile;
+        private final String etag;
+        private final long lastModified;
+        private final String cacheControl;
+
+        Asset(String mime, byte[] identity, byte[] gzip, byte[] brotli, long lastModified, String cacheControl) {
+            this.mime = mime;
+            this.identity = share(identity);
+            this.template = null;
+            this.gzip = share(gzip);
+            this.brotli = share(brotli);
+            this.file = null;
+            this.gzipFile = null;
+            this.brotliFile = null;
+            this.etag = contentHash(identity);
+            this.lastModified = lastModified;
+            this.cacheControl = cacheControl;
+        }
+
+        Asset(String mime, Path file, Path gzipFile, Path brotliFile, long lastModified, long size,
+              String cacheControl) {
+            this.mime = mime;
+            this.identity = null;
+            this.template = null;
+            this.gzip = null;
+            this.brotli = null;
+            this.file = file;
+            this.gzipFile = gzipFile;
+            this.brotliFile = brotliFile;
+            // Hashing every file on every request would defeat the point, use the same scheme as most web servers
+            this.etag = Long.toHexString(lastModified) + '-' + Long.toHexString(size);
+            this.lastModified = lastModified;
+            this.cacheControl = cacheControl;
+        }
+
+        Asset(String mime, AssetTemplate template, long lastModified) {
+            this.mime = mime;
+            this.identity = null;
+            this.template = template;
+            this.gzip = null;
+            this.brotli = null;
+            this.file = null;
+            this.gzipFile = null;
+            this.brotliFile = null;
+            // Every rendering is different, so there is nothing to validate against
+            this.etag = null;
+            this.lastModified = lastModified;
+            this.cacheControl = CACHE_NO_STORE;
+        }
+
+        private static String contentHash(byte[] bytes) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+            } catch (NoSuchAlgorithmException e) {
+                // Every JVM is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static ByteBuf share(byte[] bytes) {
+            if (bytes == null) {
+                return null;
+            }
+            // Responses release their content once written, which must not affect the cached copy
+            return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(bytes).asReadOnly());
+        }
+
+        String getMime() {
+            return mime;
+        }
+
+        String getCacheControl() {
+            return cacheControl;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Get the strong entity tag of one encoding of this asset. Each encoding is a different representation, so
+         * they all get different tags.
+         *
+         * @param encoding one of {@link #GZIP}, {@link #BROTLI} or null
+         * @return quoted entity tag, or null if the asset can't be validated
+         */
+        String etag(String encoding) {
+            if (etag == null) {
+                return null;
+            }
+            return encoding == null ? '"' + etag + '"' : '"' + etag + '-' + encoding + '"';
+        }
+
+        /**
+         * Check whether the client's copy is still current.
+         *
+         * @param ifNoneMatch     value of the If-None-Match request header, may be null
+         * @param ifModifiedSince value of the If-Modified-Since request header, may be null. Only considered when
+         *                        there is no If-None-Match
+         * @param encoding        encoding the client would be sent, since only its tag identifies the client's copy
+         * @return true if a 304 can be sent instead of the content
+         */
+        boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String encoding) {
+            if (etag == null) {
+                return false;
+            }
+            if (ifNoneMatch != null) {
+                for (String tag : ifNoneMatch.split(",")) {
+                    tag = tag.trim();
+                    if (tag.startsWith("W/")) {
+                        tag = tag.substring(2);
+                    }
+                    if ("*".equals(tag) || tag.equals(etag(encoding))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (ifModifiedSince != null) {
+                Date since = DateFormatter.parseHttpDate(ifModifiedSince);
+                // HTTP dates only have a resolution of seconds
+                return since != null && lastModified / 1000 <= since.getTime() / 1000;
+            }
+            return false;
+        }
+
+        /**
+         * Whether the asset still has per-request placeholders (the caller's credentials) in it.
+         */
+        boolean isTemplated() {
+            return template != null;
+        }
+
+        /**
+         * Whether the content is in a file rather than in memory.
+         */
+        boolean isFile() {
+            return file != null;
+        }
+
+        boolean has(String encoding) {
+            if (BROTLI.equals(encoding)) {
+                return brotli != null || brotliFile != null;
+            }
+            if (GZIP.equals(encoding)) {
+                return gzip != null || gzipFile != null;
+            }
+            return false;
+        }
+
+        /**
+         * Get the file to write out for the given encoding.
+         *
+         * @param encoding one of {@link #GZIP}, {@link #BROTLI} or null
+         * @return the file
+         */
+        Path file(String encoding) {
+            if (BROTLI.equals(encoding) && brotliFile != null) {
+                return brotliFile;
+            }
+            if (GZIP.equals(encoding) && gzipFile != null) {
+                return gzipFile;
+            }
+            return file;
+        }
+
+        /**
+         * Render a templated asset for one request.
+         *
+         * @param alloc  allocator for the per-request parts of the content
+         * @param values gives the value for each per-request placeholder
+         * @return the rendered content
+         */
+        ByteBuf render(ByteBufAllocator alloc, Function<String, String> values) {
+            return template.render(alloc, values);
+        }
+
+        /**
+         * Get the content to write out for the given encoding. The returned buffer has its own indices so it can be
+         * written directly.
+         *
+         * @param encoding one of {@link #GZIP}, {@link #BROTLI} or null
+         * @return the content
+         */
+        ByteBuf content(String encoding) {
+            if (BROTLI.equals(encoding) && brotli != null) {
+                return brotli.duplicate();
+            }
+            if (GZIP.equals(encoding) && gzip != null) {
+                return gzip.duplicate();
+            }
+            return identity.duplicate();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which subscribers, i.e. dashboard connections, are subscribed to which keys, such as component names.
+ *
+ * <p>Pushes read the subscribers of a key from kernel threads while connections subscribe and unsubscribe, so the
+ * subscribers of a key are an immutable set which is replaced on every change. Reading them needs no lock and a push
+ * can iterate them however long it takes. Subscribing is much rarer than pushing, so the copying is cheap. Each
+ * subscriber's keys are indexed too, so that dropping a connection only touches what it was subscribed to.
+ *
+ * <p>Calls for one subscriber are expected not to race with each other, as the dashboard's calls for a connection
+ * run one at a time and cleanup only happens once they are done.
+ *
+ * @param <T> subscriber
+ */
+class SubscriptionRegistry<T> {
+    private final Map<String, Set<T>> subscribersByKey = new ConcurrentHashMap<>();
+    private final Map<T, Set<String>> keysBySubscriber = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribe to a key.
+     *
+     * @param key        what to subscribe to
+     * @param subscriber who is subscribing
+     * @return false if it was already subscribed
+     */
+    boolean subscribe(String key, T subscriber) {
+        if (!keysBySubscriber.computeIfAbsent(subscriber, s -> ConcurrentHashMap.newKeySet()).add(key)) {
+            return false;
+        }
+        subscribersByKey.compute(key, (k, old) -> {
+            Set<T> updated = old == null ? new HashSet<>() : new HashSet<>(old);
+            updated.add(subscriber);
+            return Collections.unmodifiableSet(updated);
+        });
+        return true;
+    }
+
+    /**
+     * Unsubscribe from a key.
+     *
+     * @param key        what to unsubscribe from
+     * @param subscriber who is unsubscribing
+     * @return false if it wasn't subscribed
+     */
+    boolean unsubscribe(String key, T subscriber) {
+        Set<String> keys = keysBySubscriber.get(subscriber);
+        if (keys == null || !keys.remove(key)) {
+            return false;
+        }
+        removeSubscriber(key, subscriber);
+        return true;
+    }
+
+    /**
+     * Unsubscribe from everything, e.g. once a connection has closed.
+     *
+     * @param subscriber who is unsubscribing
+     * @return how many keys it was subscribed to
+     */
+    int unsubscribeAll(T subscriber) {
+        Set<String> keys = keysBySubscriber.remove(subscriber);
+        if (keys == null) {
+            return 0;
+        }
+        for (String key : keys) {
+            removeSubscriber(key, subscriber);
+        }
+        return keys.size();
+    }
+
+    private void removeSubscriber(String key, T subscriber) {
+        subscribersByKey.computeIfPresent(key, (k, old) -> {
+            if (!old.contains(subscriber)) {
+                return old;
+            }
+            if (old.size() == 1) {
+                // Keys come and go with components, so empty ones aren't kept around
+                return null;
+            }
+            Set<T> updated = new HashSet<>(old);
+            updated.remove(subscriber);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+
+    /**
+     * Get who is subscribed to a key.
+     *
+     * @param key what they're subscribed to
+     * @return the subscribers at the time of the call, which later changes don't affect
+     */
+    Set<T> getSubscribers(String key) {
+        return subscribersByKey.getOrDefault(key, Collections.emptySet());
+    }
+
+    /**
+     * Get what a subscriber is subscribed to.
+     *
+     * @param subscriber who is subscribed
+     * @return the keys at the time of the call
+     */
+    Set<String> getKeys(T subscriber) {
+        Set<String> keys = keysBySubscriber.get(subscriber);
+        return keys == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(keys));
+    }
+
+    /**
+     * How many keys have subscribers.
+     */
+    int size() {
+        return subscribersByKey.size();
+    }
+
+    void clear() {
+        keysBySubscriber.clear();
+        subscribersByKey.clear();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Counts TLS handshakes and how long they took. Latencies go into power of two millisecond buckets, which is plenty
+ * to tell a 5ms handshake from one stuck for a second behind other clients, and keeps recording lock free. Resumed
+ * handshakes are counted separately since they skip the expensive key exchange.
+ */
+class TlsHandshakeMetrics {
+    // Bucket i holds handshakes which took less than 2^i ms, the last one holds everything slower
+    private static final int BUCKETS = 16;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Whether a handshake resumed an earlier session rather than negotiating a new one. The JDK doesn't say so
+     * directly, but a resumed session keeps the creation time of the session it was resumed from.
+     *
+     * @param session         the session once the handshake has finished
+     * @param connectedMillis wall clock time the connection was accepted
+     * @return true if the session is older than the connection
+     */
+    static boolean isResumed(SSLSession session, long connectedMillis) {
+        return session.getCreationTime() < connectedMillis;
+    }
+
+    void recordCompleted(long nanos, boolean wasResumed) {
+        completed.increment();
+        if (wasResumed) {
+            resumed.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        histogram.incrementAndGet(bucketFor(TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    long getCompleted() {
+        return completed.sum();
+    }
+
+    long getResumed() {
+        return resumed.sum();
+    }
+
+    long getFailed() {
+        return failed.sum();
+    }
+
+    double getMeanMillis() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    long getMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * Upper bound of the given latency percentile.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return the handshake time in ms which at least that percentage of handshakes finished within, or 0 if no
+     *     handshake has completed yet
+     */
+    long getPercentileMillis(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(1L << i, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    private static int bucketFor(long millis) {
+        int bucket = 64 - Long.numberOfLeadingZeros(millis);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("completed=%d, resumed=%d, failed=%d, mean=%.1fms, p50=%dms, p99=%dms, max=%dms",
+                getCompleted(), getResumed(), getFailed(), getMeanMillis(), getPercentileMillis(50),
+                getPercentileMillis(99), getMaxMillis());
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+
+/**
+ * Records the TLS handshake of one connection to the HTTP server, then takes itself out of the pipeline.
+ */
+class TlsHandshakeMetricsHandler extends ChannelInboundHandlerAdapter {
+    static final String NAME = "handshakeMetrics";
+
+    private final TlsHandshakeMetrics metrics;
+    private final long startNanos = System.nanoTime();
+    private final long startMillis = System.currentTimeMillis();
+
+    TlsHandshakeMetricsHandler(TlsHandshakeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof SslHandshakeCompletionEvent) {
+            SslHandler sslHandler = ctx.pipeline().get(SslHandler.class);
+            if (((SslHandshakeCompletionEvent) evt).isSuccess() && sslHandler != null) {
+                metrics.recordCompleted(System.nanoTime() - startNanos,
+                        TlsHandshakeMetrics.isResumed(sslHandler.engine().getSession(), startMillis));
+            } else {
+                metrics.recordFailed();
+            }
+            ctx.pipeline().remove(this);
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+}
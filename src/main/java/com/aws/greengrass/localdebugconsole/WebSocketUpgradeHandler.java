@@ -0,0 +1,160 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.logging.api.Logger;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Lets the dashboard websocket share the HTTP server's port, event loops and TLS. Upgrade requests switch the
+ * connection over to a websocket pipeline which feeds the {@link DashboardServer}, every other request carries on to
+ * the page handler.
+ */
+@ChannelHandler.Sharable
+class WebSocketUpgradeHandler extends ChannelInboundHandlerAdapter {
+    static final String NAME = "websocketUpgrade";
+
+    private final DashboardServer dashboardServer;
+    private final int maxMessageLength;
+    private final Logger logger;
+
+    /**
+     * Constructor.
+     *
+     * @param dashboardServer  handles the websocket connections
+     * @param maxMessageLength largest message accepted from a client
+     * @param logger           logger
+     */
+    WebSocketUpgradeHandler(DashboardServer dashboardServer, int maxMessageLength, Logger logger) {
+        this.dashboardServer = dashboardServer;
+        this.maxMessageLength = maxMessageLength;
+        this.logger = logger;
+    }
+
+    static boolean isUpgrade(HttpRequest request) {
+        return HttpHeaderValues.WEBSOCKET.contentEqualsIgnoreCase(request.headers().get(HttpHeaderNames.UPGRADE))
+                && request.headers().containsValue(HttpHeaderNames.CONNECTION, HttpHeaderValues.UPGRADE, true);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof FullHttpRequest) || !isUpgrade((FullHttpRequest) msg)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        FullHttpRequest request = (FullHttpRequest) msg;
+        String uri = request.uri();
+        int qpos = uri.indexOf('?');
+        // The dashboard authenticates in its first message, so the socket can be on any path
+        WebSocketServerProtocolConfig config = WebSocketServerProtocolConfig.newBuilder()
+                .websocketPath(qpos >= 0 ? uri.substring(0, qpos) : uri)
+                .checkStartsWith(true)
+                .maxFramePayloadLength(maxMessageLength)
+                .handleCloseFrames(false)
+                .build();
+
+        ChannelPipeline pipeline = ctx.pipeline();
+        // Nothing else on this connection will be HTTP
+        for (String name : new String[]{SimpleHttpServer.CHUNKER_HANDLER, SimpleHttpServer.REQUEST_HANDLER}) {
+            if (pipeline.get(name) != null) {
+                pipeline.remove(name);
+            }
+        }
+        pipeline.addLast("websocketProtocol", new WebSocketServerProtocolHandler(config));
+        pipeline.addLast("websocketAggregator", new WebSocketFrameAggregator(maxMessageLength));
+        pipeline.addLast("websocket", new WebSocketFrameHandler(dashboardServer, logger));
+        ctx.fireChannelRead(msg);
+        pipeline.remove(this);
+    }
+
+    /**
+     * Passes the websocket events on to the {@link DashboardServer}. This runs on the connection's event loop, which is
+     * fine since the dashboard hands API calls to its {@link RequestExecutor} rather than running them where they
+     * arrive.
+     */
+    static class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
+        private final DashboardServer dashboardServer;
+        private final Logger logger;
+        private NettyWebSocket conn;
+
+        WebSocketFrameHandler(DashboardServer dashboardServer, Logger logger) {
+            this.dashboardServer = dashboardServer;
+            this.logger = logger;
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+                conn = new NettyWebSocket(ctx.channel(),
+                        ((WebSocketServerProtocolHandler.HandshakeComplete) evt).requestUri());
+                dashboardServer.onOpen(conn, null);
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame frame) {
+            if (conn == null) {
+                return;
+            }
+            if (frame instanceof TextWebSocketFrame) {
+                dashboardServer.onMessage(conn, ((TextWebSocketFrame) frame).text());
+            } else if (frame instanceof BinaryWebSocketFrame) {
+                ByteBuffer bytes = ByteBuffer.allocate(frame.content().readableBytes());
+                frame.content().readBytes(bytes);
+                bytes.flip();
+                dashboardServer.onMessage(conn, bytes);
+            } else if (frame instanceof CloseWebSocketFrame) {
+                CloseWebSocketFrame close = (CloseWebSocketFrame) frame;
+                conn.remoteClose(close.statusCode(), close.reasonText());
+                ctx.writeAndFlush(close.retainedDuplicate()).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            // Stop taking requests from a client which isn't keeping up with what we're sending it
+            ctx.channel().config().setAutoRead(ctx.channel().isWritable());
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (conn != null) {
+                dashboardServer.onClose(conn, conn.getCloseCode(), conn.getCloseReason(), !conn.isClosedLocally());
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (conn == null) {
+                logger.atError().setCause(cause).log("Websocket error from {}", ctx.channel().remoteAddress());
+            } else {
+                dashboardServer.onError(conn, cause instanceof Exception ? (Exception) cause : new Exception(cause));
+            }
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole.messageutils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A pub/sub or MQTT message sent as a binary frame, so that the payload gets to the dashboard exactly as it was
+ * published and without being escaped into JSON.
+ *
+ * <p>The frame is a header followed by the payload. The header is one byte of {@link MessageType#PUB_SUB_MSG}, then
+ * the subscription id, the subscribed topic and the topic, each as a big-endian 16 bit length and that many bytes of
+ * UTF-8, then the size of the payload as published as a big-endian 32 bit integer. The payload is everything after
+ * that, which is shorter than its published size if it was cut short.
+ */
+@AllArgsConstructor
+@Getter
+public class BinaryPubSubMessage {
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private final String subId;
+    private final String subscribedTopic;
+    private final String topic;
+    // Not copied, it's the array the message arrived in
+    private final byte[] payload;
+    private final int payloadSize;
+
+    public BinaryPubSubMessage(String subId, String subscribedTopic, String topic, byte[] payload) {
+        this(subId, subscribedTopic, topic, payload, payload.length);
+    }
+
+    /**
+     * Encode the header, which the payload follows.
+     *
+     * @return header bytes
+     * @throws IllegalArgumentException if a field doesn't fit in the header
+     */
+    public byte[] encodeHeader() {
+        byte[] subIdBytes = subId.getBytes(StandardCharsets.UTF_8);
+        byte[] subscribedTopicBytes = subscribedTopic.getBytes(StandardCharsets.UTF_8);
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(
+                1 + 6 + 4 + subIdBytes.length + subscribedTopicBytes.length + topicBytes.length);
+        header.put((byte) MessageType.PUB_SUB_MSG);
+        putField(header, subIdBytes);
+        putField(header, subscribedTopicBytes);
+        putField(header, topicBytes);
+        header.putInt(payloadSize);
+        return header.array();
+    }
+
+    private static void putField(ByteBuffer header, byte[] field) {
+        if (field.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Header field is " + field.length + " bytes, which is too long");
+        }
+        header.putShort((short) field.length);
+        header.put(field);
+    }
+
+    /**
+     * Encode the whole message into one array.
+     *
+     * @return header followed by the payload
+     */
+    public byte[] encode() {
+        byte[] header = encodeHeader();
+        byte[] encoded = new byte[header.length + payload.length];
+        System.arraycopy(header, 0, encoded, 0, header.length);
+        System.arraycopy(payload, 0, encoded, header.length, payload.length);
+        return encoded;
+    }
+
+    /**
+     * Decode a binary frame.
+     *
+     * @param frame the frame, from its position to its limit
+     * @return the message
+     * @throws IllegalArgumentException if the frame isn't a pub/sub message
+     */
+    public static BinaryPubSubMessage decode(ByteBuffer frame) {
+        ByteBuffer in = frame.duplicate();
+        if (!in.hasRemaining() || in.get() != MessageType.PUB_SUB_MSG) {
+            throw new IllegalArgumentException("Not a pub/sub message");
+        }
+        String subId = getField(in);
+        String subscribedTopic = getField(in);
+        String topic = getField(in);
+        if (in.remaining() < 4) {
+            throw new IllegalArgumentException("Truncated pub/sub message");
+        }
+        int payloadSize = in.getInt();
+        byte[] payload = new byte[in.remaining()];
+        in.get(payload);
+        return new BinaryPubSubMessage(subId, subscribedTopic, topic, payload, payloadSize);
+    }
+
+    private static String getField(ByteBuffer in) {
+        if (in.remaining() < 2) {
+            throw new IllegalArgumentException("Truncated pub/sub message");
+        }
+        int length = in.getShort() & MAX_FIELD_BYTES;
+        if (in.remaining() < length) {
+            throw new IllegalArgumentException("Truncated pub/sub message");
+        }
+        byte[] field = new byte[length];
+        in.get(field);
+        return new String(field, StandardCharsets.UTF_8);
+    }
+}
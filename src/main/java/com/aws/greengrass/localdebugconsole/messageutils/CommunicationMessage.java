@@ -5,6 +5,7 @@
 
 package com.aws.greengrass.localdebugconsole.messageutils;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -20,6 +21,16 @@ public class CommunicationMessage implements Comparable<CommunicationMessage> {
     private final String subscribedTopic;
     private final String topic;
     private final String payload;
+    // How the payload is encoded, left out for UTF-8 text
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String encoding;
+    // How many bytes the payload was as published, left out unless it was cut short
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Integer payloadSize;
+
+    public CommunicationMessage(String subId, String subscribedTopic, String topic, String payload) {
+        this(subId, subscribedTopic, topic, payload, null, null);
+    }
 
     // for unit testing
     @Override
@@ -13,6 +13,10 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
 import static com.aws.greengrass.componentmanager.KernelConfigResolver.VERSION_CONFIG_KEY;
 
 /**
@@ -57,6 +61,37 @@ public class ComponentItem implements Comparable<ComponentItem> {
         origin = (service.isBuiltin()) ? Origin.BUILTIN.toString() : Origin.USER.toString();
     }
 
+    /**
+     * Get the fields of this component which differ from an earlier snapshot of it, keyed by their JSON names.
+     *
+     * @param previous the same component as it was before
+     * @return the name and the changed fields, or null if nothing changed
+     */
+    public Map<String, Object> changesSince(ComponentItem previous) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put("name", name);
+        if (!Objects.equals(version, previous.version)) {
+            changes.put("version", version);
+        }
+        if (!Objects.equals(status, previous.status)) {
+            changes.put("status", status);
+        }
+        if (!Objects.equals(statusIcon, previous.statusIcon)) {
+            changes.put("statusIcon", statusIcon);
+        }
+        if (!Objects.equals(origin, previous.origin)) {
+            changes.put("origin", origin);
+        }
+        if (canStart != previous.canStart) {
+            changes.put("canStart", canStart);
+        }
+        if (canStop != previous.canStop) {
+            changes.put("canStop", canStop);
+        }
+        // Only the name, so nothing changed
+        return changes.size() == 1 ? null : changes;
+    }
+
     // for unit testing
     @Override
     public int compareTo(ComponentItem o) {
@@ -0,0 +1,32 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole.messageutils;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes to the component list since the list with the previous sequence number. A client which missed a sequence
+ * number can't apply this and should ask for a new snapshot.
+ */
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class ComponentListDelta {
+    private long seq;
+    // Components which weren't in the list before
+    private ComponentItem[] added;
+    // Names of components which are no longer in the list
+    private String[] removed;
+    // The name of each changed component along with only the fields which changed
+    private List<Map<String, Object>> patched;
+}
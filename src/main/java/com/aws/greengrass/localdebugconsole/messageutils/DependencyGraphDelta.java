@@ -0,0 +1,29 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole.messageutils;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Changes to the dependency graph since the graph with the previous version. A client which missed a version can't
+ * apply this and should ask for a new snapshot.
+ */
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class DependencyGraphDelta {
+    private long version;
+    private String[] addedNodes;
+    // Edges from these nodes are gone along with them and aren't listed in removedEdges
+    private String[] removedNodes;
+    // New edges, and edges which changed between hard and soft
+    private DependencyEdge[] addedEdges;
+    private DependencyEdge[] removedEdges;
+}
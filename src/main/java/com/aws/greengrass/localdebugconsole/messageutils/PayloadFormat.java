@@ -0,0 +1,53 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole.messageutils;
+
+/**
+ * How the payloads of a pub/sub subscription are sent to the dashboard.
+ */
+public enum PayloadFormat {
+    /**
+     * As UTF-8 text in a JSON message, which mangles anything that isn't text.
+     */
+    TEXT("text"),
+    /**
+     * Base64 encoded in a JSON message, for clients which only read JSON.
+     */
+    BASE64("base64"),
+    /**
+     * As the raw bytes in a binary frame, see {@link BinaryPubSubMessage}.
+     */
+    BINARY("binary");
+
+    private final String name;
+
+    PayloadFormat(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Get the format a client asked for.
+     *
+     * @param name format name, or null for the default
+     * @return the format, or null if there is none by that name
+     */
+    public static PayloadFormat of(String name) {
+        if (name == null) {
+            return TEXT;
+        }
+        for (PayloadFormat format : values()) {
+            if (format.name.equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
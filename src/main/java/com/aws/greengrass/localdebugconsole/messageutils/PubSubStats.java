@@ -0,0 +1,30 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole.messageutils;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * How many messages of a pub/sub subscription were held back by its sampling, rate limit or payload limit, since it
+ * was made. Sent every so often while the counts change.
+ */
+@EqualsAndHashCode
+@AllArgsConstructor
+@Getter
+public class PubSubStats {
+    private final String subId;
+    private final String subscribedTopic;
+    // Skipped by sampling
+    private final long sampled;
+    // Dropped for being over the rate
+    private final long rateLimited;
+    // Replaced by a later message of the same topic
+    private final long conflated;
+    // Sent with the payload cut short
+    private final long truncated;
+}
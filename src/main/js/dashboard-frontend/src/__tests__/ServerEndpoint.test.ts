@@ -18,7 +18,7 @@ let SERVER: ServerEndpoint;
 
 beforeAll(async () => {
   mockServer = new MockServer(4000);
-  SERVER = new ServerEndpoint(4000, "", "", 1);
+  SERVER = new ServerEndpoint(4000, "", 1);
   await SERVER.initConnections();
   console.log("Connections made");
 });
@@ -130,6 +130,38 @@ describe("test dependency graph subscription", () => {
   });
 });
 
+test("Test dependency graph deltas", (done) => {
+  const a = jest.fn();
+  SERVER.cachedDependencyGraph = mockDepGraph;
+  SERVER.cachedDependencyGraphVersion = mockServer.graphVersion;
+  SERVER.sendSubscriptionMessage(
+    { call: APICall.subscribeToDependencyGraph, args: [] },
+    a
+  );
+  mockServer.sendGraphDelta({
+    addedNodes: ["exam"],
+    removedNodes: [],
+    addedEdges: [{ from: "quiz", to: "exam", hard: false }],
+    removedEdges: [{ from: "test", to: "quiz", hard: true }],
+  });
+  setTimeout(() => {
+    expect(a).toHaveBeenLastCalledWith(
+      new Map([
+        ["test", []],
+        ["quiz", [{ name: "exam", hard: false }]],
+        ["exam", []],
+      ])
+    );
+    // The cached graph was copied rather than changed in place
+    expect(mockDepGraph.get("test")).toEqual([{ name: "quiz", hard: true }]);
+    SERVER.sendSubscriptionMessage(
+      { call: APICall.unsubscribeToDependencyGraph, args: [] },
+      a
+    );
+    done();
+  }, 50);
+});
+
 test("Test component list subscription and unsubscription", (done) => {
   const a = jest.fn();
   SERVER.sendSubscriptionMessage(
@@ -150,6 +182,65 @@ test("Test component list subscription and unsubscription", (done) => {
   }, 100); // wait for sends to finish
 });
 
+test("Test component list deltas and resync after a gap", (done) => {
+  const a = jest.fn();
+  // Cached already, so subscribing doesn't ask for the list
+  SERVER.cachedComponentList = mockComponentList;
+  SERVER.sendSubscriptionMessage(
+    { call: APICall.subscribeToComponentList, args: [] },
+    a
+  );
+  mockServer.sendListUpdate();
+  mockServer.sendListDelta({
+    added: [forcePushList[2]],
+    removed: ["test2"],
+    patched: [{ name: "test1", status: "Stopping", canStop: false }],
+  });
+  setTimeout(() => {
+    expect(a).toHaveBeenLastCalledWith([
+      { ...mockComponentList[0], status: "Stopping", canStop: false },
+      forcePushList[2],
+    ]);
+    // Skipping a seq means the client has to ask for the whole list again
+    mockServer.sendListDelta(
+      { added: [], removed: ["test1"], patched: [] },
+      mockServer.listSeq + 2
+    );
+  }, 50);
+  setTimeout(() => {
+    expect(mockServer.resyncRequests).toEqual(1);
+    expect(a).toHaveBeenLastCalledWith(mockComponentList);
+    SERVER.sendSubscriptionMessage(
+      { call: APICall.unsubscribeToComponentList, args: [] },
+      a
+    );
+    done();
+  }, 100);
+});
+
+test("Test component list delta before the whole list asks for it", (done) => {
+  const a = jest.fn();
+  SERVER.cachedComponentList = mockComponentList;
+  SERVER.sendSubscriptionMessage(
+    { call: APICall.subscribeToComponentList, args: [] },
+    a
+  );
+  // As if the whole list had been lost on the way
+  SERVER.cachedComponentListSeq = -1;
+  const resyncs = mockServer.resyncRequests;
+  mockServer.sendListDelta({ added: [], removed: ["test1"], patched: [] });
+  setTimeout(() => {
+    expect(mockServer.resyncRequests).toEqual(resyncs + 1);
+    expect(SERVER.cachedComponentListSeq).toEqual(mockServer.listSeq);
+    expect(a).toHaveBeenLastCalledWith(mockComponentList);
+    SERVER.sendSubscriptionMessage(
+      { call: APICall.unsubscribeToComponentList, args: [] },
+      a
+    );
+    done();
+  }, 100);
+});
+
 test.skip("Test multiple component logs subscriptions", (done) => {
   const a = jest.fn();
   const b = jest.fn();
@@ -5,14 +5,19 @@
 
 import {
   APICall,
+  ComponentListDelta,
+  ComponentListSnapshot,
   DeferredPromise,
   Dependency,
+  DependencyGraphDelta,
+  DependencyGraphSnapshot,
   DepGraphNode,
   InternalAPICall,
   Log,
   Message,
   MessageType,
   PackedRequest,
+  PubSubStats,
   Request,
   RequestID,
 } from "../util/CommUtils";
@@ -20,6 +25,9 @@ import {ComponentItem} from "../util/ComponentItem";
 import React, {ReactNode} from "react";
 import {CommunicationMessage} from "../util/CommunicationMessage";
 
+const SESSION_RELOAD_KEY = "gg.sessionReloadedAt";
+const SESSION_RELOAD_INTERVAL_MS = 60 * 1000;
+
 export default class ServerEndpoint {
   portno: number;
   timeout: number; // in seconds
@@ -36,11 +44,19 @@ export default class ServerEndpoint {
   componentLogSubscribers: Map<string, Set<Function>> = new Map();
 
   cachedComponentList: ComponentItem[] = [];
+  // Seq of the cached list, which the next delta has to follow on from
+  cachedComponentListSeq: number = -1;
+  componentListResyncPending: boolean = false;
   cachedDependencyGraph: Map<string, Dependency[]> = new Map();
+  cachedDependencyGraphVersion: number = -1;
+  dependencyGraphResyncPending: boolean = false;
 
   pubSubTopicsSubscribers: Map<string, Set<Function>> = new Map();
+  // Latest counts of what the server held back, by subscription id
+  pubSubStats: Map<string, PubSubStats> = new Map();
+  pubSubStatsSubscribers: Set<(stats: PubSubStats) => void> = new Set();
 
-  constructor(portno: number, username: string, password: string, timeout: number, onError: (m: ReactNode) => void) {
+  constructor(portno: number, sessionToken: string, timeout: number, onError: (m: ReactNode) => void) {
     this.portno = portno;
     this.timeout = timeout;
     this.onError = onError;
@@ -54,6 +70,8 @@ export default class ServerEndpoint {
     // initialize connections
     this._connectionPromise = this.deferPromise(() => {});
 
+    // Pub/sub messages can arrive as binary frames, which are easiest to take apart as an ArrayBuffer
+    this.conn.binaryType = "arraybuffer";
     this.conn.onmessage = this.messageHandler;
     this.conn.onclose = (event) => {
       let reason: ReactNode = "Unknown reason";
@@ -102,7 +120,7 @@ export default class ServerEndpoint {
           requestID: this.initReqID,
           request: {
             call: InternalAPICall.init,
-            args: [username, password],
+            args: [sessionToken],
           },
         })
       );
@@ -114,9 +132,34 @@ export default class ServerEndpoint {
   }
 
   messageHandler = (m: MessageEvent) => {
+    if (m.data instanceof ArrayBuffer) {
+      // Only pub/sub messages are sent as binary
+      const type = new Uint8Array(m.data)[0];
+      if (type === MessageType.PUB_SUB_MSG) {
+        this.publishPubSubMessage(CommunicationMessage.fromBinary(m.data));
+      } else if (type === MessageType.PUB_SUB_MSG_BATCH) {
+        // Each message is a 32 bit length followed by that many bytes
+        const view = new DataView(m.data);
+        for (let offset = 1; offset < m.data.byteLength;) {
+          const length = view.getUint32(offset);
+          this.publishPubSubMessage(CommunicationMessage.fromBinary(m.data.slice(offset + 4, offset + 4 + length)));
+          offset += 4 + length;
+        }
+      }
+      return;
+    }
     let msg: Message = JSON.parse(m.data);
     if (msg.requestID === this.initReqID) {
+      if (msg.payload !== true) {
+        this.initRejected();
+        return;
+      }
       this._connectionPromise.resolve();
+      // Busy topics arrive in a few frames rather than one frame per message
+      this.sendRequest({
+        call: InternalAPICall.batchPubSubMessages,
+        args: [JSON.stringify({maxMessages: 100, maxDelayMs: 50})],
+      });
       return;
     }
     switch (msg.messageType) {
@@ -128,10 +171,18 @@ export default class ServerEndpoint {
         this.listHandler(msg);
         break;
       }
+      case MessageType.COMPONENT_LIST_DELTA: {
+        this.listDeltaHandler(msg);
+        break;
+      }
       case MessageType.DEPS_GRAPH: {
         this.depsHandler(msg);
         break;
       }
+      case MessageType.DEPS_GRAPH_DELTA: {
+        this.depsDeltaHandler(msg);
+        break;
+      }
       case MessageType.COMPONENT_CHANGE: {
         this.componentUpdateHandler(msg);
         break;
@@ -144,25 +195,113 @@ export default class ServerEndpoint {
         this.pubSubMessageHandler(msg);
         break;
       }
+      case MessageType.PUB_SUB_MSG_BATCH: {
+        msg.payload.forEach((pubsubMsg: CommunicationMessage) => this.publishPubSubMessage(pubsubMsg));
+        break;
+      }
+      case MessageType.PUB_SUB_STATS: {
+        const stats: PubSubStats = msg.payload;
+        this.pubSubStats.set(stats.subId, stats);
+        this.pubSubStatsSubscribers.forEach((callback) => callback(stats));
+        break;
+      }
     }
   };
 
+  initRejected = () => {
+    // The session token came with the page and only lasts an hour, or until the password it was issued for is
+    // revoked. Loading the page again gets a new one, or asks for the password again.
+    const reason = "Your session has expired. Reload the page to log in again.";
+    this._connectionPromise.reject(reason);
+    this.onError(reason);
+    const lastReload = Number(window.sessionStorage.getItem(SESSION_RELOAD_KEY) || 0);
+    // Don't keep reloading if a new token doesn't help
+    if (Date.now() - lastReload > SESSION_RELOAD_INTERVAL_MS) {
+      window.sessionStorage.setItem(SESSION_RELOAD_KEY, String(Date.now()));
+      window.location.reload();
+    }
+  };
   responseHandler = (msg: Message) => {
     // resolves the promise returned by sendRequest
     //@ts-ignore
     this.reqList.get(msg.requestID).resolve(msg.payload);
   };
   listHandler = (msg: Message) => {
-    let list: ComponentItem[] = msg.payload;
+    let snapshot: ComponentListSnapshot = msg.payload;
+    this.cachedComponentListSeq = snapshot.seq;
+    this.componentListResyncPending = false;
+    this.publishComponentList(snapshot.components);
+  };
+  listDeltaHandler = (msg: Message) => {
+    let delta: ComponentListDelta = msg.payload;
+    if (delta.seq <= this.cachedComponentListSeq) {
+      // Already included in the list we have
+      return;
+    }
+    if (this.cachedComponentListSeq < 0 || delta.seq !== this.cachedComponentListSeq + 1) {
+      // Never got the whole list, or missed an update, so there's nothing this can be applied to
+      if (!this.componentListResyncPending) {
+        this.componentListResyncPending = true;
+        this.sendRequest({call: InternalAPICall.resyncComponentList, args: []})
+          .catch(() => (this.componentListResyncPending = false));
+      }
+      return;
+    }
+    let removed = new Set(delta.removed);
+    let patches = new Map(delta.patched.map((p): [string, Partial<ComponentItem>] => [p.name, p]));
+    let list = this.cachedComponentList
+      .filter((item) => !removed.has(item.name))
+      .map((item) => patches.has(item.name) ? {...item, ...patches.get(item.name)} : item)
+      .concat(delta.added);
+    this.cachedComponentListSeq = delta.seq;
+    this.publishComponentList(list);
+  };
+  publishComponentList = (list: ComponentItem[]) => {
     this.cachedComponentList = list;
     this.componentListSubscribers.forEach((callback) => callback(list));
   };
   depsHandler = (msg: Message) => {
-    let pre: DepGraphNode[] = msg.payload;
+    let snapshot: DependencyGraphSnapshot = msg.payload;
+    let pre: DepGraphNode[] = snapshot.nodes;
     let graph: Map<string, Dependency[]> = pre.reduce(
       (acc, curr) => acc.set(curr.name, curr.children),
       new Map<string, Dependency[]>()
     );
+    this.cachedDependencyGraphVersion = snapshot.version;
+    this.dependencyGraphResyncPending = false;
+    this.publishDependencyGraph(graph);
+  };
+  depsDeltaHandler = (msg: Message) => {
+    let delta: DependencyGraphDelta = msg.payload;
+    if (delta.version <= this.cachedDependencyGraphVersion) {
+      // Already included in the graph we have
+      return;
+    }
+    if (this.cachedDependencyGraphVersion < 0 || delta.version !== this.cachedDependencyGraphVersion + 1) {
+      // Never got the whole graph, or missed an update, so there's nothing this can be applied to
+      if (!this.dependencyGraphResyncPending) {
+        this.dependencyGraphResyncPending = true;
+        this.sendRequest({call: InternalAPICall.resyncDependencyGraph, args: []})
+          .catch(() => (this.dependencyGraphResyncPending = false));
+      }
+      return;
+    }
+    // Only the nodes whose dependencies changed get new arrays, the rest are shared with the old graph
+    let graph = new Map(this.cachedDependencyGraph);
+    delta.removedNodes.forEach((name) => graph.delete(name));
+    delta.addedNodes.forEach((name) => graph.set(name, []));
+    delta.removedEdges.forEach((edge) => {
+      let children = graph.get(edge.from);
+      if (children) graph.set(edge.from, children.filter((child) => child.name !== edge.to));
+    });
+    delta.addedEdges.forEach((edge) => {
+      let children = (graph.get(edge.from) || []).filter((child) => child.name !== edge.to);
+      graph.set(edge.from, children.concat({name: edge.to, hard: edge.hard}));
+    });
+    this.cachedDependencyGraphVersion = delta.version;
+    this.publishDependencyGraph(graph);
+  };
+  publishDependencyGraph = (graph: Map<string, Dependency[]>) => {
     this.cachedDependencyGraph = graph;
     this.dependencyGraphSubscribers.forEach((callback) => callback(graph));
   };
@@ -177,7 +316,9 @@ export default class ServerEndpoint {
     if (set) set.forEach((callback) => callback(log));
   };
   pubSubMessageHandler = (msg: Message) => {
-    const pubsubMsg : CommunicationMessage = msg.payload;
+    this.publishPubSubMessage(msg.payload);
+  }
+  publishPubSubMessage = (pubsubMsg: CommunicationMessage) => {
     const set = this.pubSubTopicsSubscribers.get(pubsubMsg.subId);
     if (set) set.forEach((callback) => callback(pubsubMsg));
   }
@@ -321,6 +462,7 @@ export default class ServerEndpoint {
         }
         pot.delete(messageHandler);
         if (pot.size === 0) {
+          this.pubSubStats.delete(request.args[0]);
           return this.sendRequest(request);
         }
 
@@ -6,6 +6,8 @@
 import * as WebSocket from "ws";
 import {
   APICall,
+  ComponentListDelta,
+  DependencyGraphDelta,
   InternalAPICall,
   Message,
   MessageType,
@@ -24,6 +26,9 @@ export class MockServer {
 
   //@ts-ignore
   connection: WebSocket;
+  listSeq: number = 0;
+  graphVersion: number = 0;
+  resyncRequests: number = 0;
 
   constructor(portno: number) {
     this.portno = portno;
@@ -38,7 +43,7 @@ export class MockServer {
             JSON.stringify({
               messageType: MessageType.RESPONSE,
               requestID: packedRequest.requestID,
-              payload: null,
+              payload: true,
             })
           );
         } else this.handleMessage(conn, packedRequest);
@@ -57,6 +62,11 @@ export class MockServer {
         this.forcePushComponentList();
         break;
       }
+      case InternalAPICall.resyncComponentList: {
+        this.resyncRequests++;
+        this.sendListUpdate();
+        break;
+      }
       case InternalAPICall.forcePushDependencyGraph: {
         this.forcePushDependencyGraph();
         break;
@@ -78,7 +88,7 @@ export class MockServer {
     let message: Message = {
       messageType: MessageType.COMPONENT_LIST,
       requestID: -1,
-      payload: forcePushList,
+      payload: { seq: ++this.listSeq, components: forcePushList },
     };
     this.connection.send(JSON.stringify(message));
   }
@@ -87,7 +97,16 @@ export class MockServer {
     let message: Message = {
       messageType: MessageType.DEPS_GRAPH,
       requestID: -1,
-      payload: forcePushSerializedGraph,
+      payload: { version: ++this.graphVersion, nodes: forcePushSerializedGraph },
+    };
+    this.connection.send(JSON.stringify(message));
+  }
+
+  sendGraphDelta(delta: Omit<DependencyGraphDelta, "version">) {
+    let message: Message = {
+      messageType: MessageType.DEPS_GRAPH_DELTA,
+      requestID: -1,
+      payload: { ...delta, version: ++this.graphVersion },
     };
     this.connection.send(JSON.stringify(message));
   }
@@ -96,7 +115,18 @@ export class MockServer {
     let message: Message = {
       messageType: MessageType.COMPONENT_LIST,
       requestID: -1,
-      payload: mockComponentList,
+      payload: { seq: ++this.listSeq, components: mockComponentList },
+    };
+    this.connection.send(JSON.stringify(message));
+  }
+
+  // Leave seq out to send the delta which follows the last one sent
+  sendListDelta(delta: Omit<ComponentListDelta, "seq">, seq: number = this.listSeq + 1) {
+    this.listSeq = seq;
+    let message: Message = {
+      messageType: MessageType.COMPONENT_LIST_DELTA,
+      requestID: -1,
+      payload: { ...delta, seq: seq },
     };
     this.connection.send(JSON.stringify(message));
   }
@@ -3,7 +3,7 @@
  * SPDX-License-Identifier: Apache-2.0
  */
 
-import React, {useCallback, useContext, useRef, useState} from "react";
+import React, {useCallback, useContext, useEffect, useRef, useState} from "react";
 import {withRouter} from "react-router-dom";
 
 import {
@@ -25,7 +25,7 @@ import {
 } from "@cloudscape-design/components";
 
 import {DefaultContext, SERVER} from "../index";
-import {APICall} from "../util/CommUtils";
+import {APICall, PubSubStats} from "../util/CommUtils";
 import {CommunicationMessage} from "../util/CommunicationMessage";
 import {useCollection} from "@cloudscape-design/collection-hooks";
 
@@ -35,6 +35,15 @@ interface Message {
     topic: string;
 }
 
+// Says what the server held back from a busy subscription, if anything
+const heldBackDescription = (stats?: PubSubStats) => {
+    if (!stats) {
+        return undefined;
+    }
+    return `Held back by the server: ${stats.sampled} sampled out, ${stats.rateLimited} over the rate limit, `
+        + `${stats.conflated} replaced by newer messages, ${stats.truncated} cut short`;
+}
+
 const PubSub = () => {
     const [selectedTopic, setSelectedTopic] = useState("");
     const [subscribeTopicInputValue, setSubscribeTopicInputValue] = useState("");
@@ -42,6 +51,7 @@ const PubSub = () => {
     const [messageInputValue, setMessageInputValue] = useState("");
     const [topicsAndMessages, setTopicsAndMessages] = useState<{ [key: string]: Message[] }>({});
     const [subscriptions, setSubscriptions] = useState<{subId: string, topic: string, source: string}[]>([]);
+    const [pubSubStats, setPubSubStats] = useState<Map<string, PubSubStats>>(() => new Map(SERVER.pubSubStats));
 
     const pubsubSelection = {
         value: "pubsub",
@@ -62,6 +72,15 @@ const PubSub = () => {
         }));
     }, [topicsAndMessagesRef]);
 
+    // The server reports what it held back every second, which has to re-render the header
+    useEffect(() => {
+        const onStats = (stats: PubSubStats) => setPubSubStats((old) => new Map(old).set(stats.subId, stats));
+        SERVER.pubSubStatsSubscribers.add(onStats);
+        return () => {
+            SERVER.pubSubStatsSubscribers.delete(onStats);
+        };
+    }, []);
+
     const onSubscribeTopicSubmit = async () => {
         const topic = subscribeTopicInputValue;
         const subId = subscribeSourceValue.value + topic;
@@ -74,7 +93,9 @@ const PubSub = () => {
                 call: APICall.subscribeToPubSubTopic, args: [{
                     subId,
                     topicFilter: topic,
-                    source: subscribeSourceValue.value
+                    source: subscribeSourceValue.value,
+                    // Payloads as they were published rather than mangled into JSON text
+                    format: "binary"
                 }]
             },
             handleNewMessage
@@ -274,6 +295,7 @@ const PubSub = () => {
                             resizableColumns={true}
                             wrapLines={true}
                             header={<Header
+                                description={heldBackDescription(pubSubStats.get(selectedTopic))}
                                 actions={<Button iconName={"close"} disabled={selectedTopic === ""} onClick={() => {
                                     setTopicsAndMessages(old => {
                                         return {...old, [selectedTopic]: []}
@@ -26,7 +26,7 @@ export var SERVER: ServerEndpoint;
 const apiResource = (websocketError: (m: ReactNode) => void) => {
     if (!SERVER) {
         // @ts-ignore
-        SERVER = new ServerEndpoint(window.WEBSOCKET_PORT, window.USERNAME, window.PASSWORD, 5, websocketError);
+        SERVER = new ServerEndpoint(window.WEBSOCKET_PORT, window.SESSION_TOKEN, 5, websocketError);
     }
 
     enum PromiseStatus {
@@ -3,6 +3,8 @@
  * SPDX-License-Identifier: Apache-2.0
  */
 
+import {ComponentItem} from "./ComponentItem";
+
 export type RequestID = number;
 
 export interface PackedRequest {
@@ -46,7 +48,10 @@ export enum APICall {
 export enum InternalAPICall {
   init = "init",
   forcePushComponentList = "forcePushComponentList",
+  resyncComponentList = "resyncComponentList",
   forcePushDependencyGraph = "forcePushDependencyGraph",
+  resyncDependencyGraph = "resyncDependencyGraph",
+  batchPubSubMessages = "batchPubSubMessages",
   ping = "ping",
 }
 
@@ -62,6 +67,33 @@ export enum MessageType {
   COMPONENT_CHANGE,
   COMPONENT_LOGS,
   PUB_SUB_MSG,
+  COMPONENT_LIST_DELTA,
+  DEPS_GRAPH_DELTA,
+  PUB_SUB_STATS,
+  PUB_SUB_MSG_BATCH,
+}
+
+// How many messages of a pub/sub subscription the server held back since it was made
+export interface PubSubStats {
+  subId: string;
+  subscribedTopic: string;
+  sampled: number;
+  rateLimited: number;
+  conflated: number;
+  truncated: number;
+}
+
+export interface ComponentListSnapshot {
+  seq: number;
+  components: ComponentItem[];
+}
+// Changes since the list with the previous seq
+export interface ComponentListDelta {
+  seq: number;
+  added: ComponentItem[];
+  removed: string[];
+  // The name, plus only the fields which changed
+  patched: ({name: string} & Partial<ComponentItem>)[];
 }
 
 export interface DepGraphNode {
@@ -72,6 +104,25 @@ export interface Dependency {
   name: string;
   hard: boolean;
 }
+export interface DependencyEdge {
+  from: string;
+  to: string;
+  hard: boolean;
+}
+export interface DependencyGraphSnapshot {
+  version: number;
+  nodes: DepGraphNode[];
+}
+// Changes since the graph with the previous version
+export interface DependencyGraphDelta {
+  version: number;
+  addedNodes: string[];
+  // Edges from these nodes are gone with them and aren't listed in removedEdges
+  removedNodes: string[];
+  // New edges, and edges which changed between hard and soft
+  addedEdges: DependencyEdge[];
+  removedEdges: DependencyEdge[];
+}
 
 export interface ConfigMessage {
   successful: boolean;
@@ -8,15 +8,48 @@ export class CommunicationMessage {
   subscribedTopic: string;
   topic: string;
   payload: string;
+  // The payload as it was published, for messages which were sent as binary
+  rawPayload?: Uint8Array;
+  // How big the payload was as published, if it was cut short
+  payloadSize?: number;
   constructor(
     subId: string,
     subscribedTopic: string,
     topic: string,
     payload: string,
+    rawPayload?: Uint8Array,
+    payloadSize?: number,
   ) {
     this.subId = subId;
     this.subscribedTopic = subscribedTopic;
     this.topic = topic;
     this.payload = payload;
+    this.rawPayload = rawPayload;
+    this.payloadSize = payloadSize;
+  }
+
+  /**
+   * Decodes a pub/sub message sent as a binary frame: one byte of message type, the subscription id, subscribed topic
+   * and topic each as a big-endian 16 bit length followed by UTF-8, the payload's published size as a big-endian 32 bit
+   * integer, then the payload.
+   * @param data the binary frame
+   */
+  static fromBinary(data: ArrayBuffer): CommunicationMessage {
+    const view = new DataView(data);
+    const decoder = new TextDecoder();
+    let offset = 1;
+    const field = () => {
+      const length = view.getUint16(offset);
+      const value = decoder.decode(new Uint8Array(data, offset + 2, length));
+      offset += 2 + length;
+      return value;
+    };
+    const subId = field();
+    const subscribedTopic = field();
+    const topic = field();
+    const payloadSize = view.getUint32(offset);
+    const rawPayload = new Uint8Array(data, offset + 4);
+    return new CommunicationMessage(subId, subscribedTopic, topic, decoder.decode(rawPayload), rawPayload,
+        payloadSize === rawPayload.length ? undefined : payloadSize);
   }
 }
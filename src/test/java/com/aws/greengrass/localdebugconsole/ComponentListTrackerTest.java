@@ -0,0 +1,71 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentItem;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListSnapshot;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(GGExtension.class)
+class ComponentListTrackerTest {
+    private static final ComponentItem MAIN =
+            new ComponentItem("main", "1.0.0", "RUNNING", "in-progress", "User", false, true);
+    private static final ComponentItem OTHER =
+            new ComponentItem("other", "1.0.0", "FINISHED", "success", "User", true, false);
+
+    private final ComponentListTracker tracker = new ComponentListTracker();
+
+    @Test
+    void GIVEN_empty_tracker_WHEN_list_is_set_THEN_everything_is_added() {
+        ComponentListDelta delta = tracker.update(new ComponentItem[]{MAIN, OTHER});
+        assertEquals(1, delta.getSeq());
+        assertArrayEquals(new ComponentItem[]{MAIN, OTHER}, delta.getAdded());
+        assertEquals(0, delta.getRemoved().length);
+        assertTrue(delta.getPatched().isEmpty());
+
+        ComponentListSnapshot snapshot = tracker.snapshot();
+        assertEquals(1, snapshot.getSeq());
+        assertArrayEquals(new ComponentItem[]{MAIN, OTHER}, snapshot.getComponents());
+    }
+
+    @Test
+    void GIVEN_list_WHEN_same_list_is_set_THEN_there_is_no_delta_and_seq_stays() {
+        tracker.update(new ComponentItem[]{MAIN, OTHER});
+        // Fresh but equal objects, as every snapshot from the kernel is
+        assertNull(tracker.update(new ComponentItem[]{
+                new ComponentItem("other", "1.0.0", "FINISHED", "success", "User", true, false),
+                new ComponentItem("main", "1.0.0", "RUNNING", "in-progress", "User", false, true)}));
+        assertEquals(1, tracker.getSeq());
+    }
+
+    @Test
+    void GIVEN_list_WHEN_a_component_changes_state_THEN_only_the_changed_fields_are_patched() {
+        tracker.update(new ComponentItem[]{MAIN, OTHER});
+        ComponentItem upgraded = new ComponentItem("main", "1.1.0", "RUNNING", "in-progress", "User", false, true);
+        ComponentListDelta delta = tracker.update(new ComponentItem[]{upgraded});
+
+        assertEquals(2, delta.getSeq());
+        assertEquals(0, delta.getAdded().length);
+        assertArrayEquals(new String[]{"other"}, delta.getRemoved());
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("name", "main");
+        expected.put("version", "1.1.0");
+        assertEquals(Collections.singletonList(expected), delta.getPatched());
+        assertArrayEquals(new ComponentItem[]{upgraded}, tracker.snapshot().getComponents());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.config.Topics;
+import com.aws.greengrass.dependency.Context;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+
+import static com.aws.greengrass.localdebugconsole.SimpleHttpServer.DEBUG_PASSWORD_NAMESPACE;
+import static com.aws.greengrass.localdebugconsole.SimpleHttpServer.EXPIRATION_NAMESPACE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(GGExtension.class)
+class CredentialStoreTest {
+    private Context context;
+    private Topics passwords;
+    private CredentialStore store;
+
+    @BeforeEach
+    void setup() {
+        context = new Context();
+        passwords = Topics.of(context, DEBUG_PASSWORD_NAMESPACE, null);
+        store = new CredentialStore(() -> passwords);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        context.close();
+    }
+
+    @Test
+    void GIVEN_stored_passwords_WHEN_checked_THEN_only_exact_unexpired_match_is_valid() {
+        issue("user", "Secret", Duration.ofHours(1));
+        issue("user", "old", Duration.ofHours(-1));
+        store.rebuild();
+
+        assertTrue(store.isValid("user", "Secret"));
+        assertFalse(store.isValid("user", "secret"));
+        assertFalse(store.isValid("other", "Secret"));
+        assertFalse(store.isValid("user", null));
+
+        assertFalse(store.isValid("user", "old"));
+        assertNull(passwords.findTopics("user", "old"));
+    }
+
+    @Test
+    void GIVEN_password_issued_after_rebuild_WHEN_checked_THEN_it_is_found_in_config() {
+        store.rebuild();
+        issue("user", "new", Duration.ofHours(1));
+        assertTrue(store.isValid("user", "new"));
+        assertEquals(1, store.size());
+
+        // Revoking takes effect straight away, even before the index is rebuilt
+        passwords.find("user", "new", EXPIRATION_NAMESPACE).withValue(0);
+        assertFalse(store.isValid("user", "new"));
+    }
+
+    @Test
+    void GIVEN_password_id_WHEN_password_is_revoked_THEN_id_is_no_longer_valid() {
+        issue("user", "Secret", Duration.ofHours(1));
+        issue("user", "other", Duration.ofHours(1));
+        store.rebuild();
+        assertTrue(store.isValid("user", "Secret"));
+        String id = store.passwordId("Secret");
+
+        assertTrue(store.isValidById("user", id));
+        assertFalse(store.isValidById("other", id));
+        assertFalse(store.isValidById("user", "not base64!"));
+        // Ids are salted, so they don't carry over to another store
+        assertFalse(store.isValidById("user", new CredentialStore(() -> passwords).passwordId("Secret")));
+
+        passwords.find("user", "Secret", EXPIRATION_NAMESPACE).withValue(0);
+        assertFalse(store.isValidById("user", id));
+        assertTrue(store.isValidById("user", store.passwordId("other")));
+
+        passwords.findTopics("user", "other").remove();
+        store.rebuild();
+        assertFalse(store.isValidById("user", store.passwordId("other")));
+    }
+
+    @Test
+    void GIVEN_expired_passwords_WHEN_swept_THEN_only_they_are_removed_from_config() {
+        for (int i = 0; i < 100; i++) {
+            issue("user", "p" + i, i % 2 == 0 ? Duration.ofHours(-1) : Duration.ofHours(1));
+        }
+        store.rebuild();
+
+        assertEquals(50, store.sweep());
+        assertEquals(50, store.size());
+        assertEquals(0, store.sweep());
+        assertNull(passwords.findTopics("user", "p0"));
+        assertNotNull(passwords.findTopics("user", "p1"));
+    }
+
+    private void issue(String username, String password, Duration validFor) {
+        passwords.lookup(username, password, EXPIRATION_NAMESPACE)
+                .withValue(Instant.now().plus(validFor).toEpochMilli());
+    }
+}
@@ -8,8 +8,11 @@ package com.aws.greengrass.localdebugconsole;
 import com.aws.greengrass.lifecyclemanager.Kernel;
 import com.aws.greengrass.localdebugconsole.dashboardtestmocks.DashboardClientMock;
 import com.aws.greengrass.localdebugconsole.messageutils.ComponentItem;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListDelta;
 import com.aws.greengrass.localdebugconsole.messageutils.DepGraphNode;
 import com.aws.greengrass.localdebugconsole.messageutils.Dependency;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyEdge;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphDelta;
 import com.aws.greengrass.localdebugconsole.messageutils.PackedRequest;
 import com.aws.greengrass.logging.impl.GreengrassLogMessage;
 import com.aws.greengrass.logging.impl.LogManager;
@@ -26,7 +29,10 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -34,17 +40,21 @@ import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import static com.aws.greengrass.localdebugconsole.DashboardServer.SERVER_START_MESSAGE;
+import static com.aws.greengrass.localdebugconsole.dashboardtestmocks.RequestIDGenerator.reqId;
 import static com.aws.greengrass.logging.impl.Slf4jLogAdapter.addGlobalListener;
 import static com.aws.greengrass.logging.impl.Slf4jLogAdapter.removeGlobalListener;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Answers.RETURNS_SMART_NULLS;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -171,6 +181,109 @@ class DashboardServerTest {
         otherConnection.close();
     }
 
+    @Test
+    void GIVEN_many_connections_WHEN_server_pushes_THEN_snapshots_are_built_once_for_all_of_them()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        List<DashboardClientMock> clients = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            DashboardClientMock client = new DashboardClientMock(address, LogManager.getLogger(Kernel.class));
+            client.init().get(500, TimeUnit.MILLISECONDS);
+            client.listLatch = new CountDownLatch(1);
+            client.depGraphLatch = new CountDownLatch(1);
+            clients.add(client);
+        }
+        when(kc.getComponentList()).thenReturn(expList);
+        when(kc.getDependencyGraph()).thenReturn(expDepGraph);
+        clearInvocations(kc);
+
+        ds.pushComponentListUpdate();
+        ds.pushDependencyGraphUpdate();
+
+        // However many consoles are open, each push costs one snapshot
+        verify(kc, times(1)).getComponentList();
+        verify(kc, times(1)).getDependencyGraph();
+        for (DashboardClientMock client : clients) {
+            assertTrue(client.listLatch.await(500, TimeUnit.MILLISECONDS));
+            assertTrue(client.depGraphLatch.await(500, TimeUnit.MILLISECONDS));
+            Assertions.assertEquals(expList.length, client.latestList.length);
+            client.close();
+        }
+    }
+
+
+    @Test
+    void GIVEN_connection_has_component_list_WHEN_components_change_THEN_only_the_changes_are_pushed()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        dm = new DashboardClientMock(address, LogManager.getLogger(Kernel.class));
+        dm.init().get(500, TimeUnit.MILLISECONDS);
+        ComponentItem foo = new ComponentItem("foo", "1.0.0", "RUNNING", "in-progress", "User", false, true);
+        ComponentItem bar = new ComponentItem("bar", "1.0.0", "FINISHED", "success", "User", true, false);
+        when(kc.getComponentList()).thenReturn(new ComponentItem[]{foo, bar});
+        dm.listLatch = new CountDownLatch(1);
+        ds.pushComponentListUpdate();
+        assertTrue(dm.listLatch.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(dm.listDeltas.isEmpty());
+        long seq = dm.listSeq;
+
+        ComponentItem brokenFoo = new ComponentItem("foo", "1.0.0", "BROKEN", "error", "User", true, false);
+        ComponentItem baz = new ComponentItem("baz", "2.0.0", "NEW", "pending", "User", true, false);
+        when(kc.getComponentList()).thenReturn(new ComponentItem[]{brokenFoo, baz});
+        dm.listLatch = new CountDownLatch(1);
+        ds.pushComponentListUpdate();
+        assertTrue(dm.listLatch.await(500, TimeUnit.MILLISECONDS));
+
+        ComponentListDelta delta = dm.listDeltas.get(0);
+        assertEquals(seq + 1, delta.getSeq());
+        assertArrayEquals(new ComponentItem[]{baz}, delta.getAdded());
+        assertArrayEquals(new String[]{"bar"}, delta.getRemoved());
+        // The version and origin didn't change, so they aren't sent
+        assertEquals(1, delta.getPatched().size());
+        assertEquals(new HashSet<>(Arrays.asList("name", "status", "statusIcon", "canStart", "canStop")),
+                delta.getPatched().get(0).keySet());
+        assertArrayEquals(new ComponentItem[]{brokenFoo, baz}, dm.latestList);
+        assertEquals(0, dm.listGaps);
+
+        // Asking for the list again sends all of it, and pushing an unchanged list sends nothing
+        dm.listLatch = new CountDownLatch(1);
+        dm.sendRequest(new PackedRequest(reqId(), APICalls.resyncComponentList.name(), new String[0]))
+                .get(500, TimeUnit.MILLISECONDS);
+        assertTrue(dm.listLatch.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(1, dm.listDeltas.size());
+        assertEquals(seq + 1, dm.listSeq);
+        assertArrayEquals(new ComponentItem[]{brokenFoo, baz}, dm.latestList);
+    }
+
+    @Test
+    void GIVEN_connection_has_dependency_graph_WHEN_dependencies_change_THEN_only_the_changes_are_pushed()
+            throws InterruptedException, ExecutionException, TimeoutException {
+        dm = new DashboardClientMock(address, LogManager.getLogger(Kernel.class));
+        dm.init().get(500, TimeUnit.MILLISECONDS);
+        when(kc.getDependencyGraph()).thenReturn(new DepGraphNode[]{
+                new DepGraphNode("foo", new Dependency[]{new Dependency("bar", true)}),
+                new DepGraphNode("bar", new Dependency[0])});
+        dm.depGraphLatch = new CountDownLatch(1);
+        ds.pushDependencyGraphUpdate();
+        assertTrue(dm.depGraphLatch.await(500, TimeUnit.MILLISECONDS));
+        long version = dm.depGraphVersion;
+
+        // Most dependency topic events leave the graph as it was, which doesn't need pushing at all
+        ds.pushDependencyGraphUpdate();
+        DepGraphNode[] changed = {new DepGraphNode("foo", new Dependency[]{new Dependency("baz", false)}),
+                new DepGraphNode("bar", new Dependency[0]), new DepGraphNode("baz", new Dependency[0])};
+        when(kc.getDependencyGraph()).thenReturn(changed);
+        dm.depGraphLatch = new CountDownLatch(1);
+        ds.pushDependencyGraphUpdate();
+        assertTrue(dm.depGraphLatch.await(500, TimeUnit.MILLISECONDS));
+
+        assertEquals(1, dm.depGraphDeltas.size());
+        DependencyGraphDelta delta = dm.depGraphDeltas.get(0);
+        assertEquals(version + 1, delta.getVersion());
+        assertArrayEquals(new String[]{"baz"}, delta.getAddedNodes());
+        assertArrayEquals(new DependencyEdge[]{new DependencyEdge("foo", "baz", false)}, delta.getAddedEdges());
+        assertArrayEquals(new DependencyEdge[]{new DependencyEdge("foo", "bar", true)}, delta.getRemovedEdges());
+        assertArrayEquals(changed, dm.latestDepGraph);
+        assertEquals(0, dm.depGraphGaps);
+    }
 
     @Test
     void GIVEN_connections_inited_WHEN_subscriptions_to_components_are_made_THEN_they_are_pushed()
@@ -0,0 +1,75 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.messageutils.DepGraphNode;
+import com.aws.greengrass.localdebugconsole.messageutils.Dependency;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyEdge;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphSnapshot;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(GGExtension.class)
+class DependencyGraphTrackerTest {
+    private final DependencyGraphTracker tracker = new DependencyGraphTracker();
+
+    @Test
+    void GIVEN_empty_tracker_WHEN_graph_is_set_THEN_every_node_and_edge_is_added() {
+        DependencyGraphDelta delta = tracker.update(new DepGraphNode[]{
+                new DepGraphNode("main", new Dependency[]{new Dependency("app", true)}),
+                new DepGraphNode("app", new Dependency[0])});
+        assertEquals(1, delta.getVersion());
+        assertArrayEquals(new String[]{"main", "app"}, delta.getAddedNodes());
+        assertArrayEquals(new DependencyEdge[]{new DependencyEdge("main", "app", true)}, delta.getAddedEdges());
+        assertEquals(0, delta.getRemovedNodes().length);
+        assertEquals(0, delta.getRemovedEdges().length);
+
+        DependencyGraphSnapshot snapshot = tracker.snapshot();
+        assertEquals(1, snapshot.getVersion());
+        assertArrayEquals(new DepGraphNode[]{
+                new DepGraphNode("main", new Dependency[]{new Dependency("app", true)}),
+                new DepGraphNode("app", new Dependency[0])}, snapshot.getNodes());
+    }
+
+    @Test
+    void GIVEN_graph_WHEN_same_graph_is_set_THEN_there_is_no_delta_and_version_stays() {
+        tracker.update(new DepGraphNode[]{new DepGraphNode("main", new Dependency[]{new Dependency("app", true)}),
+                new DepGraphNode("app", new Dependency[0])});
+        assertNull(tracker.update(new DepGraphNode[]{new DepGraphNode("app", new Dependency[0]),
+                new DepGraphNode("main", new Dependency[]{new Dependency("app", true)})}));
+        assertEquals(1, tracker.getVersion());
+    }
+
+    @Test
+    void GIVEN_graph_WHEN_dependencies_change_THEN_only_changed_nodes_and_edges_are_sent() {
+        tracker.update(new DepGraphNode[]{
+                new DepGraphNode("main", new Dependency[]{new Dependency("app", true), new Dependency("old", true)}),
+                new DepGraphNode("app", new Dependency[]{new Dependency("lib", true)}),
+                new DepGraphNode("lib", new Dependency[0]),
+                new DepGraphNode("old", new Dependency[]{new Dependency("lib", false)})});
+
+        // old is removed, new is added, and app's dependency on lib becomes soft
+        DependencyGraphDelta delta = tracker.update(new DepGraphNode[]{
+                new DepGraphNode("main", new Dependency[]{new Dependency("app", true), new Dependency("new", true)}),
+                new DepGraphNode("app", new Dependency[]{new Dependency("lib", false)}),
+                new DepGraphNode("lib", new Dependency[0]),
+                new DepGraphNode("new", new Dependency[0])});
+
+        assertEquals(2, delta.getVersion());
+        assertArrayEquals(new String[]{"new"}, delta.getAddedNodes());
+        assertArrayEquals(new String[]{"old"}, delta.getRemovedNodes());
+        assertArrayEquals(new DependencyEdge[]{new DependencyEdge("main", "new", true),
+                new DependencyEdge("app", "lib", false)}, delta.getAddedEdges());
+        // Edges from old went with it
+        assertArrayEquals(new DependencyEdge[]{new DependencyEdge("main", "old", true)}, delta.getRemovedEdges());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.lifecyclemanager.Kernel;
+import com.aws.greengrass.localdebugconsole.dashboardtestmocks.DashboardClientMock;
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.inject.Provider;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Answers.RETURNS_SMART_NULLS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(GGExtension.class)
+class GGSSLWebSocketServerFactoryTest {
+    private static final Logger logger = LogManager.getLogger(Kernel.class);
+    private static final int CLIENTS = 8;
+
+    private final List<DashboardClientMock> clients = new ArrayList<>();
+    private DashboardServer ds;
+
+    @AfterEach
+    void stopServer() throws IOException, InterruptedException {
+        for (DashboardClientMock client : clients) {
+            if (client.isOpen()) {
+                client.closeBlocking();
+            }
+        }
+        if (ds != null) {
+            ds.stop();
+        }
+    }
+
+    @Test
+    void GIVEN_fixed_thread_count_WHEN_executor_created_THEN_pool_is_bounded() {
+        ExecutorService exec = GGSSLWebSocketServerFactory.newHandshakeExecutor(3);
+        try {
+            assertTrue(exec instanceof ThreadPoolExecutor);
+            assertEquals(3, ((ThreadPoolExecutor) exec).getMaximumPoolSize());
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    void GIVEN_wss_server_WHEN_clients_connect_concurrently_THEN_handshakes_are_recorded() throws Exception {
+        startServer();
+        SSLContext clientContext = newClientContext();
+        List<CompletableFuture<Object>> connected = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            connected.add(connect(clientContext).init());
+        }
+        CompletableFuture.allOf(connected.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        TlsHandshakeMetrics metrics = ((GGSSLWebSocketServerFactory) ds.getWebSocketFactory()).getHandshakeMetrics();
+        assertEquals(CLIENTS, metrics.getCompleted());
+        assertEquals(0, metrics.getFailed());
+        assertTrue(metrics.getPercentileMillis(99) <= metrics.getMaxMillis());
+    }
+
+    @Test
+    void GIVEN_wss_server_WHEN_client_reconnects_THEN_session_is_resumed() throws Exception {
+        startServer();
+        SSLContext clientContext = newClientContext();
+        DashboardClientMock first = connect(clientContext);
+        first.init().get(5, TimeUnit.SECONDS);
+        first.closeBlocking();
+        connect(clientContext).init().get(5, TimeUnit.SECONDS);
+
+        TlsHandshakeMetrics metrics = ((GGSSLWebSocketServerFactory) ds.getWebSocketFactory()).getHandshakeMetrics();
+        assertEquals(2, metrics.getCompleted());
+        assertEquals(1, metrics.getResumed());
+    }
+
+    @Test
+    void GIVEN_engine_not_ready_WHEN_client_connects_THEN_only_that_connection_fails() throws Exception {
+        SslContext serverContext = newServerContext();
+        AtomicBoolean ready = new AtomicBoolean();
+        startServer(() -> {
+            if (!ready.get()) {
+                throw new IllegalStateException("HTTPS is still being initialized");
+            }
+            return serverContext.newEngine(ByteBufAllocator.DEFAULT);
+        });
+        SSLContext clientContext = newClientContext();
+        assertFalse(connect(clientContext).connectBlocking(5, TimeUnit.SECONDS));
+
+        ready.set(true);
+        connect(clientContext).init().get(5, TimeUnit.SECONDS);
+    }
+
+    private void startServer() throws Exception {
+        SslContext serverContext = newServerContext();
+        startServer(() -> serverContext.newEngine(ByteBufAllocator.DEFAULT));
+    }
+
+    private static SslContext newServerContext() throws Exception {
+        SelfSignedCertificate cert = new SelfSignedCertificate();
+        return SslContextBuilder.forServer(cert.key(), cert.cert()).build();
+    }
+
+    private void startServer(Provider<SSLEngine> engineProvider) throws Exception {
+        Authenticator authenticator = mock(Authenticator.class);
+        when(authenticator.isUsernameAndPasswordValid(any())).thenReturn(true);
+        ds = new DashboardServer(new InetSocketAddress("localhost", 0), logger,
+                mock(KernelCommunicator.class, RETURNS_SMART_NULLS), authenticator,
+                engineProvider, null, null, null);
+        ds.startup();
+        ds.getStarted().get(5, TimeUnit.SECONDS);
+    }
+
+    private static SSLContext newClientContext() throws Exception {
+        // Clients resume sessions cached in their own SSLContext
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+        return clientContext;
+    }
+
+    private DashboardClientMock connect(SSLContext clientContext) throws Exception {
+        DashboardClientMock client = new DashboardClientMock(new URI("wss://localhost:" + ds.getPort()), logger);
+        client.setSocketFactory(clientContext.getSocketFactory());
+        clients.add(client);
+        return client;
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.OutboundQueue.Kind;
+import com.aws.greengrass.localdebugconsole.OutboundQueue.Limits;
+import com.aws.greengrass.localdebugconsole.OutboundQueue.Policy;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(GGExtension.class)
+class OutboundQueueTest {
+    private final ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor();
+    private final WebSocket conn = mock(WebSocket.class);
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    // What the transport has buffered, which is over the high water mark while the client is slow
+    private final AtomicLong backlog = new AtomicLong();
+
+    @AfterEach
+    void cleanup() {
+        drainer.shutdownNow();
+    }
+
+    private OutboundQueue queue(int maxMessages, Policy pubSubPolicy) {
+        doAnswer(invocation -> sent.add(invocation.getArgument(0))).when(conn).send(anyString());
+        Map<Kind, Policy> policies = new EnumMap<>(Kind.class);
+        policies.put(Kind.PUB_SUB, pubSubPolicy);
+        return new OutboundQueue(conn, new Limits(maxMessages, OutboundQueue.DEFAULT_MAX_BYTES, policies), drainer,
+                c -> backlog.get());
+    }
+
+    private void slowClient() {
+        backlog.set(OutboundQueue.TRANSPORT_HIGH_WATER_BYTES);
+    }
+
+    @Test
+    void GIVEN_client_keeping_up_WHEN_messages_offered_THEN_they_are_sent_straight_away() {
+        OutboundQueue queue = queue(2, Policy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(Kind.PUB_SUB, "sub", "topic", new OutboundQueue.TextPayload("m" + i));
+        }
+        assertEquals(Arrays.asList("m0", "m1", "m2", "m3", "m4"), sent);
+        assertEquals(0, queue.getPending());
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    void GIVEN_slow_client_WHEN_over_the_limit_with_drop_oldest_THEN_oldest_are_dropped_and_rest_sent_in_order()
+            throws InterruptedException {
+        OutboundQueue queue = queue(3, Policy.DROP_OLDEST);
+        slowClient();
+        queue.offer(Kind.RESPONSE, null, null, new OutboundQueue.TextPayload("response"));
+        for (int i = 0; i < 5; i++) {
+            queue.offer(Kind.PUB_SUB, "sub", "busy/topic", new OutboundQueue.TextPayload("m" + i));
+        }
+        assertTrue(sent.isEmpty());
+        assertEquals(3, queue.getPending());
+        // The response isn't pub/sub's to drop
+        assertEquals(3, queue.getDropped());
+        assertEquals(Collections.singletonMap("busy/topic", 3L), queue.getDroppedByTopic());
+
+        backlog.set(0);
+        waitFor(() -> queue.getPending() == 0);
+        assertEquals(Arrays.asList("response", "m3", "m4"), sent);
+    }
+
+    @Test
+    void GIVEN_slow_client_WHEN_over_the_limit_with_drop_newest_THEN_new_messages_are_dropped()
+            throws InterruptedException {
+        OutboundQueue queue = queue(2, Policy.DROP_NEWEST);
+        slowClient();
+        for (int i = 0; i < 4; i++) {
+            queue.offer(Kind.PUB_SUB, "sub", "topic", new OutboundQueue.TextPayload("m" + i));
+        }
+        backlog.set(0);
+        waitFor(() -> queue.getPending() == 0);
+        assertEquals(Arrays.asList("m0", "m1"), sent);
+        assertEquals(2, queue.getDropped());
+    }
+
+    @Test
+    void GIVEN_slow_client_WHEN_component_changes_over_the_limit_THEN_older_states_are_replaced()
+            throws InterruptedException {
+        OutboundQueue queue = queue(2, Policy.DROP_OLDEST);
+        slowClient();
+        queue.offer(Kind.COMPONENT_CHANGE, "main", null, new OutboundQueue.TextPayload("main:STARTING"));
+        queue.offer(Kind.COMPONENT_CHANGE, "other", null, new OutboundQueue.TextPayload("other:RUNNING"));
+        queue.offer(Kind.COMPONENT_CHANGE, "main", null, new OutboundQueue.TextPayload("main:RUNNING"));
+        assertEquals(1, queue.getDropped());
+        assertEquals(Collections.singletonMap("componentChange", 1L), queue.getDroppedByTopic());
+
+        backlog.set(0);
+        waitFor(() -> queue.getPending() == 0);
+        assertEquals(Arrays.asList("other:RUNNING", "main:RUNNING"), sent);
+    }
+
+    @Test
+    void GIVEN_slow_client_WHEN_coalescing_messages_without_a_key_THEN_they_do_not_replace_each_other()
+            throws InterruptedException {
+        OutboundQueue queue = queue(2, Policy.COALESCE);
+        slowClient();
+        for (int i = 0; i < 3; i++) {
+            queue.offerBatch(Kind.PUB_SUB, Collections.singletonMap("topic", 2),
+                    new OutboundQueue.TextPayload("batch" + i));
+        }
+        assertEquals(2, queue.getDropped());
+        assertEquals(Collections.singletonMap("topic", 2L), queue.getDroppedByTopic());
+
+        backlog.set(0);
+        waitFor(() -> queue.getPending() == 0);
+        assertEquals(Arrays.asList("batch1", "batch2"), sent);
+    }
+
+    @Test
+    void GIVEN_slow_client_with_component_list_waiting_WHEN_changes_go_over_the_limit_THEN_the_list_is_kept()
+            throws InterruptedException {
+        OutboundQueue queue = queue(2, Policy.DROP_OLDEST);
+        slowClient();
+        queue.offerSnapshot(Kind.COMPONENT_LIST, new OutboundQueue.TextPayload("list"));
+        for (int i = 1; i <= 3; i++) {
+            queue.offer(Kind.COMPONENT_LIST, null, null, new OutboundQueue.TextPayload("delta" + i));
+        }
+        assertEquals(2, queue.getDropped());
+
+        // A later list replaces it, along with the changes it already has
+        queue.offerSnapshot(Kind.COMPONENT_LIST, new OutboundQueue.TextPayload("list3"));
+        queue.offer(Kind.COMPONENT_LIST, null, null, new OutboundQueue.TextPayload("delta4"));
+        assertEquals(4, queue.getDropped());
+        assertFalse(queue.isDisconnected());
+
+        backlog.set(0);
+        waitFor(() -> queue.getPending() == 0);
+        assertEquals(Arrays.asList("list3", "delta4"), sent);
+    }
+
+    @Test
+    void GIVEN_slow_client_with_queue_full_of_pub_sub_WHEN_a_response_arrives_THEN_pub_sub_makes_way()
+            throws InterruptedException {
+        OutboundQueue queue = queue(3, Policy.DROP_OLDEST);
+        slowClient();
+        for (int i = 0; i < 5; i++) {
+            queue.offer(Kind.PUB_SUB, "sub", "busy/topic", new OutboundQueue.TextPayload("m" + i));
+        }
+        queue.offer(Kind.RESPONSE, null, null, new OutboundQueue.TextPayload("unsubscribed"));
+        // So does a component list, which the client can't do without either
+        queue.offerSnapshot(Kind.COMPONENT_LIST, new OutboundQueue.TextPayload("list"));
+        assertFalse(queue.isDisconnected());
+        assertEquals(3, queue.getPending());
+        assertEquals(Collections.singletonMap("busy/topic", 4L), queue.getDroppedByTopic());
+
+        backlog.set(0);
+        waitFor(() -> queue.getPending() == 0);
+        assertEquals(Arrays.asList("m4", "unsubscribed", "list"), sent);
+    }
+
+    @Test
+    void GIVEN_slow_client_with_queue_full_of_responses_WHEN_another_arrives_THEN_it_is_disconnected() {
+        OutboundQueue queue = queue(2, Policy.DROP_OLDEST);
+        slowClient();
+        for (int i = 0; i < 3; i++) {
+            queue.offer(Kind.RESPONSE, null, null, new OutboundQueue.TextPayload("response" + i));
+        }
+        verify(conn).closeConnection(CloseFrame.POLICY_VALIDATION, "Too far behind reading messages");
+        assertTrue(queue.isDisconnected());
+    }
+
+    @Test
+    void GIVEN_slow_client_WHEN_over_the_limit_with_disconnect_THEN_it_is_disconnected_and_nothing_more_is_sent() {
+        OutboundQueue queue = queue(1, Policy.DISCONNECT);
+        slowClient();
+        ByteBuf shared = Unpooled.copiedBuffer("shared", StandardCharsets.UTF_8);
+        queue.offer(Kind.PUB_SUB, "sub", "topic", new OutboundQueue.BufferPayload(shared));
+        // Waiting holds on to the shared bytes
+        assertEquals(2, shared.refCnt());
+        queue.offer(Kind.PUB_SUB, "sub", "topic", new OutboundQueue.TextPayload("m1"));
+
+        verify(conn).closeConnection(CloseFrame.POLICY_VALIDATION, "Too far behind reading messages");
+        assertTrue(queue.isDisconnected());
+        assertEquals(0, queue.getPending());
+        assertEquals(1, shared.refCnt());
+
+        backlog.set(0);
+        queue.offer(Kind.PUB_SUB, "sub", "topic", new OutboundQueue.TextPayload("m2"));
+        assertTrue(sent.isEmpty());
+        shared.release();
+    }
+
+    @Test
+    void GIVEN_policy_names_WHEN_parsed_THEN_unknown_names_are_null() {
+        assertEquals(Policy.DROP_OLDEST, Policy.of("drop-oldest"));
+        assertEquals(Policy.COALESCE, Policy.of("COALESCE"));
+        assertNull(Policy.of("drop-everything"));
+        assertEquals(Policy.DISCONNECT, Limits.DEFAULT.policyFor(Kind.RESPONSE));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.messageutils.BinaryPubSubMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.MessageType;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.WebSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(GGExtension.class)
+class PubSubBatcherTest {
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final WebSocket conn = mock(WebSocket.class);
+    private final List<String> sentText = Collections.synchronizedList(new ArrayList<>());
+    private final List<ByteBuffer> sentBinary = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void cleanup() {
+        timer.shutdownNow();
+    }
+
+    private PubSubBatcher batcher(int maxMessages, long maxDelayMillis) {
+        return batcher(new OutboundQueue(conn, OutboundQueue.Limits.DEFAULT, timer, c -> 0L), maxMessages,
+                maxDelayMillis);
+    }
+
+    private PubSubBatcher batcher(OutboundQueue queue, int maxMessages, long maxDelayMillis) {
+        doAnswer(invocation -> sentText.add(invocation.getArgument(0))).when(conn).send(anyString());
+        doAnswer(invocation -> sentBinary.add(invocation.getArgument(0))).when(conn).send(any(ByteBuffer.class));
+        return new PubSubBatcher(conn, queue, new PubSubBatcher.Options(maxMessages, maxDelayMillis), timer);
+    }
+
+    @Test
+    void GIVEN_batching_WHEN_max_messages_reached_THEN_they_go_as_one_array_frame() throws Exception {
+        PubSubBatcher batcher = batcher(3, 60_000);
+        for (int i = 0; i < 7; i++) {
+            batcher.add("t", "{\"payload\":\"m" + i + "\"}");
+        }
+        assertEquals(2, sentText.size());
+        JsonNode first = mapper.readTree(sentText.get(0));
+        assertEquals(MessageType.PUB_SUB_MSG_BATCH, first.get("messageType").asInt());
+        assertEquals(3, first.get("payload").size());
+        assertEquals("m2", first.get("payload").get(2).get("payload").asText());
+
+        // What's left goes once batching is turned off
+        batcher.close();
+        assertEquals(3, sentText.size());
+        assertEquals("m6", mapper.readTree(sentText.get(2)).get("payload").get(0).get("payload").asText());
+        batcher.add("t", "{}");
+        assertEquals(3, sentText.size());
+        assertEquals(7, batcher.getMessages());
+        assertEquals(3, batcher.getBatches());
+    }
+
+    @Test
+    void GIVEN_batching_WHEN_batch_is_not_full_THEN_it_goes_after_the_delay() throws InterruptedException {
+        PubSubBatcher batcher = batcher(100, 50);
+        batcher.add("t", "{}");
+        batcher.add("t", "{}");
+        assertTrue(sentText.isEmpty());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sentText.isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+            Thread.sleep(10);
+        }
+        assertEquals(1, sentText.size());
+    }
+
+    @Test
+    void GIVEN_binary_messages_WHEN_batched_THEN_each_is_length_prefixed_after_the_type() {
+        PubSubBatcher batcher = batcher(2, 60_000);
+        BinaryPubSubMessage first = new BinaryPubSubMessage("sub", "t/#", "t/1", new byte[]{0, 1, 2});
+        BinaryPubSubMessage second = new BinaryPubSubMessage("sub", "t/#", "t/2",
+                "two".getBytes(StandardCharsets.UTF_8));
+        batcher.add(first);
+        batcher.add(second);
+
+        assertEquals(1, sentBinary.size());
+        ByteBuffer frame = sentBinary.get(0);
+        assertEquals(MessageType.PUB_SUB_MSG_BATCH, frame.get());
+        for (BinaryPubSubMessage expected : new BinaryPubSubMessage[]{first, second}) {
+            ByteBuffer message = frame.slice();
+            int length = message.getInt();
+            message.limit(4 + length);
+            BinaryPubSubMessage decoded = BinaryPubSubMessage.decode(message.slice());
+            assertEquals(expected.getTopic(), decoded.getTopic());
+            assertArrayEquals(expected.getPayload(), decoded.getPayload());
+            frame.position(frame.position() + 4 + length);
+        }
+        assertEquals(0, frame.remaining());
+    }
+
+    @Test
+    void GIVEN_slow_client_WHEN_batches_are_dropped_THEN_their_messages_are_counted_by_topic() {
+        Map<OutboundQueue.Kind, OutboundQueue.Policy> policies = new EnumMap<>(OutboundQueue.Kind.class);
+        policies.put(OutboundQueue.Kind.PUB_SUB, OutboundQueue.Policy.COALESCE);
+        OutboundQueue queue = new OutboundQueue(conn,
+                new OutboundQueue.Limits(2, OutboundQueue.DEFAULT_MAX_BYTES, policies), timer,
+                c -> OutboundQueue.TRANSPORT_HIGH_WATER_BYTES);
+        PubSubBatcher batcher = batcher(queue, 3, 60_000);
+        for (int i = 0; i < 9; i++) {
+            batcher.add(i % 3 == 0 ? "a" : "b", "{}");
+        }
+
+        // Batches replace nothing, so only the oldest makes way
+        assertEquals(2, queue.getPending());
+        assertEquals(3, queue.getDropped());
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("a", 1L);
+        expected.put("b", 2L);
+        assertEquals(expected, queue.getDroppedByTopic());
+    }
+
+    @Test
+    void GIVEN_batching_request_WHEN_options_read_THEN_one_message_turns_it_off_and_bad_values_are_rejected()
+            throws Exception {
+        assertNull(PubSubBatcher.Options.of(mapper.readTree("{\"maxMessages\":1}")));
+        assertNull(PubSubBatcher.Options.of(mapper.readTree("{}")));
+        PubSubBatcher.Options.of(mapper.readTree("{\"maxMessages\":100,\"maxDelayMs\":50}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> PubSubBatcher.Options.of(mapper.readTree("{\"maxMessages\":100}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PubSubBatcher.Options.of(mapper.readTree("{\"maxMessages\":100000,\"maxDelayMs\":50}")));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(GGExtension.class)
+class PubSubFilterTest {
+    private final ScheduledExecutorService timer = mock(ScheduledExecutorService.class);
+    private final AtomicLong now = new AtomicLong();
+    private final List<String> sent = new ArrayList<>();
+    private final AtomicInteger reports = new AtomicInteger();
+
+    private PubSubFilter filter(PubSubFilter.Options options) {
+        return new PubSubFilter(options, timer, now::get, new PubSubFilter.Output() {
+            @Override
+            public void send(String topic, byte[] payload, int payloadSize) {
+                sent.add(topic + '=' + new String(payload, StandardCharsets.UTF_8) + '/' + payloadSize);
+            }
+
+            @Override
+            public void report(PubSubFilter filter) {
+                reports.incrementAndGet();
+            }
+        });
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    void GIVEN_sample_every_3_WHEN_messages_offered_THEN_every_third_is_sent() {
+        PubSubFilter filter = filter(new PubSubFilter.Options(0, 3, false, 0));
+        for (int i = 0; i < 7; i++) {
+            filter.offer("t", bytes("m" + i));
+        }
+        assertEquals(Arrays.asList("t=m0/2", "t=m3/2", "t=m6/2"), sent);
+        assertEquals(4, filter.getSampled());
+    }
+
+    @Test
+    void GIVEN_rate_limit_WHEN_burst_offered_THEN_what_is_over_the_rate_is_dropped_until_it_refills() {
+        PubSubFilter filter = filter(new PubSubFilter.Options(2, 1, false, 0));
+        for (int i = 0; i < 5; i++) {
+            filter.offer("t", bytes("m" + i));
+        }
+        assertEquals(Arrays.asList("t=m0/2", "t=m1/2"), sent);
+        assertEquals(3, filter.getRateLimited());
+
+        advanceMillis(500);
+        filter.offer("t", bytes("m5"));
+        filter.offer("t", bytes("m6"));
+        assertEquals(Arrays.asList("t=m0/2", "t=m1/2", "t=m5/2"), sent);
+        assertEquals(4, filter.getRateLimited());
+    }
+
+    @Test
+    void GIVEN_latest_only_WHEN_over_the_rate_THEN_latest_of_each_topic_is_sent_once_the_rate_allows() {
+        PubSubFilter filter = filter(new PubSubFilter.Options(1, 1, true, 0));
+        filter.offer("a", bytes("a0"));
+        filter.offer("a", bytes("a1"));
+        filter.offer("b", bytes("b1"));
+        filter.offer("a", bytes("a2"));
+        assertEquals(Arrays.asList("a=a0/2"), sent);
+        assertEquals(1, filter.getConflated());
+        verify(timer, atLeastOnce()).schedule(any(Runnable.class), eq(TimeUnit.SECONDS.toNanos(1)),
+                eq(TimeUnit.NANOSECONDS));
+
+        // Held topics go in the order they were first held, one per token
+        advanceMillis(1000);
+        filter.flush();
+        assertEquals(Arrays.asList("a=a0/2", "a=a2/2"), sent);
+        advanceMillis(1000);
+        filter.flush();
+        assertEquals(Arrays.asList("a=a0/2", "a=a2/2", "b=b1/2"), sent);
+        assertEquals(0, filter.getRateLimited());
+    }
+
+    @Test
+    void GIVEN_max_payload_bytes_WHEN_large_payload_offered_THEN_it_is_cut_short_with_its_size() {
+        PubSubFilter filter = filter(new PubSubFilter.Options(0, 1, false, 4));
+        filter.offer("t", bytes("0123456789"));
+        filter.offer("t", bytes("0123"));
+        assertEquals(Arrays.asList("t=0123/10", "t=0123/4"), sent);
+        assertEquals(1, filter.getTruncated());
+    }
+
+    @Test
+    void GIVEN_messages_held_back_WHEN_stats_are_due_THEN_they_are_reported_only_when_changed() {
+        PubSubFilter filter = filter(new PubSubFilter.Options(0, 2, false, 0));
+        filter.offer("t", bytes("m0"));
+        filter.offer("t", bytes("m1"));
+        ArgumentCaptor<Runnable> stats = ArgumentCaptor.forClass(Runnable.class);
+        verify(timer, atLeastOnce()).scheduleWithFixedDelay(stats.capture(), anyLong(),
+                eq(PubSubFilter.STATS_INTERVAL_MILLIS), eq(TimeUnit.MILLISECONDS));
+
+        stats.getValue().run();
+        stats.getValue().run();
+        assertEquals(1, reports.get());
+        filter.offer("t", bytes("m2"));
+        filter.offer("t", bytes("m3"));
+        stats.getValue().run();
+        assertEquals(2, reports.get());
+
+        filter.close();
+        filter.offer("t", bytes("m4"));
+        assertEquals(Arrays.asList("t=m0/2", "t=m2/2"), sent);
+    }
+
+    @Test
+    void GIVEN_subscribe_request_WHEN_options_read_THEN_missing_ones_are_defaults_and_invalid_ones_rejected()
+            throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        assertTrue(PubSubFilter.Options.of(mapper.readTree("{\"topicFilter\":\"#\"}")).isNone());
+        assertEquals(new PubSubFilter.Options(10, 1, true, 0), PubSubFilter.Options.of(
+                mapper.readTree("{\"maxMessagesPerSecond\":10,\"latestOnly\":true}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PubSubFilter.Options.of(mapper.readTree("{\"sampleEvery\":0}")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PubSubFilter.Options.of(mapper.readTree("{\"maxPayloadBytes\":-1}")));
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.builtin.services.pubsub.PubSubIPCEventStreamAgent;
+import com.aws.greengrass.builtin.services.pubsub.PublishEvent;
+import com.aws.greengrass.builtin.services.pubsub.SubscribeRequest;
+import com.aws.greengrass.localdebugconsole.messageutils.BinaryPubSubMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.CommunicationMessage;
+import com.aws.greengrass.localdebugconsole.messageutils.PayloadFormat;
+import com.aws.greengrass.localdebugconsole.messageutils.PubSubStats;
+import com.aws.greengrass.mqttclient.MqttClient;
+import com.aws.greengrass.mqttclient.v5.Subscribe;
+import com.aws.greengrass.mqttclient.v5.SubscribeResponse;
+import com.aws.greengrass.mqttclient.v5.Unsubscribe;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(GGExtension.class)
+class PubSubMultiplexerTest {
+    private final PubSubIPCEventStreamAgent pubSubIPCAgent = mock(PubSubIPCEventStreamAgent.class);
+    private final MqttClient mqttClient = mock(MqttClient.class);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final List<Set<String>> deliveredTo = new ArrayList<>();
+    private final List<CommunicationMessage> delivered = new ArrayList<>();
+    private final List<BinaryPubSubMessage> deliveredBinary = new ArrayList<>();
+    private final PubSubMultiplexer.Sink<String> sink = new PubSubMultiplexer.Sink<String>() {
+        @Override
+        public void message(Set<String> subscribers, CommunicationMessage message) {
+            deliveredTo.add(subscribers);
+            delivered.add(message);
+        }
+
+        @Override
+        public void binaryMessage(Set<String> subscribers, BinaryPubSubMessage message) {
+            deliveredBinary.add(message);
+        }
+
+        @Override
+        public void stats(Set<String> subscribers, PubSubStats stats) {
+        }
+    };
+    private final PubSubMultiplexer<String> multiplexer =
+            new PubSubMultiplexer<>(pubSubIPCAgent, mqttClient, "LocalDebugConsole", sink, timer);
+
+    @AfterEach
+    void cleanup() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void GIVEN_consoles_watching_one_topic_WHEN_message_published_THEN_one_subscription_serves_them_all()
+            throws Exception {
+        assertTrue(multiplexer.subscribe("tab1", "pubsubtopic", "pubsub", "topic").get());
+        assertTrue(multiplexer.subscribe("tab2", "pubsubtopic", "pubsub", "topic").get());
+        assertTrue(multiplexer.subscribe("tab3", "other", "pubsub", "topic").get());
+        assertFalse(multiplexer.subscribe("tab1", "pubsubtopic", "pubsub", "topic").get());
+
+        ArgumentCaptor<SubscribeRequest> request = ArgumentCaptor.forClass(SubscribeRequest.class);
+        verify(pubSubIPCAgent).subscribe(request.capture());
+        assertEquals(1, multiplexer.getUpstreamCount());
+
+        PublishEvent event = mock(PublishEvent.class);
+        when(event.getTopic()).thenReturn("topic");
+        when(event.getPayload()).thenReturn("hello".getBytes(StandardCharsets.UTF_8));
+        ((Consumer<PublishEvent>) request.getValue().getCallback()).accept(event);
+
+        // Once per subscription id, with everyone subscribed under it
+        assertEquals(2, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            CommunicationMessage message = delivered.get(i);
+            assertEquals("topic", message.getSubscribedTopic());
+            assertEquals("hello", message.getPayload());
+            assertEquals("other".equals(message.getSubId()) ? new HashSet<>(Arrays.asList("tab3"))
+                    : new HashSet<>(Arrays.asList("tab1", "tab2")), deliveredTo.get(i));
+        }
+        assertEquals(1, multiplexer.getReceived());
+        assertEquals(3, multiplexer.getDelivered());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void GIVEN_subscriptions_in_each_format_WHEN_binary_message_published_THEN_each_gets_it_intact() throws Exception {
+        multiplexer.subscribe("tab1", "raw", "pubsub", "topic", PayloadFormat.BINARY,
+                PubSubFilter.Options.NONE).get();
+        multiplexer.subscribe("tab2", "json", "pubsub", "topic", PayloadFormat.BASE64,
+                PubSubFilter.Options.NONE).get();
+        multiplexer.subscribe("tab3", "json", "pubsub", "topic", PayloadFormat.BASE64,
+                PubSubFilter.Options.NONE).get();
+        multiplexer.subscribe("tab4", "raw", "pubsub", "topic", PayloadFormat.TEXT,
+                PubSubFilter.Options.NONE).get();
+        ArgumentCaptor<SubscribeRequest> request = ArgumentCaptor.forClass(SubscribeRequest.class);
+        verify(pubSubIPCAgent).subscribe(request.capture());
+
+        // Not valid UTF-8
+        byte[] payload = {(byte) 0xC3, 0x28, 0x00, (byte) 0xFF};
+        PublishEvent event = mock(PublishEvent.class);
+        when(event.getTopic()).thenReturn("topic");
+        when(event.getPayload()).thenReturn(payload);
+        ((Consumer<PublishEvent>) request.getValue().getCallback()).accept(event);
+
+        assertEquals(1, deliveredBinary.size());
+        assertEquals("raw", deliveredBinary.get(0).getSubId());
+        assertArrayEquals(payload, deliveredBinary.get(0).getPayload());
+        assertEquals(2, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            CommunicationMessage message = delivered.get(i);
+            if ("json".equals(message.getSubId())) {
+                assertEquals("base64", message.getEncoding());
+                assertArrayEquals(payload, Base64.getDecoder().decode(message.getPayload()));
+                assertEquals(new HashSet<>(Arrays.asList("tab2", "tab3")), deliveredTo.get(i));
+            } else {
+                assertNull(message.getEncoding());
+                assertEquals(Collections.singleton("tab4"), deliveredTo.get(i));
+            }
+        }
+        assertEquals(4, multiplexer.getDelivered());
+
+        // Leaving one format of a subscription id leaves the other
+        multiplexer.unsubscribe("tab4", "raw");
+        ((Consumer<PublishEvent>) request.getValue().getCallback()).accept(event);
+        assertEquals(2, deliveredBinary.size());
+        assertEquals(3, delivered.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void GIVEN_subscriptions_with_and_without_limits_WHEN_messages_published_THEN_only_the_limited_one_is_thinned()
+            throws Exception {
+        multiplexer.subscribe("tab1", "sub", "pubsub", "topic").get();
+        multiplexer.subscribe("tab2", "sub", "pubsub", "topic", PayloadFormat.TEXT,
+                new PubSubFilter.Options(0, 2, false, 2)).get();
+        ArgumentCaptor<SubscribeRequest> request = ArgumentCaptor.forClass(SubscribeRequest.class);
+        verify(pubSubIPCAgent).subscribe(request.capture());
+
+        PublishEvent event = mock(PublishEvent.class);
+        when(event.getTopic()).thenReturn("topic");
+        when(event.getPayload()).thenReturn("hello".getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 4; i++) {
+            ((Consumer<PublishEvent>) request.getValue().getCallback()).accept(event);
+        }
+
+        int full = 0;
+        int cut = 0;
+        for (int i = 0; i < delivered.size(); i++) {
+            if (deliveredTo.get(i).contains("tab1")) {
+                assertEquals("hello", delivered.get(i).getPayload());
+                assertNull(delivered.get(i).getPayloadSize());
+                full++;
+            } else {
+                assertEquals("he", delivered.get(i).getPayload());
+                assertEquals(5, delivered.get(i).getPayloadSize());
+                cut++;
+            }
+        }
+        assertEquals(4, full);
+        assertEquals(2, cut);
+    }
+
+    @Test
+    void GIVEN_shared_subscription_WHEN_consoles_leave_THEN_upstream_unsubscribes_after_the_last() throws Exception {
+        multiplexer.subscribe("tab1", "pubsubtopic", "pubsub", "topic").get();
+        multiplexer.subscribe("tab2", "pubsubtopic", "pubsub", "topic").get();
+
+        assertTrue(multiplexer.unsubscribe("tab1", "pubsubtopic"));
+        assertFalse(multiplexer.unsubscribe("tab1", "pubsubtopic"));
+        verify(pubSubIPCAgent, never()).unsubscribe(any());
+
+        multiplexer.unsubscribeAll("tab2");
+        verify(pubSubIPCAgent).unsubscribe(any());
+        assertEquals(0, multiplexer.getUpstreamCount());
+
+        // Starts over once everyone has left
+        multiplexer.subscribe("tab1", "pubsubtopic", "pubsub", "topic").get();
+        verify(pubSubIPCAgent, times(2)).subscribe(any());
+    }
+
+    @Test
+    void GIVEN_consoles_watching_iot_core_topic_WHEN_subscribing_THEN_mqtt_is_subscribed_once() throws Exception {
+        when(mqttClient.subscribe(any(Subscribe.class))).thenReturn(CompletableFuture.completedFuture(null));
+        multiplexer.subscribe("tab1", "iotcoretopic", "iotcore", "topic").get();
+        multiplexer.subscribe("tab2", "iotcoretopic", "iotcore", "topic").get();
+        // Same filter on local pub/sub is a different subscription
+        multiplexer.subscribe("tab2", "pubsubtopic", "pubsub", "topic").get();
+        verify(mqttClient).subscribe(any(Subscribe.class));
+        assertEquals(2, multiplexer.getUpstreamCount());
+
+        multiplexer.unsubscribeAll("tab1");
+        multiplexer.unsubscribeAll("tab2");
+        verify(mqttClient).unsubscribe(any(Unsubscribe.class));
+        assertEquals(0, multiplexer.getUpstreamCount());
+    }
+
+    @Test
+    void GIVEN_broker_not_answering_WHEN_subscription_repeated_THEN_both_wait_on_one_attempt_and_time_out()
+            throws Exception {
+        CompletableFuture<SubscribeResponse> broker = new CompletableFuture<>();
+        when(mqttClient.subscribe(any(Subscribe.class))).thenReturn(broker);
+        multiplexer.setSubscribeTimeoutMillis(100);
+
+        CompletableFuture<Boolean> first = multiplexer.subscribe("tab1", "iotcoretopic", "iotcore", "topic");
+        CompletableFuture<Boolean> again = multiplexer.subscribe("tab1", "iotcoretopic", "iotcore", "topic");
+        // Returns straight away rather than waiting on the broker
+        assertFalse(first.isDone());
+        verify(mqttClient).subscribe(any(Subscribe.class));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertThrows(ExecutionException.class, () -> again.get(5, TimeUnit.SECONDS));
+        assertEquals(0, multiplexer.getUpstreamCount());
+
+        // The broker gets there in the end, but nobody wants it anymore
+        broker.complete(null);
+        verify(mqttClient).unsubscribe(any(Unsubscribe.class));
+        // and the next attempt starts over
+        when(mqttClient.subscribe(any(Subscribe.class))).thenReturn(CompletableFuture.completedFuture(null));
+        assertTrue(multiplexer.subscribe("tab1", "iotcoretopic", "iotcore", "topic").get(5, TimeUnit.SECONDS));
+    }
+}
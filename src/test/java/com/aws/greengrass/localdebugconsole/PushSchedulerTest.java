@@ -0,0 +1,108 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(GGExtension.class)
+class PushSchedulerTest {
+    private static final long WINDOW_MILLIS = 100;
+
+    private final RecordingPusher target = new RecordingPusher();
+    private final PushScheduler scheduler = new PushScheduler(target, WINDOW_MILLIS);
+
+    @AfterEach
+    void cleanup() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void GIVEN_burst_of_state_changes_WHEN_window_passes_THEN_each_push_is_sent_once() throws InterruptedException {
+        target.expect(4);
+        // Like a deployment moving a couple of components through their lifecycle
+        for (int i = 0; i < 20; i++) {
+            String name = i % 2 == 0 ? "main" : "other";
+            scheduler.pushComponentChange(name);
+            scheduler.pushComponentListUpdate();
+        }
+        scheduler.pushDependencyGraphUpdate();
+        scheduler.pushComponentChange("main");
+
+        assertTrue(target.await());
+        assertEquals(Arrays.asList("change:main", "change:other", "list", "graph"), target.pushes);
+        assertNotSame(Thread.currentThread(), target.thread);
+        assertEquals(42, scheduler.getRequested());
+        assertEquals(4, scheduler.getFlushed());
+    }
+
+    @Test
+    void GIVEN_push_was_flushed_WHEN_component_changes_again_THEN_it_is_pushed_again() throws InterruptedException {
+        target.expect(1);
+        scheduler.pushComponentListUpdate();
+        assertTrue(target.await());
+
+        target.expect(2);
+        scheduler.pushComponentListUpdate();
+        scheduler.pushComponentChange("main");
+        assertTrue(target.await());
+        assertEquals(Arrays.asList("list", "change:main", "list"), target.pushes);
+    }
+
+    @Test
+    void GIVEN_nothing_changed_WHEN_window_passes_THEN_nothing_is_pushed() throws InterruptedException {
+        Thread.sleep(WINDOW_MILLIS * 2);
+        assertTrue(target.pushes.isEmpty());
+    }
+
+    private static class RecordingPusher implements KernelMessagePusher {
+        private final List<String> pushes = Collections.synchronizedList(new ArrayList<>());
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+        private volatile Thread thread;
+
+        void expect(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+
+        private void record(String push) {
+            thread = Thread.currentThread();
+            pushes.add(push);
+            latch.countDown();
+        }
+
+        @Override
+        public void pushComponentListUpdate() {
+            record("list");
+        }
+
+        @Override
+        public void pushComponentChange(String name) {
+            record("change:" + name);
+        }
+
+        @Override
+        public void pushDependencyGraphUpdate() {
+            record("graph");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.localdebugconsole.RequestExecutor.Category;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(GGExtension.class)
+class RequestExecutorTest {
+    private RequestExecutor executor;
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void GIVEN_calls_from_one_connection_WHEN_submitted_THEN_they_run_in_order() throws InterruptedException {
+        executor = new RequestExecutor();
+        Object conn = new Object();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        int calls = RequestExecutor.DEFAULT_MAX_PENDING_PER_CONNECTION;
+        CountDownLatch done = new CountDownLatch(calls);
+        for (int i = 0; i < calls; i++) {
+            int n = i;
+            // Mix categories, which have their own limits but must not overtake each other
+            APICalls call = i % 3 == 0 ? APICalls.streamManagerReadMessages
+                    : i % 3 == 1 ? APICalls.getComponent : APICalls.updateConfig;
+            assertTrue(executor.submit(conn, call, () -> {
+                order.add(n);
+                done.countDown();
+            }));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < calls; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+
+    @Test
+    void GIVEN_category_at_its_limit_WHEN_other_calls_submitted_THEN_only_that_category_waits() throws Exception {
+        Map<Category, Integer> limits = new EnumMap<>(Category.class);
+        limits.put(Category.STREAM_MANAGER, 1);
+        executor = new RequestExecutor(limits, RequestExecutor.DEFAULT_MAX_PENDING_PER_CONNECTION);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.submit(new Object(), APICalls.streamManagerReadMessages, () -> {
+            blocked.countDown();
+            await(release);
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean secondRead = new AtomicBoolean();
+        executor.submit(new Object(), APICalls.streamManagerReadMessages, () -> secondRead.set(true));
+        CountDownLatch query = new CountDownLatch(1);
+        executor.submit(new Object(), APICalls.getComponentList, query::countDown);
+
+        // Another connection's query isn't held up, but the second read has to wait for the first
+        assertTrue(query.await(5, TimeUnit.SECONDS));
+        assertFalse(secondRead.get());
+        assertEquals(1, executor.getActive(Category.STREAM_MANAGER));
+        assertEquals(1, executor.getQueued(Category.STREAM_MANAGER));
+
+        release.countDown();
+        waitFor(secondRead::get);
+        waitFor(() -> executor.getCompleted(Category.STREAM_MANAGER) == 2);
+        assertEquals(0, executor.getQueued(Category.STREAM_MANAGER));
+        assertEquals(1, executor.getMaxQueued(Category.STREAM_MANAGER));
+    }
+
+    @Test
+    void GIVEN_connection_with_too_many_pending_calls_WHEN_submitted_THEN_call_is_rejected() throws Exception {
+        executor = new RequestExecutor(RequestExecutor.defaultLimits(), 2);
+        Object conn = new Object();
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(executor.submit(conn, APICalls.updateConfig, () -> await(release)));
+        assertTrue(executor.submit(conn, APICalls.getConfig, () -> { }));
+        assertFalse(executor.submit(conn, APICalls.getConfig, () -> { }));
+        assertEquals(1, executor.getRejected(Category.QUERY));
+
+        // Other connections have their own allowance
+        CountDownLatch other = new CountDownLatch(1);
+        assertTrue(executor.submit(new Object(), APICalls.getConfig, other::countDown));
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void GIVEN_running_call_WHEN_connection_closes_THEN_pending_calls_are_dropped_and_cleanup_runs_last()
+            throws Exception {
+        executor = new RequestExecutor();
+        Object conn = new Object();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        executor.submit(conn, APICalls.subscribeToPubSubTopic, () -> {
+            running.countDown();
+            await(release);
+            ran.incrementAndGet();
+        });
+        executor.submit(conn, APICalls.getConfig, ran::incrementAndGet);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch cleanedUp = new CountDownLatch(1);
+        AtomicInteger ranBeforeCleanup = new AtomicInteger(-1);
+        executor.close(conn, () -> {
+            ranBeforeCleanup.set(ran.get());
+            cleanedUp.countDown();
+        });
+        assertEquals(1, cleanedUp.getCount());
+        assertEquals(0, executor.getQueued(Category.QUERY));
+
+        release.countDown();
+        assertTrue(cleanedUp.await(5, TimeUnit.SECONDS));
+        assertEquals(1, ranBeforeCleanup.get());
+
+        // Nothing running, so cleanup happens straight away
+        AtomicBoolean idleCleanup = new AtomicBoolean();
+        executor.close(new Object(), () -> idleCleanup.set(true));
+        assertTrue(idleCleanup.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+}
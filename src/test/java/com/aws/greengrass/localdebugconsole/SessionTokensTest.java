@@ -0,0 +1,59 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(GGExtension.class)
+class SessionTokensTest {
+    private final SessionTokens tokens = new SessionTokens();
+
+    @Test
+    void GIVEN_issued_token_WHEN_verified_THEN_username_is_returned() {
+        String token = tokens.issue("üser.name", "cGFzcw", System.currentTimeMillis() + 60_000);
+        assertEquals("üser.name", tokens.verify(token).getUsername());
+        assertEquals("cGFzcw", tokens.verify(token).getPasswordId());
+        // Verifying has no side effects
+        assertEquals("üser.name", tokens.verify(token).getUsername());
+    }
+
+    @Test
+    void GIVEN_expired_token_WHEN_verified_THEN_it_is_rejected() {
+        assertNull(tokens.verify(tokens.issue("user", "", System.currentTimeMillis() - 1)));
+    }
+
+    @Test
+    void GIVEN_tampered_or_foreign_token_WHEN_verified_THEN_it_is_rejected() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        String token = tokens.issue("user", "cGFzcw", expiresAt);
+        String signature = token.substring(token.lastIndexOf('.'));
+
+        // Push the expiry out while keeping the signature
+        assertNull(tokens.verify(token.replace(Long.toString(expiresAt), Long.toString(expiresAt + 1))));
+        // Swap the user while keeping the signature
+        String other = tokens.issue("admin", "cGFzcw", expiresAt);
+        assertNull(tokens.verify(other.substring(0, other.lastIndexOf('.')) + signature));
+        // Swap the password while keeping the signature
+        assertNull(tokens.verify(token.replace("cGFzcw", "b3RoZXI")));
+        // Signed with a different key, e.g. before a restart
+        assertNull(tokens.verify(new SessionTokens().issue("user", "cGFzcw", expiresAt)));
+    }
+
+    @Test
+    void GIVEN_garbage_WHEN_verified_THEN_it_is_rejected() {
+        assertNull(tokens.verify(null));
+        assertNull(tokens.verify(""));
+        assertNull(tokens.verify("."));
+        assertNull(tokens.verify("a.b"));
+        assertNull(tokens.verify("dXNlcg.cGFzcw.notanumber.!!!"));
+        assertNull(tokens.verify("..."));
+    }
+}
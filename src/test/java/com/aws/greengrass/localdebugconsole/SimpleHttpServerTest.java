@@ -9,7 +9,49 @@ package com.aws.greengrass.localdebugconsole;
 import com.aws.greengrass.config.Topic;
 import com.aws.greengrass.lifecyclemanager.Kernel;
 import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import com.aws.greengrass.util.Coerce;
 import com.aws.greengrass.util.Pair;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -18,29 +60,58 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import static com.aws.greengrass.componentmanager.KernelConfigResolver.CONFIGURATION_CONFIG_KEY;
+import static com.aws.greengrass.localdebugconsole.SimpleHttpServer.CERT_FINGERPRINT_NAMESPACE;
 import static com.aws.greengrass.localdebugconsole.SimpleHttpServer.DEBUG_PASSWORD_NAMESPACE;
 import static com.aws.greengrass.localdebugconsole.SimpleHttpServer.EXPIRATION_NAMESPACE;
+import static com.aws.greengrass.localdebugconsole.SimpleHttpServer.SHA_256_ALGORITHM;
 import static com.aws.greengrass.testcommons.testutilities.ExceptionLogProtector.ignoreExceptionOfType;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @ExtendWith(GGExtension.class)
 class SimpleHttpServerTest {
+    private static final int MAX_CONTENT_LENGTH = 1024 * 1024;
+    // Several chunks long, so it can't be served from the file in one piece
+    private static final byte[] ASSET = new byte[100_000];
+
+    static {
+        for (int i = 0; i < ASSET.length; i++) {
+            ASSET[i] = (byte) ('a' + i % 26);
+        }
+    }
 
     @TempDir
     Path rootDir;
 
     private Kernel kernel;
+    private EventLoopGroup group;
+    private Channel serverChannel;
 
     @AfterEach
-    void after() {
+    void after() throws InterruptedException {
+        if (serverChannel != null) {
+            serverChannel.close().sync();
+        }
+        if (group != null) {
+            group.shutdownGracefully().sync();
+        }
         if (kernel != null) {
             kernel.shutdown();
         }
@@ -78,6 +149,196 @@ class SimpleHttpServerTest {
         assertTrue(http.initializeHttps());
     }
 
+    @Test
+    void GIVEN_ec_key_algorithm_WHEN_initialize_https_THEN_certificate_is_regenerated_once(ExtensionContext context)
+            throws Exception {
+        ignoreExceptionOfType(context, IOException.class);
+        kernel = new Kernel();
+        kernel.parseArgs("-r", rootDir.toAbsolutePath().toString());
+        SimpleHttpServer http = kernel.getContext().get(SimpleHttpServer.class);
+
+        assertTrue(http.initializeHttps());
+        String rsaFingerprint = Coerce.toString(kernel.getConfig().find(CERT_FINGERPRINT_NAMESPACE, SHA_256_ALGORITHM));
+
+        http.getConfig().lookup(CONFIGURATION_CONFIG_KEY, "keyAlgorithm").withValue(SimpleHttpServer.EC_KEY_ALGORITHM);
+        kernel.getContext().waitForPublishQueueToClear();
+        assertTrue(http.initializeHttps());
+        String ecFingerprint = Coerce.toString(kernel.getConfig().find(CERT_FINGERPRINT_NAMESPACE, SHA_256_ALGORITHM));
+        assertNotEquals(rsaFingerprint, ecFingerprint);
+
+        // A keystore which already has the right kind of key is reused
+        assertTrue(http.initializeHttps());
+        assertEquals(ecFingerprint,
+                Coerce.toString(kernel.getConfig().find(CERT_FINGERPRINT_NAMESPACE, SHA_256_ALGORITHM)));
+        assertEquals("EC", SimpleHttpServer.generateKeyPair(SimpleHttpServer.EC_KEY_ALGORITHM).getPublic()
+                .getAlgorithm());
+    }
+
+    @Test
+    void GIVEN_keep_alive_connection_WHEN_pipelined_requests_THEN_responses_are_in_order_and_connection_is_reused(
+            ExtensionContext context) {
+        ignoreExceptionOfType(context, IOException.class);
+        kernel = new Kernel();
+        kernel.parseArgs("-r", rootDir.toAbsolutePath().toString());
+        SimpleHttpServer http = kernel.getContext().get(SimpleHttpServer.class);
+        kernel.getConfig().lookup(DEBUG_PASSWORD_NAMESPACE, "a", "b", EXPIRATION_NAMESPACE)
+                .withValue(Instant.now().plus(Duration.ofHours(1)).toEpochMilli());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new HttpServerCodec(), new HttpObjectAggregator(1024),
+                http.new PageHandler());
+        // Both requests arrive in one read, the responses must come back in the same order
+        channel.writeInbound(Unpooled.copiedBuffer("GET /missing.js HTTP/1.1\r\nAuthorization: Basic YTpi\r\n\r\n"
+                + "GET /missing.js HTTP/1.1\r\n\r\n", StandardCharsets.UTF_8));
+        String responses = readOutbound(channel);
+        assertTrue(responses.startsWith("HTTP/1.1 404"), responses);
+        assertTrue(responses.indexOf("HTTP/1.1 401") > 0, responses);
+        assertFalse(responses.contains("connection: close"), responses);
+        assertTrue(channel.isOpen());
+
+        channel.writeInbound(Unpooled.copiedBuffer("GET /missing.js HTTP/1.0\r\n\r\n", StandardCharsets.UTF_8));
+        responses = readOutbound(channel);
+        assertTrue(responses.startsWith("HTTP/1.1 401"), responses);
+        assertTrue(responses.contains("connection: close"), responses);
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void GIVEN_client_offering_h2_WHEN_asset_requested_THEN_it_is_served_over_a_stream(ExtensionContext context)
+            throws Exception {
+        ignoreExceptionOfType(context, IOException.class);
+        startHttps();
+        // The server sends its settings straight after the handshake, so the codec has to be there already
+        Channel ch = connect(new String[]{ApplicationProtocolNames.HTTP_2, ApplicationProtocolNames.HTTP_1_1},
+                Http2FrameCodecBuilder.forClient().build(),
+                new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()));
+        assertEquals(ApplicationProtocolNames.HTTP_2, ch.pipeline().get(SslHandler.class).applicationProtocol());
+
+        CompletableFuture<FullHttpResponse> response = new CompletableFuture<>();
+        Http2StreamChannel stream = new Http2StreamChannelBootstrap(ch).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel c) {
+                c.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false),
+                        new HttpObjectAggregator(MAX_CONTENT_LENGTH), completing(response));
+            }
+        }).open().sync().getNow();
+        stream.writeAndFlush(assetRequest());
+        assertAsset(response.get(10, TimeUnit.SECONDS));
+        ch.close().sync();
+    }
+
+    @Test
+    void GIVEN_client_offering_only_http_1_1_WHEN_asset_requested_THEN_it_falls_back_to_http_1_1(
+            ExtensionContext context) throws Exception {
+        ignoreExceptionOfType(context, IOException.class);
+        startHttps();
+        CompletableFuture<FullHttpResponse> response = new CompletableFuture<>();
+        Channel ch = connect(new String[]{ApplicationProtocolNames.HTTP_1_1}, new HttpClientCodec(),
+                new HttpObjectAggregator(MAX_CONTENT_LENGTH), completing(response));
+        assertEquals(ApplicationProtocolNames.HTTP_1_1, ch.pipeline().get(SslHandler.class).applicationProtocol());
+
+        ch.writeAndFlush(assetRequest());
+        assertAsset(response.get(10, TimeUnit.SECONDS));
+        ch.close().sync();
+    }
+
+    /**
+     * Serve {@link #ASSET} over HTTPS from a file, the way startup would but without the websocket server.
+     */
+    private void startHttps() throws Exception {
+        assumeTrue(SslProvider.isAlpnSupported(SslProvider.JDK), "ALPN is not supported by this JVM");
+        kernel = new Kernel();
+        kernel.parseArgs("-r", rootDir.toAbsolutePath().toString());
+        SimpleHttpServer http = kernel.getContext().get(SimpleHttpServer.class);
+        kernel.getConfig().lookup(DEBUG_PASSWORD_NAMESPACE, "a", "b", EXPIRATION_NAMESPACE)
+                .withValue(Instant.now().plus(Duration.ofHours(1)).toEpochMilli());
+        assertTrue(http.initializeHttps());
+
+        Path assets = Files.createDirectories(rootDir.resolve("assets"));
+        Files.write(assets.resolve("main.js"), ASSET);
+        http.assetCache.setRoot(assets);
+
+        group = new NioEventLoopGroup(2);
+        serverChannel = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(http.new ChannelInitializerImpl(CompletableFuture.completedFuture(true), true,
+                        MAX_CONTENT_LENGTH, null))
+                .bind(new InetSocketAddress("localhost", 0)).sync().channel();
+    }
+
+    private Channel connect(String[] protocols, ChannelHandler... handlers) throws Exception {
+        SslContext clientContext = SslContextBuilder.forClient().sslProvider(SslProvider.JDK)
+                .trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .applicationProtocolConfig(new ApplicationProtocolConfig(ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT, protocols))
+                .build();
+        Channel ch = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel c) {
+                        c.pipeline().addLast(clientContext.newHandler(c.alloc()));
+                        c.pipeline().addLast(handlers);
+                    }
+                }).connect(serverChannel.localAddress()).sync().channel();
+        ch.pipeline().get(SslHandler.class).handshakeFuture().sync();
+        return ch;
+    }
+
+    private static FullHttpRequest assetRequest() {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/main.js");
+        request.headers().set(HttpHeaderNames.HOST, "localhost");
+        request.headers().set(HttpHeaderNames.AUTHORIZATION, "Basic YTpi");
+        return request;
+    }
+
+    private static void assertAsset(FullHttpResponse response) {
+        try {
+            assertEquals(HttpResponseStatus.OK, response.status());
+            assertEquals(ASSET.length, HttpUtil.getContentLength(response));
+            assertArrayEquals(ASSET, ByteBufUtil.getBytes(response.content()));
+        } finally {
+            response.release();
+        }
+    }
+
+    private static SimpleChannelInboundHandler<FullHttpResponse> completing(
+            CompletableFuture<FullHttpResponse> response) {
+        return new SimpleChannelInboundHandler<FullHttpResponse>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse msg) {
+                response.complete(msg.retainedDuplicate());
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                response.completeExceptionally(cause);
+            }
+        };
+    }
+
+    private static String readOutbound(EmbeddedChannel channel) {
+        StringBuilder sb = new StringBuilder();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            sb.append(buf.toString(StandardCharsets.UTF_8));
+            buf.release();
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void GIVEN_netty_options_WHEN_selected_THEN_falls_back_to_portable_defaults() {
+        assertEquals(NettyTransport.NIO, NettyTransport.select(false));
+        NettyTransport transport = NettyTransport.select(true);
+        if (transport == NettyTransport.NIO) {
+            assertNotNull(NettyTransport.epollUnavailabilityCause());
+        }
+        EventLoopGroup group = transport.newEventLoopGroup(1);
+        group.shutdownGracefully();
+
+        assertTrue(SimpleHttpServer.allocatorFor(SimpleHttpServer.POOLED_ALLOCATOR) instanceof PooledByteBufAllocator);
+        assertTrue(SimpleHttpServer.allocatorFor("Unpooled") instanceof UnpooledByteBufAllocator);
+    }
+
     @Test
     void testQueryParsing() {
         qp("a=b", "a", "b");
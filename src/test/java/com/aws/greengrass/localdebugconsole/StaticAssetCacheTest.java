@@ -0,0 +1,186 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.lifecyclemanager.Kernel;
+import com.aws.greengrass.logging.impl.LogManager;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.DateFormatter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.aws.greengrass.localdebugconsole.StaticAssetCache.BROTLI;
+import static com.aws.greengrass.localdebugconsole.StaticAssetCache.CACHE_IMMUTABLE;
+import static com.aws.greengrass.localdebugconsole.StaticAssetCache.CACHE_NO_STORE;
+import static com.aws.greengrass.localdebugconsole.StaticAssetCache.CACHE_REVALIDATE;
+import static com.aws.greengrass.localdebugconsole.StaticAssetCache.GZIP;
+import static com.aws.greengrass.localdebugconsole.StaticAssetCache.negotiateEncoding;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(GGExtension.class)
+class StaticAssetCacheTest {
+    private static final byte[] CONTENT = "console.log('hello')".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void GIVEN_compressed_variants_WHEN_negotiate_encoding_THEN_best_accepted_variant_is_picked() {
+        StaticAssetCache.Asset both = new StaticAssetCache.Asset("text/plain", CONTENT, new byte[1], new byte[2], 0,
+                CACHE_REVALIDATE);
+        StaticAssetCache.Asset gzipOnly = new StaticAssetCache.Asset("text/plain", CONTENT, new byte[1], null, 0,
+                CACHE_REVALIDATE);
+
+        assertEquals(BROTLI, negotiateEncoding("gzip, deflate, br", both));
+        assertEquals(GZIP, negotiateEncoding("gzip, deflate, br", gzipOnly));
+        assertEquals(GZIP, negotiateEncoding("br;q=0, gzip", both));
+        assertNull(negotiateEncoding("identity", both));
+        assertNull(negotiateEncoding(null, both));
+        assertNull(negotiateEncoding("gzip;q=0.0", gzipOnly));
+    }
+
+    @Test
+    void GIVEN_cached_asset_WHEN_content_is_released_THEN_cached_copy_is_unaffected() {
+        StaticAssetCache.Asset asset = new StaticAssetCache.Asset("text/plain", CONTENT, null, null, 0,
+                CACHE_REVALIDATE);
+
+        ByteBuf first = asset.content(null);
+        first.skipBytes(first.readableBytes());
+        first.release();
+
+        ByteBuf second = asset.content(GZIP);
+        assertEquals(CONTENT.length, second.readableBytes());
+        assertTrue(second.isReadOnly());
+    }
+
+    @Test
+    void GIVEN_cache_WHEN_refreshed_THEN_index_is_templated_and_missing_assets_are_null() {
+        StaticAssetCache cache = new StaticAssetCache(LogManager.getLogger(Kernel.class),
+                StaticAssetCacheTest.class.getClassLoader());
+        assertFalse(cache.isLoaded());
+        cache.refresh(1442, false);
+        assertTrue(cache.isLoaded());
+
+        StaticAssetCache.Asset index = cache.get("");
+        assertNotNull(index);
+        assertTrue(index.isTemplated());
+        assertEquals(CACHE_NO_STORE, index.getCacheControl());
+        assertNull(index.etag(null));
+        assertFalse(index.isNotModified("*", null, null));
+        ByteBuf rendered = index.render(ByteBufAllocator.DEFAULT, p -> "user");
+        String html = rendered.toString(StandardCharsets.UTF_8);
+        rendered.release();
+        assertTrue(html.contains("1442"));
+        assertFalse(html.contains("%WEBSOCKET_PORT%"));
+        assertFalse(html.contains("%CHINA_PARTITION%"));
+        assertFalse(html.contains("%USERNAME%"));
+
+        assertEquals(CACHE_IMMUTABLE, cache.get("static/js/main.0123abcd.js").getCacheControl());
+        assertNull(cache.get("does/not/exist.js"));
+        assertNull(cache.get("../../etc/passwd"));
+    }
+
+    @Test
+    void GIVEN_cached_asset_WHEN_client_sends_validators_THEN_not_modified_is_detected() {
+        long modified = 1_600_000_000_000L;
+        StaticAssetCache.Asset asset = new StaticAssetCache.Asset("text/plain", CONTENT, new byte[1], null, modified,
+                CACHE_REVALIDATE);
+        StaticAssetCache.Asset other = new StaticAssetCache.Asset("text/plain", new byte[1], null, null, modified,
+                CACHE_REVALIDATE);
+
+        String etag = asset.etag(null);
+        assertNotNull(etag);
+        assertNotEquals(etag, asset.etag(GZIP));
+        assertNotEquals(etag, other.etag(null));
+
+        assertTrue(asset.isNotModified(etag, null, null));
+        assertTrue(asset.isNotModified("\"abc\", W/" + asset.etag(GZIP), null, GZIP));
+        assertTrue(asset.isNotModified("*", null, null));
+        assertFalse(asset.isNotModified(other.etag(null), null, null));
+        // A tag only stands for the encoding it was sent with
+        assertFalse(asset.isNotModified(asset.etag(GZIP), null, null));
+        assertFalse(asset.isNotModified(etag, null, GZIP));
+        // If-None-Match wins over If-Modified-Since
+        assertFalse(asset.isNotModified(other.etag(null), DateFormatter.format(new Date(modified)), null));
+
+        assertTrue(asset.isNotModified(null, DateFormatter.format(new Date(modified)), null));
+        assertTrue(asset.isNotModified(null, DateFormatter.format(new Date(modified + 5000)), null));
+        assertFalse(asset.isNotModified(null, DateFormatter.format(new Date(modified - 5000)), null));
+        assertFalse(asset.isNotModified(null, "not a date", null));
+        assertFalse(asset.isNotModified(null, null, null));
+    }
+
+    @Test
+    void GIVEN_template_WHEN_compiled_THEN_static_values_are_folded_and_request_values_are_spliced() {
+        Map<String, String> staticValues = new HashMap<>();
+        staticValues.put(AssetTemplate.WEBSOCKET_PORT, "1442");
+        byte[] source = "port=%WEBSOCKET_PORT%;user=\"%USERNAME%\";token=\"%SESSION_TOKEN%\";100%;%OTHER%"
+                .getBytes(StandardCharsets.UTF_8);
+
+        AssetTemplate template = AssetTemplate.compile(source, staticValues);
+        assertTrue(template.hasPlaceholders());
+        ByteBuf rendered = template.render(ByteBufAllocator.DEFAULT,
+                p -> AssetTemplate.USERNAME.equals(p) ? "üser" : null);
+        assertEquals("port=1442;user=\"üser\";token=\"\";100%;%OTHER%", rendered.toString(StandardCharsets.UTF_8));
+        rendered.release();
+
+        // Rendering must not consume the template
+        rendered = template.render(ByteBufAllocator.DEFAULT, p -> "x");
+        assertEquals("port=1442;user=\"x\";token=\"x\";100%;%OTHER%", rendered.toString(StandardCharsets.UTF_8));
+        rendered.release();
+
+        AssetTemplate noRequestValues = AssetTemplate.compile("%WEBSOCKET_PORT%".getBytes(StandardCharsets.UTF_8),
+                staticValues);
+        assertFalse(noRequestValues.hasPlaceholders());
+        assertEquals("1442", new String(noRequestValues.staticContent(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void GIVEN_asset_root_WHEN_get_THEN_assets_are_served_from_files(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("index.html"), "<p>%WEBSOCKET_PORT% %USERNAME%</p>".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(root.resolve("static/js"));
+        Files.write(root.resolve("static/js/main.0123abcd.js"), CONTENT);
+        Files.write(root.resolve("static/js/main.0123abcd.js.gz"), new byte[1]);
+        Files.write(root.resolve("secret.txt"), CONTENT);
+
+        StaticAssetCache cache = new StaticAssetCache(LogManager.getLogger(Kernel.class),
+                StaticAssetCacheTest.class.getClassLoader());
+        cache.setRoot(root.resolve("static").toAbsolutePath());
+        cache.setRoot(root.toAbsolutePath());
+        cache.refresh(1442, false);
+
+        StaticAssetCache.Asset index = cache.get("");
+        assertNotNull(index);
+        assertTrue(index.isTemplated());
+        assertFalse(index.isFile());
+
+        StaticAssetCache.Asset bundle = cache.get("static/js/main.0123abcd.js");
+        assertNotNull(bundle);
+        assertTrue(bundle.isFile());
+        assertEquals(CACHE_IMMUTABLE, bundle.getCacheControl());
+        assertEquals(root.resolve("static/js/main.0123abcd.js").toAbsolutePath(), bundle.file(null));
+        assertEquals(root.resolve("static/js/main.0123abcd.js.gz").toAbsolutePath(), bundle.file(GZIP));
+        assertEquals(GZIP, negotiateEncoding("gzip, br", bundle));
+        assertTrue(bundle.isNotModified(bundle.etag(GZIP), null, GZIP));
+
+        assertNull(cache.get("static/js/missing.js"));
+        assertNull(cache.get("static/../../secret.txt"));
+        assertNull(cache.get("static/js"));
+    }
+}
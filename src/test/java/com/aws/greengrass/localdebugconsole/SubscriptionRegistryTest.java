@@ -0,0 +1,70 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(GGExtension.class)
+class SubscriptionRegistryTest {
+    private final SubscriptionRegistry<String> registry = new SubscriptionRegistry<>();
+
+    @Test
+    void GIVEN_subscribers_WHEN_one_unsubscribes_THEN_the_others_stay_and_empty_keys_go() {
+        assertTrue(registry.subscribe("main", "tab1"));
+        assertTrue(registry.subscribe("main", "tab2"));
+        assertFalse(registry.subscribe("main", "tab1"));
+        assertTrue(registry.subscribe("other", "tab1"));
+        assertEquals(new HashSet<>(Arrays.asList("tab1", "tab2")), registry.getSubscribers("main"));
+
+        assertTrue(registry.unsubscribe("main", "tab1"));
+        assertFalse(registry.unsubscribe("main", "tab1"));
+        assertEquals(Collections.singleton("tab2"), registry.getSubscribers("main"));
+        assertEquals(Collections.singleton("other"), registry.getKeys("tab1"));
+
+        registry.unsubscribe("main", "tab2");
+        assertEquals(1, registry.size());
+        assertTrue(registry.getSubscribers("main").isEmpty());
+    }
+
+    @Test
+    void GIVEN_push_iterating_subscribers_WHEN_subscriptions_change_THEN_it_sees_what_was_there_when_it_started() {
+        registry.subscribe("main", "tab1");
+        registry.subscribe("main", "tab2");
+        Set<String> pushingTo = registry.getSubscribers("main");
+        int seen = 0;
+        for (String ignored : pushingTo) {
+            registry.subscribe("main", "tab3");
+            registry.unsubscribe("main", "tab1");
+            seen++;
+        }
+        assertEquals(2, seen);
+        assertEquals(new HashSet<>(Arrays.asList("tab2", "tab3")), registry.getSubscribers("main"));
+    }
+
+    @Test
+    void GIVEN_connection_with_subscriptions_WHEN_it_closes_THEN_only_its_subscriptions_are_removed() {
+        registry.subscribe("main", "closing");
+        registry.subscribe("other", "closing");
+        registry.subscribe("other", "open");
+
+        assertEquals(2, registry.unsubscribeAll("closing"));
+        assertEquals(0, registry.unsubscribeAll("closing"));
+        assertTrue(registry.getKeys("closing").isEmpty());
+        assertTrue(registry.getSubscribers("main").isEmpty());
+        assertEquals(Collections.singleton("open"), registry.getSubscribers("other"));
+    }
+}
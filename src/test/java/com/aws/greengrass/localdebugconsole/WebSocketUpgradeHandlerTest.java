@@ -0,0 +1,171 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole;
+
+import com.aws.greengrass.lifecyclemanager.Kernel;
+import com.aws.greengrass.localdebugconsole.dashboardtestmocks.DashboardClientMock;
+import com.aws.greengrass.localdebugconsole.messageutils.PackedRequest;
+import com.aws.greengrass.logging.api.Logger;
+import com.aws.greengrass.logging.impl.LogManager;
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import com.aws.greengrass.util.Pair;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.aws.greengrass.localdebugconsole.DashboardServerTest.expList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Answers.RETURNS_SMART_NULLS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(GGExtension.class)
+class WebSocketUpgradeHandlerTest {
+    private static final Logger logger = LogManager.getLogger(Kernel.class);
+
+    private final KernelCommunicator kc = mock(KernelCommunicator.class, RETURNS_SMART_NULLS);
+    private final Authenticator authenticator = mock(Authenticator.class);
+    private DashboardServer ds;
+    private EventLoopGroup group;
+    private Channel server;
+    private DashboardClientMock dm;
+
+    @BeforeEach
+    void startServer() throws InterruptedException {
+        when(authenticator.isUsernameAndPasswordValid(any())).thenReturn(true);
+        ds = new DashboardServer(new InetSocketAddress("localhost", 0), logger, kc, authenticator, null, null, null,
+                null);
+        ds.startup(false);
+        assertTrue(ds.getStarted().isDone());
+
+        group = new NioEventLoopGroup(1);
+        WebSocketUpgradeHandler upgradeHandler = new WebSocketUpgradeHandler(ds, 64 * 1024, logger);
+        server = new ServerBootstrap().group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(64 * 1024));
+                        ch.pipeline().addLast(WebSocketUpgradeHandler.NAME, upgradeHandler);
+                        ch.pipeline().addLast(SimpleHttpServer.REQUEST_HANDLER, new PlainPageHandler());
+                    }
+                }).bind("localhost", 0).sync().channel();
+    }
+
+    @AfterEach
+    void stopServer() throws InterruptedException {
+        if (dm != null) {
+            dm.closeBlocking();
+        }
+        server.close().sync();
+        group.shutdownGracefully();
+    }
+
+    @Test
+    void GIVEN_shared_http_port_WHEN_websocket_connects_THEN_dashboard_api_is_served() throws Exception {
+        int port = ((InetSocketAddress) server.localAddress()).getPort();
+
+        // Plain HTTP requests on the same port carry on to the page handler
+        HttpURLConnection http = (HttpURLConnection) new URL("http://localhost:" + port + "/").openConnection();
+        assertEquals(200, http.getResponseCode());
+        try (InputStream in = http.getInputStream()) {
+            assertEquals("page", new String(StaticAssetCache.readFully(in), StandardCharsets.UTF_8));
+        }
+
+        dm = new DashboardClientMock(new URI("ws://localhost:" + port), logger);
+        dm.init().get(5, TimeUnit.SECONDS);
+        verify(authenticator).isUsernameAndPasswordValid(new Pair<>("abc", "def"));
+        assertEquals("_fake_call", dm.sendRequest(new PackedRequest(12, "_fake_call", new String[]{}))
+                .get(5, TimeUnit.SECONDS));
+
+        when(kc.getComponentList()).thenReturn(expList);
+        dm.listLatch = new CountDownLatch(1);
+        ds.pushComponentListUpdate();
+        assertTrue(dm.listLatch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(expList, dm.latestList);
+
+        // Completes only once the server has answered the close handshake, though the client marks itself closed
+        // just after
+        dm.closeBlocking();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!dm.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(dm.isClosed());
+        dm = null;
+    }
+
+    @Test
+    void GIVEN_many_websockets_WHEN_server_pushes_THEN_snapshot_is_built_once_for_all_of_them() throws Exception {
+        int port = ((InetSocketAddress) server.localAddress()).getPort();
+        List<DashboardClientMock> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                DashboardClientMock client = new DashboardClientMock(new URI("ws://localhost:" + port), logger);
+                client.init().get(5, TimeUnit.SECONDS);
+                client.listLatch = new CountDownLatch(1);
+                clients.add(client);
+            }
+            when(kc.getComponentList()).thenReturn(expList);
+
+            ds.pushComponentListUpdate();
+            verify(kc, times(1)).getComponentList();
+            for (DashboardClientMock client : clients) {
+                assertTrue(client.listLatch.await(5, TimeUnit.SECONDS));
+                assertArrayEquals(expList, client.latestList);
+            }
+        } finally {
+            for (DashboardClientMock client : clients) {
+                client.closeBlocking();
+            }
+        }
+    }
+
+    private static class PlainPageHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest msg) {
+            DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                    HttpResponseStatus.OK, Unpooled.copiedBuffer("page", StandardCharsets.UTF_8));
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            HttpUtil.setKeepAlive(response, false);
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+}
@@ -7,7 +7,13 @@ package com.aws.greengrass.localdebugconsole.dashboardtestmocks;
 
 import com.aws.greengrass.localdebugconsole.APICalls;
 import com.aws.greengrass.localdebugconsole.messageutils.ComponentItem;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.ComponentListSnapshot;
 import com.aws.greengrass.localdebugconsole.messageutils.DepGraphNode;
+import com.aws.greengrass.localdebugconsole.messageutils.Dependency;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyEdge;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphDelta;
+import com.aws.greengrass.localdebugconsole.messageutils.DependencyGraphSnapshot;
 import com.aws.greengrass.localdebugconsole.messageutils.Message;
 import com.aws.greengrass.localdebugconsole.messageutils.MessageType;
 import com.aws.greengrass.localdebugconsole.messageutils.PackedRequest;
@@ -19,7 +25,10 @@ import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -35,13 +44,21 @@ public class DashboardClientMock extends WebSocketClient {
 
     public ArrayList<Message> responses = new ArrayList<>();
     public ArrayList<ComponentItem[]> listPushes = new ArrayList<>();
+    public ArrayList<ComponentListDelta> listDeltas = new ArrayList<>();
     public ArrayList<DepGraphNode[]> depGraphPushes = new ArrayList<>();
+    public ArrayList<DependencyGraphDelta> depGraphDeltas = new ArrayList<>();
     public ArrayList<ComponentItem> componentPushes = new ArrayList<>();
     public ArrayList<Object> logPushes = new ArrayList<>();
 
     public Message latestResponse;
     public ComponentItem[] latestList;
+    public long listSeq;
+    // Deltas which didn't follow on from the list this client had
+    public int listGaps;
     public DepGraphNode[] latestDepGraph;
+    public long depGraphVersion;
+    // Deltas which didn't follow on from the graph this client had
+    public int depGraphGaps;
     public ComponentItem latestComponent;
     public Object latestLog;
 
@@ -88,22 +105,64 @@ public class DashboardClientMock extends WebSocketClient {
             }
             case MessageType.COMPONENT_LIST: {
                 try {
-                    latestList = jsonMapper.readValue(jsonMapper.writeValueAsString(parsed.getPayload()),
-                            ComponentItem[].class);
-                } catch (JsonProcessingException e) {
+                    ComponentListSnapshot snapshot = jsonMapper.convertValue(parsed.getPayload(),
+                            ComponentListSnapshot.class);
+                    listSeq = snapshot.getSeq();
+                    latestList = snapshot.getComponents();
+                } catch (IllegalArgumentException e) {
                     logger.atError().setCause(e).log();
                 }
                 listPushes.add(latestList);
                 listLatch.countDown();
                 break;
             }
+            case MessageType.COMPONENT_LIST_DELTA: {
+                ComponentListDelta delta;
+                try {
+                    delta = jsonMapper.convertValue(parsed.getPayload(), ComponentListDelta.class);
+                } catch (IllegalArgumentException e) {
+                    logger.atError().setCause(e).log();
+                    break;
+                }
+                listDeltas.add(delta);
+                if (latestList == null || delta.getSeq() != listSeq + 1) {
+                    listGaps++;
+                    break;
+                }
+                latestList = apply(latestList, delta);
+                listSeq = delta.getSeq();
+                listPushes.add(latestList);
+                listLatch.countDown();
+                break;
+            }
             case MessageType.DEPS_GRAPH: {
                 try {
-                    latestDepGraph = jsonMapper.readValue(jsonMapper.writeValueAsString(parsed.getPayload()),
-                            DepGraphNode[].class);
-                } catch (JsonProcessingException e) {
+                    DependencyGraphSnapshot snapshot = jsonMapper.convertValue(parsed.getPayload(),
+                            DependencyGraphSnapshot.class);
+                    depGraphVersion = snapshot.getVersion();
+                    latestDepGraph = snapshot.getNodes();
+                } catch (IllegalArgumentException e) {
+                    logger.atError().setCause(e).log();
+                }
+                depGraphPushes.add(latestDepGraph);
+                depGraphLatch.countDown();
+                break;
+            }
+            case MessageType.DEPS_GRAPH_DELTA: {
+                DependencyGraphDelta delta;
+                try {
+                    delta = jsonMapper.convertValue(parsed.getPayload(), DependencyGraphDelta.class);
+                } catch (IllegalArgumentException e) {
                     logger.atError().setCause(e).log();
+                    break;
                 }
+                depGraphDeltas.add(delta);
+                if (latestDepGraph == null || delta.getVersion() != depGraphVersion + 1) {
+                    depGraphGaps++;
+                    break;
+                }
+                latestDepGraph = apply(latestDepGraph, delta);
+                depGraphVersion = delta.getVersion();
                 depGraphPushes.add(latestDepGraph);
                 depGraphLatch.countDown();
                 break;
@@ -130,6 +189,50 @@ public class DashboardClientMock extends WebSocketClient {
         }
     }
 
+    private ComponentItem[] apply(ComponentItem[] list, ComponentListDelta delta) {
+        Map<String, ComponentItem> byName = new LinkedHashMap<>();
+        for (ComponentItem item : list) {
+            byName.put(item.getName(), item);
+        }
+        byName.keySet().removeAll(Arrays.asList(delta.getRemoved()));
+        for (Map<String, Object> patch : delta.getPatched()) {
+            String name = (String) patch.get("name");
+            // Overlay the changed fields onto the old ones
+            Map<String, Object> fields = jsonMapper.convertValue(byName.get(name), Map.class);
+            fields.putAll(patch);
+            byName.put(name, jsonMapper.convertValue(fields, ComponentItem.class));
+        }
+        for (ComponentItem item : delta.getAdded()) {
+            byName.put(item.getName(), item);
+        }
+        return byName.values().toArray(new ComponentItem[0]);
+    }
+
+    private DepGraphNode[] apply(DepGraphNode[] graph, DependencyGraphDelta delta) {
+        Map<String, Map<String, Boolean>> nodes = new LinkedHashMap<>();
+        for (DepGraphNode node : graph) {
+            Map<String, Boolean> children = new LinkedHashMap<>();
+            for (Dependency child : node.getChildren()) {
+                children.put(child.getName(), child.isHard());
+            }
+            nodes.put(node.getName(), children);
+        }
+        nodes.keySet().removeAll(Arrays.asList(delta.getRemovedNodes()));
+        for (String name : delta.getAddedNodes()) {
+            nodes.put(name, new LinkedHashMap<>());
+        }
+        for (DependencyEdge edge : delta.getRemovedEdges()) {
+            nodes.get(edge.getFrom()).remove(edge.getTo());
+        }
+        for (DependencyEdge edge : delta.getAddedEdges()) {
+            nodes.get(edge.getFrom()).put(edge.getTo(), edge.isHard());
+        }
+        List<DepGraphNode> result = new ArrayList<>();
+        nodes.forEach((name, children) -> result.add(new DepGraphNode(name, children.entrySet().stream()
+                .map(e -> new Dependency(e.getKey(), e.getValue())).toArray(Dependency[]::new))));
+        return result.toArray(new DepGraphNode[0]);
+    }
+
     @Override
     public void onClose(int i, String s, boolean b) {
     }
@@ -0,0 +1,67 @@
+/*
+ * Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.aws.greengrass.localdebugconsole.messageutils;
+
+import com.aws.greengrass.testcommons.testutilities.GGExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@ExtendWith(GGExtension.class)
+class BinaryPubSubMessageTest {
+
+    @Test
+    void GIVEN_binary_payloads_from_1KB_to_1MB_WHEN_encoded_and_decoded_THEN_they_come_back_unchanged() {
+        for (int size : new int[]{0, 1024, 64 * 1024, 1024 * 1024}) {
+            roundTrip(size);
+        }
+    }
+
+    private static void roundTrip(int size) {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+        BinaryPubSubMessage message = new BinaryPubSubMessage("pubsubsensors/#", "sensors/#", "sensors/température",
+                payload);
+
+        byte[] header = message.encodeHeader();
+        byte[] encoded = message.encode();
+        assertEquals(MessageType.PUB_SUB_MSG, encoded[0]);
+        assertEquals(header.length + size, encoded.length);
+        assertArrayEquals(header, Arrays.copyOf(encoded, header.length));
+
+        BinaryPubSubMessage decoded = BinaryPubSubMessage.decode(ByteBuffer.wrap(encoded));
+        assertEquals("pubsubsensors/#", decoded.getSubId());
+        assertEquals("sensors/#", decoded.getSubscribedTopic());
+        assertEquals("sensors/température", decoded.getTopic());
+        assertArrayEquals(payload, decoded.getPayload());
+        assertEquals(size, decoded.getPayloadSize());
+    }
+
+    @Test
+    void GIVEN_payload_cut_short_WHEN_decoded_THEN_its_published_size_comes_back() {
+        byte[] encoded = new BinaryPubSubMessage("sub", "topic", "topic", new byte[]{1, 2}, 1024).encode();
+        BinaryPubSubMessage decoded = BinaryPubSubMessage.decode(ByteBuffer.wrap(encoded));
+        assertArrayEquals(new byte[]{1, 2}, decoded.getPayload());
+        assertEquals(1024, decoded.getPayloadSize());
+    }
+
+    @Test
+    void GIVEN_frame_which_is_not_a_pub_sub_message_WHEN_decoded_THEN_it_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryPubSubMessage.decode(ByteBuffer.wrap(new byte[0])));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPubSubMessage.decode(ByteBuffer.wrap(new byte[]{MessageType.RESPONSE})));
+        byte[] truncated = new BinaryPubSubMessage("sub", "topic", "topic", new byte[0]).encode();
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryPubSubMessage.decode(ByteBuffer.wrap(Arrays.copyOf(truncated, truncated.length - 1))));
+    }
+}